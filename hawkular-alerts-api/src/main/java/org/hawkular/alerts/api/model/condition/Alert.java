@@ -36,6 +36,13 @@ public class Alert {
     @JsonInclude(Include.NON_EMPTY)
     private List<Set<ConditionEval>> evalSets;
 
+    /**
+     * Number of eval sets that satisfied the dampening but are not in evalSets, dropped between the first and the
+     * last ones to bound the memory of the dampening. Informative, not part of the identity of the alert.
+     */
+    @JsonInclude
+    private int omittedEvalSets;
+
     @JsonInclude
     private long ctime;
 
@@ -44,8 +51,13 @@ public class Alert {
     }
 
     public Alert(String triggerId, List<Set<ConditionEval>> evalSets) {
+        this(triggerId, evalSets, 0);
+    }
+
+    public Alert(String triggerId, List<Set<ConditionEval>> evalSets, int omittedEvalSets) {
         this.triggerId = triggerId;
         this.evalSets = evalSets;
+        this.omittedEvalSets = omittedEvalSets;
         this.ctime = System.currentTimeMillis();
     }
 
@@ -57,6 +69,14 @@ public class Alert {
         this.evalSets = evalSets;
     }
 
+    public int getOmittedEvalSets() {
+        return omittedEvalSets;
+    }
+
+    public void setOmittedEvalSets(int omittedEvalSets) {
+        this.omittedEvalSets = omittedEvalSets;
+    }
+
     public long getCTime() {
         return ctime;
     }
@@ -42,9 +42,23 @@ public class AvailabilityConditionEval extends ConditionEval {
     }
 
     public AvailabilityConditionEval(AvailabilityCondition condition, Availability avail) {
-        super(condition.match(avail.getValue()), avail.getTimestamp());
+        this(condition, avail.getTimestamp(), avail.getValue());
+    }
+
+    public AvailabilityConditionEval(AvailabilityCondition condition, long dataTimestamp, AvailabilityType value) {
+        this(condition, dataTimestamp, value, condition.match(value));
+    }
+
+    /**
+     * For evaluators that share one evaluation between identical conditions.
+     *
+     * @param match the result of condition.match(value), already computed by the caller
+     */
+    public AvailabilityConditionEval(AvailabilityCondition condition, long dataTimestamp, AvailabilityType value,
+            boolean match) {
+        super(match, dataTimestamp);
         this.condition = condition;
-        this.value = avail.getValue();
+        this.value = value;
     }
 
     public AvailabilityCondition getCondition() {
@@ -46,11 +46,28 @@ public class CompareConditionEval extends ConditionEval {
     }
 
     public CompareConditionEval(CompareCondition condition, NumericData data1, NumericData data2) {
-        super(condition.match(data1.getValue(), data2.getValue()),
-                ((data1.getTimestamp() > data1.getTimestamp()) ? data1.getTimestamp() : data2.getTimestamp()));
+        this(condition, data1.getTimestamp(), data1.doubleValue(), data2.getTimestamp(), data2.doubleValue());
+    }
+
+    /**
+     * The data timestamp of the eval is the most recent of the two data timestamps.
+     */
+    public CompareConditionEval(CompareCondition condition, long data1Timestamp, double value1, long data2Timestamp,
+            double value2) {
+        this(condition, data1Timestamp, value1, data2Timestamp, value2, condition.match(value1, value2));
+    }
+
+    /**
+     * For evaluators that share one evaluation between identical conditions.
+     *
+     * @param match the result of condition.match(value1, value2), already computed by the caller
+     */
+    public CompareConditionEval(CompareCondition condition, long data1Timestamp, double value1, long data2Timestamp,
+            double value2, boolean match) {
+        super(match, Math.max(data1Timestamp, data2Timestamp));
         this.condition = condition;
-        this.value1 = data1.getValue();
-        this.value2 = data2.getValue();
+        this.value1 = value1;
+        this.value2 = value2;
     }
 
     public CompareCondition getCondition() {
@@ -16,6 +16,8 @@
  */
 package org.hawkular.alerts.api.model.condition;
 
+import java.util.regex.Pattern;
+
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import org.hawkular.alerts.api.log.MsgLogger;
@@ -24,6 +26,9 @@ import org.hawkular.alerts.api.model.trigger.Trigger.Mode;
 /**
  * A string comparison condition.
  *
+ * The MATCH regular expression is compiled once and the lower case form of an ignoreCase pattern is computed once,
+ * both are cached until the pattern, operator or ignoreCase changes.
+ *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
@@ -46,6 +51,12 @@ public class StringCondition extends Condition {
     @JsonInclude
     private boolean ignoreCase;
 
+    /*
+        Derived from pattern, operator and ignoreCase on first use. Transient, never serialized.
+     */
+    private transient Pattern regex;
+    private transient String lowerCasePattern;
+
     public StringCondition() {
         /*
             Default constructor is needed for JSON libraries in JAX-RS context.
@@ -91,6 +102,7 @@ public class StringCondition extends Condition {
 
     public void setIgnoreCase(boolean ignoreCase) {
         this.ignoreCase = ignoreCase;
+        resetCache();
     }
 
     public Operator getOperator() {
@@ -99,6 +111,7 @@ public class StringCondition extends Condition {
 
     public void setOperator(Operator operator) {
         this.operator = operator;
+        resetCache();
     }
 
     public String getPattern() {
@@ -107,6 +120,12 @@ public class StringCondition extends Condition {
 
     public void setPattern(String pattern) {
         this.pattern = pattern;
+        resetCache();
+    }
+
+    private void resetCache() {
+        this.regex = null;
+        this.lowerCasePattern = null;
     }
 
     public String getLog(String value) {
@@ -116,8 +135,9 @@ public class StringCondition extends Condition {
 
     public boolean match(String value) {
 
+        String pattern = this.pattern;
         if (ignoreCase && operator != Operator.MATCH) {
-            pattern = pattern.toLowerCase();
+            pattern = getLowerCasePattern();
             value = value.toLowerCase();
         }
         switch (operator) {
@@ -132,13 +152,31 @@ public class StringCondition extends Condition {
             case CONTAINS:
                 return value.contains(pattern);
             case MATCH:
-                return value.matches(ignoreCase ? ("(?i)" + pattern) : pattern);
+                return getRegex().matcher(value).matches();
             default:
                 msgLog.warnUnknowOperatorOnCondition(operator.name(), this.getClass().getName());
                 return false;
         }
     }
 
+    private String getLowerCasePattern() {
+        String lower = lowerCasePattern;
+        if (null == lower && null != pattern) {
+            lower = pattern.toLowerCase();
+            lowerCasePattern = lower;
+        }
+        return lower;
+    }
+
+    private Pattern getRegex() {
+        Pattern compiled = regex;
+        if (null == compiled) {
+            compiled = Pattern.compile(ignoreCase ? ("(?i)" + pattern) : pattern);
+            regex = compiled;
+        }
+        return compiled;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o)
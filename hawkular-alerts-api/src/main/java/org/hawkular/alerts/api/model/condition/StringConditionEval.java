@@ -42,9 +42,22 @@ public class StringConditionEval extends ConditionEval {
     }
 
     public StringConditionEval(StringCondition condition, StringData data) {
-        super(condition.match(data.getValue()), data.getTimestamp());
+        this(condition, data.getTimestamp(), data.getValue());
+    }
+
+    public StringConditionEval(StringCondition condition, long dataTimestamp, String value) {
+        this(condition, dataTimestamp, value, condition.match(value));
+    }
+
+    /**
+     * For evaluators that match a value against many conditions at once.
+     *
+     * @param match the result of condition.match(value), already computed by the caller
+     */
+    public StringConditionEval(StringCondition condition, long dataTimestamp, String value, boolean match) {
+        super(match, dataTimestamp);
         this.condition = condition;
-        this.value = data.getValue();
+        this.value = value;
     }
 
     public StringCondition getCondition() {
@@ -40,9 +40,22 @@ public class ThresholdConditionEval extends ConditionEval {
     }
 
     public ThresholdConditionEval(ThresholdCondition condition, NumericData data) {
-        super(condition.match(data.getValue()), data.getTimestamp());
+        this(condition, data.getTimestamp(), data.doubleValue());
+    }
+
+    public ThresholdConditionEval(ThresholdCondition condition, long dataTimestamp, double value) {
+        this(condition, dataTimestamp, value, condition.match(value));
+    }
+
+    /**
+     * For evaluators that match a value against many conditions at once.
+     *
+     * @param match the result of condition.match(value), already computed by the caller
+     */
+    public ThresholdConditionEval(ThresholdCondition condition, long dataTimestamp, double value, boolean match) {
+        super(match, dataTimestamp);
         this.condition = condition;
-        this.value = data.getValue();
+        this.value = value;
     }
 
     public ThresholdCondition getCondition() {
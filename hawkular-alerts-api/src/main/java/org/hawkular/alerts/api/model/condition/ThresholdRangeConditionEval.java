@@ -42,9 +42,23 @@ public class ThresholdRangeConditionEval extends ConditionEval {
     }
 
     public ThresholdRangeConditionEval(ThresholdRangeCondition condition, NumericData data) {
-        super(condition.match(data.getValue()), data.getTimestamp());
+        this(condition, data.getTimestamp(), data.doubleValue());
+    }
+
+    public ThresholdRangeConditionEval(ThresholdRangeCondition condition, long dataTimestamp, double value) {
+        this(condition, dataTimestamp, value, condition.match(value));
+    }
+
+    /**
+     * For evaluators that match a value against many conditions at once.
+     *
+     * @param match the result of condition.match(value), already computed by the caller
+     */
+    public ThresholdRangeConditionEval(ThresholdRangeCondition condition, long dataTimestamp, double value,
+            boolean match) {
+        super(match, dataTimestamp);
         this.condition = condition;
-        this.value = data.getValue();
+        this.value = value;
     }
 
     public ThresholdRangeCondition getCondition() {
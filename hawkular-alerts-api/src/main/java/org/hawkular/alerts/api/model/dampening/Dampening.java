@@ -38,6 +38,23 @@ public class Dampening {
         STRICT, RELAXED_COUNT, RELAXED_TIME, STRICT_TIME
     };
 
+    /**
+     * Default number of satisfying evals kept at each end of the evaluations, see
+     * {@link #setSatisfyingEvalsRetention(int)}. The default, 1000, keeps every eval of the dampenings that need up to
+     * 2000 evaluations, so only alerts of very large RELAXED_COUNT or high frequency RELAXED_TIME dampenings are
+     * trimmed, and report the evals omitted. Less than 1 keeps them all, without an upper limit.
+     */
+    public static final int SATISFYING_EVALS_RETENTION = getIntProperty(
+            "org.hawkular.alerts.dampening.SATISFYING_EVALS_RETENTION", 1000);
+
+    private static int getIntProperty(String name, int defaultValue) {
+        try {
+            return new Integer(System.getProperty(name)).intValue();
+        } catch (Exception ignored) {
+            return defaultValue;
+        }
+    }
+
     @JsonInclude
     private String triggerId;
 
@@ -75,9 +92,25 @@ public class Dampening {
     @JsonIgnore
     private transient boolean satisfied;
 
+    // The first satisfying evals, up to the retention, then the last ones in a ring, and the number dropped between
     @JsonIgnore
     private transient List<Set<ConditionEval>> satisfyingEvals = new ArrayList<Set<ConditionEval>>();
 
+    @JsonIgnore
+    private transient Set<ConditionEval>[] lastSatisfyingEvals;
+
+    @JsonIgnore
+    private transient int lastSatisfyingEvalsStart;
+
+    @JsonIgnore
+    private transient int lastSatisfyingEvalsSize;
+
+    @JsonIgnore
+    private transient int omittedSatisfyingEvals;
+
+    @JsonIgnore
+    private transient int satisfyingEvalsRetention = SATISFYING_EVALS_RETENTION;
+
     public Dampening() {
         this("Default", Mode.FIRE, Type.STRICT, 1, 1, 0);
     }
@@ -185,7 +218,12 @@ public class Dampening {
     }
 
     public void setSatisfyingEvals(List<Set<ConditionEval>> satisfyingEvals) {
-        this.satisfyingEvals = satisfyingEvals;
+        clearSatisfyingEvals();
+        if (null != satisfyingEvals) {
+            for (Set<ConditionEval> ces : satisfyingEvals) {
+                addSatisfyingEvals(ces);
+            }
+        }
     }
 
     public void setType(Type type) {
@@ -241,22 +279,79 @@ public class Dampening {
     }
 
     /**
-     * @return a safe, but not deep, copy of the satisfying evals List
+     * @return a safe, but not deep, copy of the satisfying evals List. When more satisfying evals than twice the
+     * retention were added, only the first and the last ones, in order, are kept.
+     * @see #getOmittedSatisfyingEvals()
      */
     @JsonIgnore
     public List<Set<ConditionEval>> getSatisfyingEvals() {
-        return new ArrayList<Set<ConditionEval>>(satisfyingEvals);
+        List<Set<ConditionEval>> result = new ArrayList<Set<ConditionEval>>(satisfyingEvals.size()
+                + lastSatisfyingEvalsSize);
+        result.addAll(satisfyingEvals);
+        for (int i = 0; i < lastSatisfyingEvalsSize; i++) {
+            result.add(lastSatisfyingEvals[(lastSatisfyingEvalsStart + i) % lastSatisfyingEvals.length]);
+        }
+        return result;
+    }
+
+    /**
+     * @return number of satisfying evals dropped between the first and the last ones kept
+     */
+    @JsonIgnore
+    public int getOmittedSatisfyingEvals() {
+        return omittedSatisfyingEvals;
     }
 
+    @JsonIgnore
+    public int getSatisfyingEvalsRetention() {
+        return satisfyingEvalsRetention;
+    }
+
+    /**
+     * Bound the memory held by a dampening that sees many true evaluations before it is satisfied, as a RELAXED_COUNT
+     * or RELAXED_TIME dampening with large settings. The first <code>retention</code> satisfying evals are kept, and
+     * then only the last <code>retention</code> ones. Less than 1 keeps them all. Resets the satisfying evals.
+     * @param retention number of satisfying evals kept at each end, defaults to {@link #SATISFYING_EVALS_RETENTION}
+     */
+    public void setSatisfyingEvalsRetention(int retention) {
+        this.satisfyingEvalsRetention = retention;
+        clearSatisfyingEvals();
+    }
+
+    @SuppressWarnings("unchecked")
     public void addSatisfyingEvals(Set<ConditionEval> satisfyingEvals) {
-        this.satisfyingEvals.add(satisfyingEvals);
+        if (satisfyingEvalsRetention < 1 || this.satisfyingEvals.size() < satisfyingEvalsRetention) {
+            this.satisfyingEvals.add(satisfyingEvals);
+            return;
+        }
+        if (null == lastSatisfyingEvals || lastSatisfyingEvals.length != satisfyingEvalsRetention) {
+            lastSatisfyingEvals = new Set[satisfyingEvalsRetention];
+        }
+        if (lastSatisfyingEvalsSize < lastSatisfyingEvals.length) {
+            lastSatisfyingEvals[(lastSatisfyingEvalsStart + lastSatisfyingEvalsSize++) % lastSatisfyingEvals.length] =
+                    satisfyingEvals;
+        } else {
+            // full, overwrite the oldest
+            lastSatisfyingEvals[lastSatisfyingEvalsStart] = satisfyingEvals;
+            lastSatisfyingEvalsStart = (lastSatisfyingEvalsStart + 1) % lastSatisfyingEvals.length;
+            omittedSatisfyingEvals++;
+        }
     }
 
     public void addSatisfyingEvals(ConditionEval... satisfyingEvals) {
-        this.satisfyingEvals.add(new HashSet<ConditionEval>(Arrays.asList(satisfyingEvals)));
+        addSatisfyingEvals(new HashSet<ConditionEval>(Arrays.asList(satisfyingEvals)));
     }
 
     public void perform(ConditionEval... conditionEvals) {
+        perform(System.currentTimeMillis(), conditionEvals);
+    }
+
+    /**
+     * As {@link #perform(ConditionEval...)}, with the evaluation time given by the caller's clock.
+     *
+     * @param now evaluation time, in ms
+     */
+    public void perform(long now, ConditionEval... conditionEvals) {
         boolean trueEval = true;
         for (ConditionEval ce : conditionEvals) {
             if (!ce.isMatch()) {
@@ -266,7 +361,6 @@ public class Dampening {
         }
 
         // If we had previously started our time and now have exceeded our time limit then we must start over
-        long now = System.currentTimeMillis();
         if (type == Type.RELAXED_TIME && trueEvalsStartTime != 0L) {
             if ((now - trueEvalsStartTime) > evalTimeSetting) {
                 reset();
@@ -322,12 +416,72 @@ public class Dampening {
         }
     }
 
+    /**
+     * @return the time, in ms, at which {@link #checkTime(long)} can change this dampening without a new evaluation:
+     * the end of the evalPeriod started by the first true evaluation of a STRICT_TIME or RELAXED_TIME dampening. 0 if
+     * there is none.
+     */
+    @JsonIgnore
+    public long getDeadline() {
+        if (satisfied || trueEvalsStartTime == 0L) {
+            return 0L;
+        }
+        switch (type) {
+            case STRICT_TIME:
+                return trueEvalsStartTime + evalTimeSetting;
+            case RELAXED_TIME:
+                // perform() starts over only when the period is exceeded
+                return trueEvalsStartTime + evalTimeSetting + 1;
+            default:
+                return 0L;
+        }
+    }
+
+    /**
+     * Apply the passing of time, for engines that track the deadlines of the dampenings. A STRICT_TIME dampening
+     * that had only true evaluations for its whole evalPeriod is satisfied, without waiting for another evaluation.
+     * A RELAXED_TIME dampening whose evalPeriod is exceeded starts over.
+     *
+     * @param now current time, in ms
+     * @return true if the dampening is satisfied
+     */
+    public boolean checkTime(long now) {
+        if (satisfied || trueEvalsStartTime == 0L) {
+            return satisfied;
+        }
+        switch (type) {
+            case STRICT_TIME:
+                if ((now - trueEvalsStartTime) >= evalTimeSetting) {
+                    satisfied = true;
+                }
+                break;
+            case RELAXED_TIME:
+                if ((now - trueEvalsStartTime) > evalTimeSetting) {
+                    reset();
+                }
+                break;
+            default:
+                break;
+        }
+        return satisfied;
+    }
+
     public void reset() {
         this.numTrueEvals = 0;
         this.numEvals = 0;
         this.trueEvalsStartTime = 0L;
         this.satisfied = false;
+        clearSatisfyingEvals();
+    }
+
+    private void clearSatisfyingEvals() {
         this.satisfyingEvals.clear();
+        if (null != lastSatisfyingEvals) {
+            Arrays.fill(lastSatisfyingEvals, null);
+        }
+        this.lastSatisfyingEvalsStart = 0;
+        this.lastSatisfyingEvalsSize = 0;
+        this.omittedSatisfyingEvals = 0;
     }
 
     public String log() {
@@ -335,7 +489,10 @@ public class Dampening {
                 + numTrueEvals + ", numEvals=" + numEvals + ", trueEvalsStartTime=" + trueEvalsStartTime
                 + ", satisfied=" + satisfied);
         if (satisfied) {
-            for (Set<ConditionEval> ces : satisfyingEvals) {
+            if (omittedSatisfyingEvals > 0) {
+                sb.append(", omittedSatisfyingEvals=" + omittedSatisfyingEvals);
+            }
+            for (Set<ConditionEval> ces : getSatisfyingEvals()) {
                 sb.append("\n\t[");
                 String space = "";
                 for (ConditionEval ce : ces) {
@@ -393,7 +550,8 @@ public class Dampening {
                 + ", evalTrueSetting=" + evalTrueSetting + ", evalTotalSetting=" + evalTotalSetting
                 + ", evalTimeSetting=" + evalTimeSetting + ", numTrueEvals="
                 + numTrueEvals + ", numEvals=" + numEvals + ", trueEvalsStartTime=" + trueEvalsStartTime
-                + ", satisfied=" + satisfied + ", satisfyingEvals=" + satisfyingEvals + "]";
+                + ", satisfied=" + satisfied + ", satisfyingEvals=" + getSatisfyingEvals()
+                + ", omittedSatisfyingEvals=" + omittedSatisfyingEvals + "]";
     }
 
 }
@@ -91,7 +91,7 @@ public abstract class Data implements Comparable<Data> {
     }
 
     public void setValue(Object value) {
-        this.value = value;
+        assignValue(value);
     }
 
     public Type getType() {
@@ -108,7 +108,7 @@ public abstract class Data implements Comparable<Data> {
         int result = 1;
         result = prime * result + ((id == null) ? 0 : id.hashCode());
         result = prime * result + (int) (timestamp ^ (timestamp >>> 32));
-        result = prime * result + ((value == null) ? 0 : value.hashCode());
+        result = prime * result + valueHashCode();
         return result;
     }
 
@@ -128,12 +128,7 @@ public abstract class Data implements Comparable<Data> {
             return false;
         if (timestamp != other.timestamp)
             return false;
-        if (value == null) {
-            if (other.value != null)
-                return false;
-        } else if (!value.equals(other.value))
-            return false;
-        return true;
+        return valueEquals(other);
     }
 
     @Override
@@ -151,7 +146,36 @@ public abstract class Data implements Comparable<Data> {
         if (0 != c)
             return c;
 
-        return compareValue(this.value, o.value);
+        return compareValue(o);
+    }
+
+    /**
+     * Stores the value. Subclasses keeping an unboxed value override this together with {@link #valueHashCode()},
+     * {@link #valueEquals(Data)} and {@link #compareValue(Data)}.
+     * @param value
+     */
+    void assignValue(Object value) {
+        this.value = value;
+    }
+
+    int valueHashCode() {
+        return (value == null) ? 0 : value.hashCode();
+    }
+
+    /**
+     * @param other same class as this
+     * @return true if the values are equal
+     */
+    boolean valueEquals(Data other) {
+        return (value == null) ? (other.value == null) : value.equals(other.value);
+    }
+
+    /**
+     * @param other same class as this
+     * @return standard -1, 0, 1 compare value
+     */
+    int compareValue(Data other) {
+        return compareValue(this.value, other.value);
     }
 
     /**
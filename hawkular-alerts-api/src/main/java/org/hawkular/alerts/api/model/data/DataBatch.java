@@ -0,0 +1,459 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.api.model.data;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.ToIntFunction;
+
+import org.hawkular.alerts.api.model.data.Availability.AvailabilityType;
+
+/**
+ * A columnar batch of incoming data. The dataIds, timestamps, values and types of the samples are kept in parallel
+ * arrays, so a batch of any size is a handful of objects instead of one {@link Data} per sample.
+ *
+ * Numeric values are stored as is, availability values as the ordinal of their {@link AvailabilityType}. String
+ * values are kept in an extra column that is only allocated when the batch holds {@link StringData}.
+ *
+ * Sample i of the batch is equivalent to the {@link Data} returned by {@link #getData(int)}. After {@link #sort()}
+ * the samples follow the natural order of {@link Data}, (id ASC, timestamp ASC, value ASC), and {@link #dedup()}
+ * removes the samples a <code>TreeSet&lt;Data&gt;</code> would have discarded as duplicates.
+ *
+ * The ids can be encoded once with {@link #encodeIds(ToIntFunction)}, after that and until the batch is modified,
+ * sorting and deduplication compare the int keys instead of the ids.
+ *
+ * A DataBatch is not thread safe.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class DataBatch {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final Data.Type[] TYPES = Data.Type.values();
+    private static final AvailabilityType[] AVAILABILITY_TYPES = AvailabilityType.values();
+
+    private String[] ids;
+    private long[] timestamps;
+    private double[] values;
+    private byte[] types;
+    private String[] strings;
+    private int[] keys;
+    private int size;
+
+    public DataBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity initial number of samples the batch can hold without growing.
+     */
+    public DataBatch(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must be not negative");
+        }
+        this.ids = new String[capacity];
+        this.timestamps = new long[capacity];
+        this.values = new double[capacity];
+        this.types = new byte[capacity];
+        this.strings = null;
+        this.size = 0;
+    }
+
+    /**
+     * @param id not null.
+     * @param timestamp if <=0 assigned currentTime.
+     * @param value the numeric value
+     */
+    public void addNumeric(String id, long timestamp, double value) {
+        add(id, timestamp, value, Data.Type.NUMERIC);
+    }
+
+    /**
+     * @param id not null.
+     * @param timestamp if <=0 assigned currentTime.
+     * @param value if null assigned UP, as {@link Availability} does.
+     */
+    public void addAvailability(String id, long timestamp, AvailabilityType value) {
+        add(id, timestamp, (null == value) ? AvailabilityType.UP.ordinal() : value.ordinal(),
+                Data.Type.AVAILABILITY);
+    }
+
+    /**
+     * @param id not null.
+     * @param timestamp if <=0 assigned currentTime.
+     * @param value the string value
+     */
+    public void addString(String id, long timestamp, String value) {
+        int i = add(id, timestamp, Double.NaN, Data.Type.STRING);
+        if (null == strings) {
+            strings = new String[ids.length];
+        }
+        strings[i] = value;
+    }
+
+    public void add(Data data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data must be not null");
+        }
+        if (data instanceof NumericData) {
+            addNumeric(data.getId(), data.getTimestamp(), ((NumericData) data).doubleValue());
+        } else if (data instanceof Availability) {
+            addAvailability(data.getId(), data.getTimestamp(), ((Availability) data).getValue());
+        } else if (data instanceof StringData) {
+            addString(data.getId(), data.getTimestamp(), ((StringData) data).getValue());
+        } else {
+            throw new IllegalArgumentException("Unsupported Data: " + data);
+        }
+    }
+
+    public void addAll(Collection<? extends Data> data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data must be not null");
+        }
+        ensureCapacity(size + data.size());
+        for (Data d : data) {
+            add(d);
+        }
+    }
+
+    public void addAll(DataBatch batch) {
+        if (batch == null) {
+            throw new IllegalArgumentException("Batch must be not null");
+        }
+        int n = batch.size;
+        if (n == 0) {
+            return;
+        }
+        keys = null;
+        ensureCapacity(size + n);
+        System.arraycopy(batch.ids, 0, ids, size, n);
+        System.arraycopy(batch.timestamps, 0, timestamps, size, n);
+        System.arraycopy(batch.values, 0, values, size, n);
+        System.arraycopy(batch.types, 0, types, size, n);
+        if (null != batch.strings) {
+            if (null == strings) {
+                strings = new String[ids.length];
+            }
+            System.arraycopy(batch.strings, 0, strings, size, n);
+        }
+        size += n;
+    }
+
+    /**
+     * Copy the sample i of another batch into this batch.
+     */
+    public void add(DataBatch batch, int i) {
+        if (batch == null) {
+            throw new IllegalArgumentException("Batch must be not null");
+        }
+        batch.checkIndex(i);
+        int j = add(batch.ids[i], batch.timestamps[i], batch.values[i], TYPES[batch.types[i]]);
+        if (null != batch.strings && null != batch.strings[i]) {
+            if (null == strings) {
+                strings = new String[ids.length];
+            }
+            strings[j] = batch.strings[i];
+        }
+    }
+
+    private int add(String id, long timestamp, double value, Data.Type type) {
+        if (id == null) {
+            throw new IllegalArgumentException("Id must be not null");
+        }
+        keys = null;
+        ensureCapacity(size + 1);
+        int i = size++;
+        ids[i] = id;
+        timestamps[i] = (timestamp <= 0) ? System.currentTimeMillis() : timestamp;
+        values[i] = value;
+        types[i] = (byte) type.ordinal();
+        return i;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, Math.max(DEFAULT_CAPACITY, ids.length + (ids.length >> 1)));
+        ids = Arrays.copyOf(ids, newCapacity);
+        timestamps = Arrays.copyOf(timestamps, newCapacity);
+        values = Arrays.copyOf(values, newCapacity);
+        types = Arrays.copyOf(types, newCapacity);
+        if (null != strings) {
+            strings = Arrays.copyOf(strings, newCapacity);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all the samples, keeping the allocated capacity.
+     */
+    public void clear() {
+        Arrays.fill(ids, 0, size, null);
+        if (null != strings) {
+            Arrays.fill(strings, 0, size, null);
+        }
+        keys = null;
+        size = 0;
+    }
+
+    public String getId(int i) {
+        checkIndex(i);
+        return ids[i];
+    }
+
+    public long getTimestamp(int i) {
+        checkIndex(i);
+        return timestamps[i];
+    }
+
+    public Data.Type getType(int i) {
+        checkIndex(i);
+        return TYPES[types[i]];
+    }
+
+    /**
+     * @return the numeric value of a NUMERIC sample, the ordinal of an AVAILABILITY sample, NaN for a STRING sample.
+     */
+    public double getValue(int i) {
+        checkIndex(i);
+        return values[i];
+    }
+
+    /**
+     * @return the value of an AVAILABILITY sample, null for other types.
+     */
+    public AvailabilityType getAvailability(int i) {
+        checkIndex(i);
+        return types[i] == Data.Type.AVAILABILITY.ordinal() ? AVAILABILITY_TYPES[(int) values[i]] : null;
+    }
+
+    /**
+     * @return the value of a STRING sample, null for other types.
+     */
+    public String getString(int i) {
+        checkIndex(i);
+        return null == strings ? null : strings[i];
+    }
+
+    /**
+     * @return a new {@link Data} equivalent to the sample i.
+     */
+    public Data getData(int i) {
+        checkIndex(i);
+        switch (TYPES[types[i]]) {
+            case NUMERIC:
+                return new NumericData(ids[i], timestamps[i], values[i]);
+            case AVAILABILITY:
+                return new Availability(ids[i], timestamps[i], getAvailability(i));
+            default:
+                return new StringData(ids[i], timestamps[i], getString(i));
+        }
+    }
+
+    /**
+     * @return the key of the id of sample i, as assigned by the last {@link #encodeIds(ToIntFunction)}.
+     * @throws IllegalStateException if the ids are not encoded
+     */
+    public int getKey(int i) {
+        checkIndex(i);
+        if (null == keys) {
+            throw new IllegalStateException("Ids are not encoded");
+        }
+        return keys[i];
+    }
+
+    /**
+     * Encode the ids of the samples into int keys. The dictionary must map equal ids, and only equal ids, to the same
+     * key. Samples for which the dictionary returns a negative key are removed.
+     * @param dictionary id to key function
+     * @return number of samples removed
+     */
+    public int encodeIds(ToIntFunction<String> dictionary) {
+        keys = null;
+        int[] newKeys = new int[ids.length];
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            int key = dictionary.applyAsInt(ids[i]);
+            if (key < 0) {
+                continue;
+            }
+            if (n != i) {
+                move(i, n);
+            }
+            newKeys[n++] = key;
+        }
+        int removed = truncate(n);
+        keys = newKeys;
+        return removed;
+    }
+
+    private void move(int from, int to) {
+        ids[to] = ids[from];
+        timestamps[to] = timestamps[from];
+        values[to] = values[from];
+        types[to] = types[from];
+        if (null != strings) {
+            strings[to] = strings[from];
+        }
+        if (null != keys) {
+            keys[to] = keys[from];
+        }
+    }
+
+    private int truncate(int n) {
+        int removed = size - n;
+        Arrays.fill(ids, n, size, null);
+        if (null != strings) {
+            Arrays.fill(strings, n, size, null);
+        }
+        size = n;
+        return removed;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Sort the samples by (id ASC, timestamp ASC, value ASC), or by (key ASC, timestamp ASC, value ASC) if the ids are
+     * encoded. The sort is stable and does not create per sample objects. Samples of the same id and timestamp but of
+     * different types are ordered by type.
+     */
+    public void sort() {
+        if (isSorted()) {
+            return;
+        }
+        int[] index = new int[size];
+        for (int i = 0; i < size; i++) {
+            index[i] = i;
+        }
+        mergeSort(index, new int[size], 0, size);
+
+        String[] sortedIds = new String[ids.length];
+        long[] sortedTimestamps = new long[ids.length];
+        double[] sortedValues = new double[ids.length];
+        byte[] sortedTypes = new byte[ids.length];
+        String[] sortedStrings = (null == strings) ? null : new String[ids.length];
+        int[] sortedKeys = (null == keys) ? null : new int[ids.length];
+        for (int i = 0; i < size; i++) {
+            int j = index[i];
+            sortedIds[i] = ids[j];
+            sortedTimestamps[i] = timestamps[j];
+            sortedValues[i] = values[j];
+            sortedTypes[i] = types[j];
+            if (null != strings) {
+                sortedStrings[i] = strings[j];
+            }
+            if (null != keys) {
+                sortedKeys[i] = keys[j];
+            }
+        }
+        ids = sortedIds;
+        timestamps = sortedTimestamps;
+        values = sortedValues;
+        types = sortedTypes;
+        strings = sortedStrings;
+        keys = sortedKeys;
+    }
+
+    private boolean isSorted() {
+        for (int i = 1; i < size; i++) {
+            if (compare(i - 1, i) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void mergeSort(int[] index, int[] tmp, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(index, tmp, from, mid);
+        mergeSort(index, tmp, mid, to);
+        if (compare(index[mid - 1], index[mid]) <= 0) {
+            return;
+        }
+        System.arraycopy(index, from, tmp, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int k = from; k < to; k++) {
+            if (right >= to || (left < mid && compare(tmp[left], tmp[right]) <= 0)) {
+                index[k] = tmp[left++];
+            } else {
+                index[k] = tmp[right++];
+            }
+        }
+    }
+
+    private int compare(int a, int b) {
+        int c = (null != keys) ? Integer.compare(keys[a], keys[b]) : ids[a].compareTo(ids[b]);
+        if (0 != c) {
+            return c;
+        }
+        c = Long.compare(timestamps[a], timestamps[b]);
+        if (0 != c) {
+            return c;
+        }
+        c = Byte.compare(types[a], types[b]);
+        if (0 != c) {
+            return c;
+        }
+        if (types[a] == Data.Type.STRING.ordinal()) {
+            String s1 = strings[a];
+            String s2 = strings[b];
+            return (s1 == null) ? ((s2 == null) ? 0 : -1) : ((s2 == null) ? 1 : s1.compareTo(s2));
+        }
+        return Double.compare(values[a], values[b]);
+    }
+
+    /**
+     * Remove the samples equal to their predecessor. The batch must be sorted.
+     * @return number of samples removed
+     */
+    public int dedup() {
+        if (size < 2) {
+            return 0;
+        }
+        int n = 1;
+        for (int i = 1; i < size; i++) {
+            if (compare(n - 1, i) != 0) {
+                if (n != i) {
+                    move(i, n);
+                }
+                n++;
+            }
+        }
+        return truncate(n);
+    }
+
+    @Override
+    public String toString() {
+        return "DataBatch [size=" + size + "]";
+    }
+}
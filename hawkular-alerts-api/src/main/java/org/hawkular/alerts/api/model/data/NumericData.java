@@ -24,6 +24,12 @@ package org.hawkular.alerts.api.model.data;
  */
 public class NumericData extends Data {
 
+    /*
+        Kept unboxed, the inherited value field stays null. Samples arrive in high volume and the evaluation reads the
+        value through doubleValue() without allocating.
+     */
+    private double numericValue;
+
     public NumericData() {
         /*
             Default constructor is needed for JSON libraries in JAX-RS context.
@@ -32,20 +38,52 @@ public class NumericData extends Data {
     }
 
     public NumericData(String id, long timestamp, Double value) {
-        super(id, timestamp, (null == value) ? Double.NaN : value, Type.NUMERIC);
+        this(id, timestamp, (null == value) ? Double.NaN : value.doubleValue());
+    }
+
+    public NumericData(String id, long timestamp, double value) {
+        super(id, timestamp, null, Type.NUMERIC);
+        this.numericValue = value;
     }
 
     public Double getValue() {
-        return (Double) value;
+        return numericValue;
     }
 
     public void setValue(Double value) {
-        super.setValue(null == value ? Double.NaN : value);
+        this.numericValue = (null == value) ? Double.NaN : value.doubleValue();
+    }
+
+    /**
+     * @return the value without boxing. NaN if not set.
+     */
+    public double doubleValue() {
+        return numericValue;
     }
 
     @Override
     public String toString() {
-        return "NumericData [id=" + id + ", timestamp=" + timestamp + ", value=" + value + "]";
+        return "NumericData [id=" + id + ", timestamp=" + timestamp + ", value=" + numericValue + "]";
+    }
+
+    @Override
+    void assignValue(Object value) {
+        this.numericValue = (null == value) ? Double.NaN : ((Number) value).doubleValue();
+    }
+
+    @Override
+    int valueHashCode() {
+        return Double.hashCode(numericValue);
+    }
+
+    @Override
+    boolean valueEquals(Data other) {
+        return Double.compare(numericValue, ((NumericData) other).numericValue) == 0;
+    }
+
+    @Override
+    int compareValue(Data other) {
+        return Double.compare(numericValue, ((NumericData) other).numericValue);
     }
 
     @Override
@@ -22,7 +22,11 @@ import org.hawkular.alerts.api.model.trigger.Tag;
 
 /**
  * Query criteria for fetching Alerts.
- * TODO: paging, sorting
+ *
+ * Alerts are always fetched ordered by (cTime, triggerId), which is unique. Paging is keyset based: set pageSize to
+ * limit the number of fetched alerts, and to fetch the next page set the cursor to the (cTime, triggerId) of the last
+ * alert of the previous page.
+ * TODO: sorting
  * @author jay shaughnessy
  * @author lucas ponce
  */
@@ -33,6 +37,9 @@ public class AlertsCriteria {
     Collection<String> triggerIds = null;
     Tag tag = null;
     Collection<Tag> tags = null;
+    Integer pageSize = null;
+    Long cursorCTime = null;
+    String cursorTriggerId = null;
 
     public AlertsCriteria() {
         super();
@@ -104,19 +111,56 @@ public class AlertsCriteria {
         this.tags = tags;
     }
 
+    public Integer getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @param pageSize max number of Alerts to fetch, null for no limit.
+     */
+    public void setPageSize(Integer pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public Long getCursorCTime() {
+        return cursorCTime;
+    }
+
+    public String getCursorTriggerId() {
+        return cursorTriggerId;
+    }
+
+    /**
+     * @param cTime fetched Alerts must be after (cTime, triggerId) in (cTime, triggerId) order
+     * @param triggerId triggerId of the last Alert of the previous page
+     */
+    public void setCursor(long cTime, String triggerId) {
+        if (null == triggerId) {
+            throw new IllegalArgumentException("TriggerId must be not null");
+        }
+        this.cursorCTime = cTime;
+        this.cursorTriggerId = triggerId;
+    }
+
+    public boolean hasCursor() {
+        return null != cursorCTime && null != cursorTriggerId;
+    }
+
     public boolean hasCriteria() {
         return null != startTime || //
                 null != endTime || //
                 null != triggerId || //
                 (null != triggerIds && !triggerIds.isEmpty()) || //
                 null != tag || //
-                (null != tags && !tags.isEmpty());
+                (null != tags && !tags.isEmpty()) || //
+                hasCursor();
     }
 
     @Override
     public String toString() {
         return "AlertsCriteria [startTime=" + startTime + ", endTime=" + endTime + ", triggerId=" + triggerId
-                + ", triggerIds=" + triggerIds + ", tag=" + tag + ", tags=" + tags + "]";
+                + ", triggerIds=" + triggerIds + ", tag=" + tag + ", tags=" + tags + ", pageSize=" + pageSize
+                + ", cursorCTime=" + cursorCTime + ", cursorTriggerId=" + cursorTriggerId + "]";
     }
 
 }
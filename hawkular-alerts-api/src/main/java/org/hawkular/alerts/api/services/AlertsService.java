@@ -18,9 +18,11 @@ package org.hawkular.alerts.api.services;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 import org.hawkular.alerts.api.model.condition.Alert;
 import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.DataBatch;
 
 /**
  * Interface that allows to send data to the alerts engine and check resulting state.
@@ -34,6 +36,17 @@ public interface AlertsService {
 
     void sendData(Collection<Data> data);
 
+    /**
+     * Send a columnar batch of data. The engine takes ownership of the batch, it must not be modified afterwards.
+     * @param batch
+     */
+    void sendData(DataBatch batch);
+
+    /**
+     * @return the dataIds referenced by the active triggers, to filter out unneeded data before calling sendData.
+     */
+    DataInterest getDataInterest();
+
     /**
      * Reset session state.
      */
@@ -57,10 +70,39 @@ public interface AlertsService {
      */
     List<Alert> getAlerts(AlertsCriteria criteria) throws Exception;
 
+    /**
+     * Streaming version of {@link #getAlerts(AlertsCriteria)}. Alerts are decoded and delivered one at a time, in
+     * (cTime, triggerId) order, so the result set is never held in memory.
+     * @param criteria If null delivers all alerts
+     * @param consumer NotNull, receives every fetched Alert
+     */
+    void getAlerts(AlertsCriteria criteria, Consumer<Alert> consumer) throws Exception;
+
     /**
      * Persist the provided alerts.
      * @param alerts Set of unpersisted Alerts.
      * @return
      */
     void addAlerts(Collection<Alert> alerts) throws Exception;
+
+    /**
+     * @return the current batch window in milliseconds, the max time that pending data waits before firing rules
+     * when the batch size is not reached
+     */
+    long getBatchWindow();
+
+    /**
+     * @return number of data pending to be sent to the rules engine
+     */
+    int getQueueDepth();
+
+    /**
+     * @return number of alerts pending to be persisted
+     */
+    int getAlertsQueueDepth();
+
+    /**
+     * @return average time in milliseconds to persist a batch of alerts
+     */
+    double getAlertsWriteLatency();
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.api.services;
+
+/**
+ * The set of dataIds referenced by the conditions of the active triggers. Data with any other dataId can not
+ * satisfy a condition, so data producers can drop it before sending it to the {@link AlertsService}.
+ *
+ * The interest is kept up to date by the engine as triggers are reloaded, implementations are thread safe.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public interface DataInterest {
+
+    /**
+     * @param dataId the id of a datum
+     * @return true if some active condition references the dataId
+     */
+    boolean isNeeded(String dataId);
+
+    /**
+     * Record data dropped by a producer because it was not needed.
+     * @param numData number of dropped data
+     */
+    void dropped(int numData);
+
+    /**
+     * @return total number of data dropped because it was not needed
+     */
+    long getDropped();
+}
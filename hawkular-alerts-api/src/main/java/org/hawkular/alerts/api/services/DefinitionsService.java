@@ -20,6 +20,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import org.hawkular.alerts.api.model.condition.Condition;
 import org.hawkular.alerts.api.model.dampening.Dampening;
@@ -70,6 +71,17 @@ public interface DefinitionsService {
 
     Collection<Trigger> getAllTriggers() throws Exception;
 
+    /**
+     * Bulk load of the definitions of every enabled <code>Trigger</code>, with its <code>Conditions</code> and
+     * <code>Dampenings</code>. Intended to [re]load the Alerts engine, definitions are fetched with set-based
+     * queries instead of per-Trigger lookups.
+     * @param batchSize max number of <code>TriggerDefinition</code>s delivered per batch
+     * @param consumer called, in the calling thread, with each batch
+     * @throws Exception
+     */
+    void getAllEnabledDefinitions(int batchSize, Consumer<Collection<TriggerDefinition>> consumer)
+            throws Exception;
+
     /**
      * Used to generate an explicit Trigger from a Tokenized Trigger.  The dataIdMap replaces the tokens in the
      * Conditions with actual dataIds.
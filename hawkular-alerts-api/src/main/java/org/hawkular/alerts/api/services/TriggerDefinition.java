@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.api.services;
+
+import java.util.Collection;
+
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+
+/**
+ * A <code>Trigger</code> with its <code>Conditions</code> and <code>Dampenings</code>, as returned by the bulk
+ * load of definitions.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class TriggerDefinition {
+
+    private final Trigger trigger;
+    private final Collection<Condition> conditions;
+    private final Collection<Dampening> dampenings;
+
+    public TriggerDefinition(Trigger trigger, Collection<Condition> conditions, Collection<Dampening> dampenings) {
+        if (trigger == null) {
+            throw new IllegalArgumentException("Trigger must be not null");
+        }
+        if (conditions == null) {
+            throw new IllegalArgumentException("Conditions must be not null");
+        }
+        if (dampenings == null) {
+            throw new IllegalArgumentException("Dampenings must be not null");
+        }
+        this.trigger = trigger;
+        this.conditions = conditions;
+        this.dampenings = dampenings;
+    }
+
+    public Trigger getTrigger() {
+        return trigger;
+    }
+
+    public Collection<Condition> getConditions() {
+        return conditions;
+    }
+
+    public Collection<Dampening> getDampenings() {
+        return dampenings;
+    }
+
+    @Override
+    public String toString() {
+        return "TriggerDefinition [trigger=" + trigger + ", conditions=" + conditions + ", dampenings="
+                + dampenings + "]";
+    }
+}
@@ -733,4 +733,22 @@ public class JsonTest {
         assert !output.contains("match");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void jsonNumericDataTest() throws Exception {
+        String str = "{\"id\":\"test\",\"timestamp\":1,\"value\":10.5,\"type\":\"NUMERIC\"}";
+        NumericData data = objectMapper.readValue(str, NumericData.class);
+
+        assert data.getId().equals("test");
+        assert data.getTimestamp() == 1;
+        assert data.getValue() == 10.5;
+        assert data.doubleValue() == 10.5;
+        assert data.equals(new NumericData("test", 1, 10.5));
+        assert data.compareTo(new NumericData("test", 1, 11.0)) < 0;
+
+        String output = objectMapper.writeValueAsString(data);
+
+        assert output.contains("\"value\":10.5");
+        assert objectMapper.readValue(output, NumericData.class).equals(data);
+    }
+
+}
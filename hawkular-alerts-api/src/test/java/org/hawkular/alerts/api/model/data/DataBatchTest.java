@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.api.model.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.hawkular.alerts.api.model.data.Availability.AvailabilityType;
+import org.junit.Test;
+
+/**
+ * Tests for {@link DataBatch}.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class DataBatchTest {
+
+    @Test
+    public void sortAndDedupTest() {
+        Random random = new Random(42);
+        TreeSet<Data> expected = new TreeSet<>();
+        DataBatch batch = new DataBatch(4);
+        for (int i = 0; i < 5000; i++) {
+            String id = "Data-" + random.nextInt(20);
+            long timestamp = 1 + random.nextInt(100);
+            Data data;
+            // a dataId always carries the same type of data, as a TreeSet<Data> requires
+            switch (id.hashCode() % 3) {
+                case 0:
+                    data = new NumericData(id, timestamp, (double) random.nextInt(3));
+                    break;
+                case 1:
+                    data = new Availability(id, timestamp, AvailabilityType.values()[random.nextInt(3)]);
+                    break;
+                default:
+                    data = new StringData(id, timestamp, "value-" + random.nextInt(3));
+            }
+            expected.add(data);
+            batch.add(data);
+        }
+        assertEquals(5000, batch.size());
+
+        batch.sort();
+        int removed = batch.dedup();
+
+        assertEquals(5000 - expected.size(), removed);
+        List<Data> actual = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            actual.add(batch.getData(i));
+        }
+        assertEquals(new ArrayList<>(expected), actual);
+    }
+
+    @Test
+    public void columnsTest() {
+        DataBatch batch = new DataBatch(0);
+        batch.addNumeric("n", 1, 10.5);
+        batch.addAvailability("a", 2, AvailabilityType.DOWN);
+        batch.addString("s", 3, "test");
+
+        DataBatch other = new DataBatch();
+        other.addAll(batch);
+        other.add(batch, 0);
+        assertEquals(4, other.size());
+
+        assertEquals(Data.Type.NUMERIC, other.getType(0));
+        assertEquals(10.5, other.getValue(0), 0.0);
+        assertNull(other.getAvailability(0));
+        assertNull(other.getString(0));
+        assertEquals(AvailabilityType.DOWN, other.getAvailability(1));
+        assertEquals("test", other.getString(2));
+        assertEquals(new NumericData("n", 1, 10.5), other.getData(3));
+
+        other.sort();
+        assertEquals("a", other.getId(0));
+        assertEquals(1, other.dedup());
+        assertEquals(3, other.size());
+
+        other.clear();
+        assertEquals(0, other.size());
+    }
+
+    @Test
+    public void encodeIdsTest() {
+        DataBatch batch = new DataBatch();
+        batch.addNumeric("b", 2, 1.0);
+        batch.addNumeric("unknown", 1, 1.0);
+        batch.addNumeric("a", 2, 1.0);
+        batch.addNumeric("b", 1, 1.0);
+        batch.addNumeric("a", 1, 1.0);
+
+        // keys order the batch, not the ids
+        assertEquals(1, batch.encodeIds(id -> "a".equals(id) ? 1 : ("b".equals(id) ? 0 : -1)));
+        assertEquals(4, batch.size());
+        batch.sort();
+        assertEquals("b", batch.getId(0));
+        assertEquals(0, batch.getKey(0));
+        assertEquals(1, batch.getTimestamp(0));
+        assertEquals("a", batch.getId(3));
+        assertEquals(1, batch.getKey(3));
+        assertEquals(2, batch.getTimestamp(3));
+
+        batch.addNumeric("a", 3, 1.0);
+        try {
+            batch.getKey(0);
+            fail("Keys must be reset by add");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullIdTest() {
+        new DataBatch().addNumeric(null, 1, 1.0);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.api.model.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * NumericData keeps its value unboxed but must keep the Double semantics for equality, hashing and ordering.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class NumericDataTest {
+
+    private static final double[] VALUES = { Double.NEGATIVE_INFINITY, -1.5, -0.0, 0.0, Double.MIN_VALUE, 1.5,
+            Double.MAX_VALUE, Double.POSITIVE_INFINITY, Double.NaN };
+
+    @Test
+    public void doubleSemanticsTest() {
+        for (double v1 : VALUES) {
+            for (double v2 : VALUES) {
+                NumericData d1 = new NumericData("NumericData-01", 1, v1);
+                NumericData d2 = new NumericData("NumericData-01", 1, v2);
+                Double boxed1 = v1;
+                Double boxed2 = v2;
+                String pair = v1 + ", " + v2;
+
+                assertEquals(pair, boxed1.equals(boxed2), d1.equals(d2));
+                assertEquals(pair, Integer.signum(boxed1.compareTo(boxed2)), Integer.signum(d1.compareTo(d2)));
+                if (d1.equals(d2)) {
+                    assertEquals(pair, d1.hashCode(), d2.hashCode());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void valueTest() {
+        NumericData data = new NumericData("NumericData-01", 1, 10.0);
+        assertEquals(10.0, data.doubleValue(), 0);
+        assertEquals(Double.valueOf(10.0), data.getValue());
+
+        // set through the Data supertype, as the JSON libraries may do
+        Data asData = data;
+        asData.setValue(20);
+        assertEquals(20.0, data.doubleValue(), 0);
+        data.setValue((Double) null);
+        assertEquals(Double.NaN, data.doubleValue(), 0);
+
+        // the inherited value field is not used
+        assertNull(asData.value);
+        assertEquals(new NumericData("NumericData-01", 1, Double.NaN), new NumericData("NumericData-01", 1,
+                (Double) null));
+    }
+}
@@ -16,19 +16,25 @@
  */
 package org.hawkular.alerts.bus.listener;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.ejb.ActivationConfigProperty;
 import javax.ejb.EJB;
 import javax.ejb.MessageDriven;
 import javax.jms.MessageListener;
 
+import org.hawkular.alerts.api.model.data.Data;
 import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.api.services.DataInterest;
 import org.hawkular.alerts.bus.messages.AlertDataMessage;
 import org.hawkular.bus.common.consumer.BasicMessageListener;
 
 import org.jboss.logging.Logger;
 
 /**
- * A component that listens from the bus data to send into the alerts engine.
+ * A component that listens from the bus data to send into the alerts engine. Data not referenced by any active
+ * trigger is dropped.
  *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
@@ -42,9 +48,34 @@ public class AlertDataListener extends BasicMessageListener<AlertDataMessage> {
     @EJB
     AlertsService alerts;
 
+    @EJB
+    DataBatcher batcher;
+
     @Override
     protected void onBasicMessage(AlertDataMessage msg) {
         log.debugf("Message received: [%s]", msg);
-        alerts.sendData(msg.getData());
+
+        DataInterest interest = alerts.getDataInterest();
+        List<Data> data = msg.getData();
+        if (null == data) {
+            return;
+        }
+        List<Data> alertData = new ArrayList<>(data.size());
+        for (Data d : data) {
+            if (interest.isNeeded(d.getId())) {
+                alertData.add(d);
+            }
+        }
+
+        int dropped = data.size() - alertData.size();
+        if (dropped > 0) {
+            interest.dropped(dropped);
+            log.debugf("Dropped [%1$d] unneeded datum(s)", dropped);
+        }
+        if (alertData.isEmpty()) {
+            return;
+        }
+
+        batcher.sendData(alertData);
     }
 }
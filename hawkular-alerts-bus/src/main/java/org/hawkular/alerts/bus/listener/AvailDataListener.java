@@ -16,6 +16,8 @@
  */
 package org.hawkular.alerts.bus.listener;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -23,15 +25,23 @@ import javax.annotation.PostConstruct;
 import javax.ejb.ActivationConfigProperty;
 import javax.ejb.EJB;
 import javax.ejb.MessageDriven;
+import javax.jms.JMSException;
+import javax.jms.Message;
 import javax.jms.MessageListener;
+import javax.jms.TextMessage;
 
-import org.hawkular.alerts.api.model.data.Availability;
-import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.Availability.AvailabilityType;
+import org.hawkular.alerts.api.model.data.DataBatch;
 import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.api.services.DataInterest;
 import org.hawkular.alerts.api.services.DefinitionsService;
+import org.hawkular.alerts.bus.log.MsgLogger;
 import org.hawkular.alerts.bus.messages.AvailDataMessage;
 import org.hawkular.alerts.bus.messages.AvailDataMessage.AvailData;
 import org.hawkular.alerts.bus.messages.AvailDataMessage.SingleAvail;
+import org.hawkular.alerts.bus.messages.BinaryDataCodec;
+import org.hawkular.alerts.bus.messages.StreamingDataDecoder;
+import org.hawkular.alerts.bus.messages.StreamingDataDecoder.AvailHandler;
 import org.hawkular.bus.common.consumer.BasicMessageListener;
 import org.jboss.logging.Logger;
 
@@ -48,10 +58,12 @@ import com.google.gson.GsonBuilder;
  *  { tenantId , List<org.rhq.metrics.client.common.SingleMetric> }
  * </code>
  * </p>
- * TODO: Add filtering of relevant Metric Ids.  This means fetching the active triggers, running through the conditions,
- * and collecting the dataIds.  Then using thise to filter the metricIds converted and forwarded to the engine. Note
- * that we will need a way to update that Id set as changes occur to the Trigger population. Changes are
- * rare so we don't want it to be too cumbersome.
+ * Producers can instead send the batch in the compact {@link BinaryDataCodec} encoding, as a BytesMessage with the
+ * {@link BinaryDataCodec#ENCODING} property set.
+ * </p>
+ * Only the data referenced by the conditions of active triggers, as reported by the engine's DataInterest, is
+ * converted and forwarded to the engine, the rest is dropped here and counted. JSON and binary messages are decoded
+ * as a stream, without building the intermediate message objects.
  *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
@@ -60,11 +72,15 @@ import com.google.gson.GsonBuilder;
         @ActivationConfigProperty(propertyName = "destinationType", propertyValue = "javax.jms.Topic"),
         @ActivationConfigProperty(propertyName = "destination", propertyValue = "HawkularAvailData") })
 public class AvailDataListener extends BasicMessageListener<AvailDataMessage> {
+    private final MsgLogger msgLog = MsgLogger.LOGGER;
     private final Logger log = Logger.getLogger(AvailDataListener.class);
 
     @EJB
     AlertsService alerts;
 
+    @EJB
+    DataBatcher batcher;
+
     @EJB
     DefinitionsService definitions;
 
@@ -73,9 +89,33 @@ public class AvailDataListener extends BasicMessageListener<AvailDataMessage> {
 
     }
 
-    private boolean isNeeded(String metricId) {
-        // TODO: probably a Map lookup
-        return true;
+    /*
+        Decode the message as a stream, straight into a DataBatch, applying the interest filter while parsing. Only a
+        message that is neither binary nor text takes the generic path through onBasicMessage.
+     */
+    @Override
+    public void onMessage(Message message) {
+        DataInterest interest = alerts.getDataInterest();
+        DataBatch alertData = new DataBatch();
+        AvailHandler handler = (tenantId, id, timestamp, avail) -> alertData.addAvailability(id, timestamp,
+                (null == avail) ? null : AvailabilityType.valueOf(avail));
+        int total;
+        try {
+            if (BinaryDataCodec.isBinary(message)) {
+                total = BinaryDataCodec.decodeAvailData(BinaryDataCodec.getBody(message), interest::isNeeded, handler);
+            } else if (message instanceof TextMessage) {
+                total = StreamingDataDecoder.decodeAvailData(new StringReader(((TextMessage) message).getText()),
+                        interest::isNeeded, handler);
+            } else {
+                super.onMessage(message);
+                return;
+            }
+        } catch (JMSException | IOException e) {
+            log.debugf(e.getMessage(), e);
+            msgLog.errorDecodingMessage(e.getMessage());
+            return;
+        }
+        send(interest, total, alertData);
     }
 
     @Override
@@ -84,16 +124,31 @@ public class AvailDataListener extends BasicMessageListener<AvailDataMessage> {
 
         AvailData availData = msg.getAvailData();
 
+        DataInterest interest = alerts.getDataInterest();
         List<SingleAvail> data = availData.getData();
-        List<Data> alertData = new ArrayList<>(data.size());
+        DataBatch alertData = new DataBatch(data.size());
         for (SingleAvail a : data) {
-            if (isNeeded(a.getId())) {
-                alertData.add(new Availability(a.getId(), a.getTimestamp(), a.getAvail()));
+            if (interest.isNeeded(a.getId())) {
+                alertData.addAvailability(a.getId(), a.getTimestamp(),
+                        (null == a.getAvail()) ? null : AvailabilityType.valueOf(a.getAvail()));
             }
         }
 
+        send(interest, data.size(), alertData);
+    }
+
+    private void send(DataInterest interest, int total, DataBatch alertData) {
+        int dropped = total - alertData.size();
+        if (dropped > 0) {
+            interest.dropped(dropped);
+            log.debugf("Dropped [%1$d] unneeded avail datum(s)", dropped);
+        }
+        if (alertData.isEmpty()) {
+            return;
+        }
+
         log.debugf("Sending: [%s]", alertData);
-        alerts.sendData(alertData);
+        batcher.sendData(alertData);
     }
 
     // just dumps the expected json
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.bus.listener;
+
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.DataBatch;
+import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.bus.log.MsgLogger;
+import org.jboss.logging.Logger;
+
+/**
+ * Forwards the data converted by the bus listeners to the {@link AlertsService}.
+ *
+ * By default every message is forwarded on its own. With the org.hawkular.alerts.bus.BATCH system property set to
+ * true the data of many messages is gathered and forwarded in a single sendData() call, as soon as BATCH_SIZE data
+ * are pending or at most every BATCH_WINDOW ms. This amortizes the per call container overhead when the bus
+ * delivers many small messages. The engine queues the data it receives before processing it anyway, so batching
+ * here only adds up to BATCH_WINDOW ms of latency.
+ *
+ * Batches are forwarded one at a time, in arrival order, as a columnar {@link DataBatch}.
+ *
+ * The flusher thread is created by the container's default ManagedThreadFactory. On shutdown it is waited for, at
+ * most SHUTDOWN_TIMEOUT ms, before the last data is sent.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class DataBatcher {
+    private final MsgLogger msgLog = MsgLogger.LOGGER;
+    private final Logger log = Logger.getLogger(DataBatcher.class);
+
+    private static final boolean BATCH;
+    private static final int BATCH_SIZE;
+    private static final int BATCH_WINDOW;
+    private static final int SHUTDOWN_TIMEOUT;
+
+    static {
+        BATCH = Boolean.getBoolean("org.hawkular.alerts.bus.BATCH");
+        BATCH_SIZE = getIntProperty("org.hawkular.alerts.bus.BATCH_SIZE", 1000);
+        BATCH_WINDOW = getIntProperty("org.hawkular.alerts.bus.BATCH_WINDOW", 10);
+        SHUTDOWN_TIMEOUT = getIntProperty("org.hawkular.alerts.bus.SHUTDOWN_TIMEOUT", 10000);
+    }
+
+    private static int getIntProperty(String name, int defaultValue) {
+        try {
+            return new Integer(System.getProperty(name)).intValue();
+        } catch (Exception ignored) {
+            return defaultValue;
+        }
+    }
+
+    @EJB
+    AlertsService alerts;
+
+    @Resource
+    ManagedThreadFactory threadFactory;
+
+    private final boolean batch;
+    private final int batchSize;
+    private final long window;
+
+    private final Object sendLock = new Object();
+    private DataBatch pending = new DataBatch();
+    private volatile boolean running;
+    private Thread flusher;
+
+    public DataBatcher() {
+        this(null, BATCH, BATCH_SIZE, BATCH_WINDOW);
+    }
+
+    public DataBatcher(AlertsService alerts, boolean batch, int batchSize, int batchWindow) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("BatchSize must be greater than 0");
+        }
+        this.alerts = alerts;
+        this.batch = batch;
+        this.batchSize = batchSize;
+        this.window = TimeUnit.MILLISECONDS.toNanos(Math.max(1, batchWindow));
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!batch) {
+            return;
+        }
+        log.debugf("Batching data in [%1$d] data or [%2$d] ms windows", batchSize,
+                TimeUnit.NANOSECONDS.toMillis(window));
+        running = true;
+        // outside of a container, as in tests, a plain thread is used
+        ThreadFactory factory = threadFactory != null ? threadFactory : Executors.defaultThreadFactory();
+        flusher = factory.newThread(() -> {
+            while (running) {
+                LockSupport.parkNanos(window);
+                flush(false);
+            }
+        });
+        flusher.setName("DataBatcher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        Thread t = flusher;
+        if (null != t) {
+            LockSupport.unpark(t);
+            try {
+                t.join(SHUTDOWN_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flusher = null;
+        }
+        flush(false);
+    }
+
+    public boolean isBatch() {
+        return batch;
+    }
+
+    /**
+     * Forward the data, immediately or as part of the next batch.
+     */
+    public void sendData(Collection<Data> data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data must be not null");
+        }
+        if (data.isEmpty()) {
+            return;
+        }
+        if (!batch || !running) {
+            alerts.sendData(data);
+            return;
+        }
+        boolean full;
+        synchronized (this) {
+            pending.addAll(data);
+            full = pending.size() >= batchSize;
+        }
+        if (full) {
+            flush(true);
+        }
+    }
+
+    /**
+     * Forward the batch, immediately or as part of the next batch. The batch must not be modified afterwards.
+     */
+    public void sendData(DataBatch data) {
+        if (data == null) {
+            throw new IllegalArgumentException("Data must be not null");
+        }
+        if (data.isEmpty()) {
+            return;
+        }
+        if (!batch || !running) {
+            alerts.sendData(data);
+            return;
+        }
+        boolean full;
+        synchronized (this) {
+            pending.addAll(data);
+            full = pending.size() >= batchSize;
+        }
+        if (full) {
+            flush(true);
+        }
+    }
+
+    /**
+     * @return number of data waiting for the next batch
+     */
+    public synchronized int getPending() {
+        return pending.size();
+    }
+
+    /*
+        Holding sendLock while swapping and sending keeps the batches in order. When the batch is full the caller
+        does the send, the others keep adding to the new batch.
+     */
+    private void flush(boolean onlyIfFull) {
+        synchronized (sendLock) {
+            DataBatch toSend;
+            synchronized (this) {
+                if (pending.isEmpty() || (onlyIfFull && pending.size() < batchSize)) {
+                    return;
+                }
+                toSend = pending;
+                pending = new DataBatch();
+            }
+            try {
+                alerts.sendData(toSend);
+            } catch (Exception e) {
+                log.debugf(e.getMessage(), e);
+                msgLog.errorSendingData(toSend.size(), e.getMessage());
+            }
+        }
+    }
+}
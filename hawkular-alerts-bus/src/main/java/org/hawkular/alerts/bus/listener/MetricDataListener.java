@@ -16,22 +16,30 @@
  */
 package org.hawkular.alerts.bus.listener;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.List;
 
 import javax.annotation.PostConstruct;
 import javax.ejb.ActivationConfigProperty;
 import javax.ejb.EJB;
 import javax.ejb.MessageDriven;
+import javax.jms.JMSException;
+import javax.jms.Message;
 import javax.jms.MessageListener;
+import javax.jms.TextMessage;
 
-import org.hawkular.alerts.api.model.data.Data;
-import org.hawkular.alerts.api.model.data.NumericData;
+import org.hawkular.alerts.api.model.data.DataBatch;
 import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.api.services.DataInterest;
 import org.hawkular.alerts.api.services.DefinitionsService;
+import org.hawkular.alerts.bus.log.MsgLogger;
+import org.hawkular.alerts.bus.messages.BinaryDataCodec;
 import org.hawkular.alerts.bus.messages.MetricDataMessage;
 import org.hawkular.alerts.bus.messages.MetricDataMessage.MetricData;
 import org.hawkular.alerts.bus.messages.MetricDataMessage.SingleMetric;
+import org.hawkular.alerts.bus.messages.StreamingDataDecoder;
+import org.hawkular.alerts.bus.messages.StreamingDataDecoder.MetricHandler;
 import org.hawkular.bus.common.consumer.BasicMessageListener;
 
 import org.jboss.logging.Logger;
@@ -47,10 +55,12 @@ import org.jboss.logging.Logger;
  *  { tenantId , List<org.rhq.metrics.client.common.SingleMetric> }
  * </code>
  * </p>
- * TODO: Add filtering of relevant Metric Ids.  This means fetching the active triggers, running through the conditions,
- * and collecting the dataIds.  Then using thise to filter the metricIds converted and forwarded to the engine. Note
- * that we will need a way to update that Id set as changes occur to the Trigger population. Changes are
- * rare so we don't want it to be too cumbersome.
+ * Producers can instead send the batch in the compact {@link BinaryDataCodec} encoding, as a BytesMessage with the
+ * {@link BinaryDataCodec#ENCODING} property set.
+ * </p>
+ * Only the data referenced by the conditions of active triggers, as reported by the engine's DataInterest, is
+ * converted and forwarded to the engine, the rest is dropped here and counted. JSON and binary messages are decoded
+ * as a stream, without building the intermediate message objects.
  *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
@@ -59,11 +69,15 @@ import org.jboss.logging.Logger;
         @ActivationConfigProperty(propertyName = "destinationType", propertyValue = "javax.jms.Topic"),
         @ActivationConfigProperty(propertyName = "destination", propertyValue = "HawkularMetricData") })
 public class MetricDataListener extends BasicMessageListener<MetricDataMessage> {
+    private final MsgLogger msgLog = MsgLogger.LOGGER;
     private final Logger log = Logger.getLogger(MetricDataListener.class);
 
     @EJB
     AlertsService alerts;
 
+    @EJB
+    DataBatcher batcher;
+
     @EJB
     DefinitionsService definitions;
 
@@ -72,9 +86,32 @@ public class MetricDataListener extends BasicMessageListener<MetricDataMessage>
 
     }
 
-    private boolean isNeeded(String metricId) {
-        // TODO: probably a Map lookup
-        return true;
+    /*
+        Decode the message as a stream, straight into a DataBatch, applying the interest filter while parsing. Only a
+        message that is neither binary nor text takes the generic path through onBasicMessage.
+     */
+    @Override
+    public void onMessage(Message message) {
+        DataInterest interest = alerts.getDataInterest();
+        DataBatch alertData = new DataBatch();
+        MetricHandler handler = alertData::addNumeric;
+        int total;
+        try {
+            if (BinaryDataCodec.isBinary(message)) {
+                total = BinaryDataCodec.decodeMetricData(BinaryDataCodec.getBody(message), interest::isNeeded, handler);
+            } else if (message instanceof TextMessage) {
+                total = StreamingDataDecoder.decodeMetricData(new StringReader(((TextMessage) message).getText()),
+                        interest::isNeeded, handler);
+            } else {
+                super.onMessage(message);
+                return;
+            }
+        } catch (JMSException | IOException e) {
+            log.debugf(e.getMessage(), e);
+            msgLog.errorDecodingMessage(e.getMessage());
+            return;
+        }
+        send(interest, total, alertData);
     }
 
     @Override
@@ -84,15 +121,29 @@ public class MetricDataListener extends BasicMessageListener<MetricDataMessage>
         // TODO: tenants?
         MetricData metricData = msg.getMetricData();
 
+        DataInterest interest = alerts.getDataInterest();
         List<SingleMetric> data = metricData.getData();
-        List<Data> alertData = new ArrayList<>(data.size());
+        DataBatch alertData = new DataBatch(data.size());
         for (SingleMetric m : data) {
-            if (isNeeded(m.getSource())) {
-                alertData.add(new NumericData(m.getSource(), m.getTimestamp(), m.getValue()));
+            if (interest.isNeeded(m.getSource())) {
+                alertData.addNumeric(m.getSource(), m.getTimestamp(), m.getValue());
             }
         }
 
+        send(interest, data.size(), alertData);
+    }
+
+    private void send(DataInterest interest, int total, DataBatch alertData) {
+        int dropped = total - alertData.size();
+        if (dropped > 0) {
+            interest.dropped(dropped);
+            log.debugf("Dropped [%1$d] unneeded metric datum(s)", dropped);
+        }
+        if (alertData.isEmpty()) {
+            return;
+        }
+
         log.debugf("Sending: [%s]", alertData);
-        alerts.sendData(alertData);
+        batcher.sendData(alertData);
     }
 }
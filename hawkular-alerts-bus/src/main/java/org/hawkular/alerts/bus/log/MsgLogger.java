@@ -68,4 +68,12 @@ public interface MsgLogger extends BasicLogger {
     @LogMessage(level = Logger.Level.ERROR)
     @Message(id = 210009, value = "Error accesing to DefinitionsService. Description: [%s]")
     void errorDefinitionsService(String msg);
+
+    @LogMessage(level = Logger.Level.ERROR)
+    @Message(id = 210010, value = "Error sending [%s] data to the alerts engine. Description: [%s]")
+    void errorSendingData(int numData, String msg);
+
+    @LogMessage(level = Logger.Level.ERROR)
+    @Message(id = 210011, value = "Error decoding data message. Description: [%s]")
+    void errorDecodingMessage(String msg);
 }
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.bus.messages;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+import org.hawkular.alerts.bus.messages.AvailDataMessage.AvailData;
+import org.hawkular.alerts.bus.messages.AvailDataMessage.SingleAvail;
+import org.hawkular.alerts.bus.messages.MetricDataMessage.MetricData;
+import org.hawkular.alerts.bus.messages.MetricDataMessage.SingleMetric;
+import org.hawkular.alerts.bus.messages.StreamingDataDecoder.AvailHandler;
+import org.hawkular.alerts.bus.messages.StreamingDataDecoder.MetricHandler;
+
+/**
+ * A compact binary encoding of {@link MetricData} and {@link AvailData}, an alternative to the default JSON.
+ *
+ * A producer opts in by sending a <code>BytesMessage</code> with the {@link #ENCODING} string property set to
+ * {@link #BINARY}. Messages without the property are JSON, as before. The layout is:
+ * <pre>
+ *   batch      := version:byte type:byte body
+ *   metrics    := tenantId:ref dictionary count:varint (source:ref delta:zigzag value:double)*
+ *   avails     := dictionary count:varint (tenantId:ref id:ref delta:zigzag avail:ref)*
+ *   dictionary := size:varint (string:utf)*
+ *   ref        := varint, 0 for null or i + 1 for the i-th dictionary string
+ *   delta      := timestamp minus the previous timestamp in the batch, the first one minus 0
+ * </pre>
+ * Repeated ids are written once per batch, timestamps of a batch are close to each other so deltas take a couple
+ * of bytes, and values are raw IEEE 754 doubles, so no number is ever formatted or parsed as text.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class BinaryDataCodec {
+
+    /**
+     * Message property naming the encoding of the message body.
+     */
+    public static final String ENCODING = "HawkularDataEncoding";
+
+    /**
+     * Value of the {@link #ENCODING} property for this encoding.
+     */
+    public static final String BINARY = "binary-v1";
+
+    private static final byte VERSION = 1;
+    private static final byte TYPE_METRIC = 1;
+    private static final byte TYPE_AVAIL = 2;
+
+    private BinaryDataCodec() {
+    }
+
+    /**
+     * @return true if the message body is in this binary encoding
+     */
+    public static boolean isBinary(Message message) throws JMSException {
+        return message instanceof BytesMessage && BINARY.equals(message.getStringProperty(ENCODING));
+    }
+
+    /**
+     * @return the whole body of a <code>BytesMessage</code>
+     */
+    public static byte[] getBody(Message message) throws JMSException {
+        BytesMessage bytesMessage = (BytesMessage) message;
+        byte[] body = new byte[(int) bytesMessage.getBodyLength()];
+        bytesMessage.readBytes(body);
+        return body;
+    }
+
+    public static byte[] encode(MetricData metricData) throws IOException {
+        List<SingleMetric> data = null != metricData.getData() ? metricData.getData() : new ArrayList<>();
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        int tenantRef = ref(dictionary, metricData.getTenantId());
+        int[] sourceRefs = new int[data.size()];
+        for (int i = 0; i < sourceRefs.length; i++) {
+            sourceRefs[i] = ref(dictionary, data.get(i).getSource());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + data.size() * 12);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(VERSION);
+        out.writeByte(TYPE_METRIC);
+        writeVarLong(out, tenantRef);
+        writeDictionary(out, dictionary);
+        writeVarLong(out, data.size());
+        long previous = 0L;
+        for (int i = 0; i < sourceRefs.length; i++) {
+            SingleMetric m = data.get(i);
+            writeVarLong(out, sourceRefs[i]);
+            writeVarLong(out, zigzag(m.getTimestamp() - previous));
+            out.writeDouble(m.getValue());
+            previous = m.getTimestamp();
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    public static byte[] encode(AvailData availData) throws IOException {
+        List<SingleAvail> data = null != availData.getData() ? availData.getData() : new ArrayList<>();
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        int[] refs = new int[data.size() * 3];
+        for (int i = 0; i < data.size(); i++) {
+            SingleAvail a = data.get(i);
+            refs[i * 3] = ref(dictionary, a.getTenantId());
+            refs[i * 3 + 1] = ref(dictionary, a.getId());
+            refs[i * 3 + 2] = ref(dictionary, a.getAvail());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + data.size() * 6);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(VERSION);
+        out.writeByte(TYPE_AVAIL);
+        writeDictionary(out, dictionary);
+        writeVarLong(out, data.size());
+        long previous = 0L;
+        for (int i = 0; i < data.size(); i++) {
+            SingleAvail a = data.get(i);
+            writeVarLong(out, refs[i * 3]);
+            writeVarLong(out, refs[i * 3 + 1]);
+            writeVarLong(out, zigzag(a.getTimestamp() - previous));
+            writeVarLong(out, refs[i * 3 + 2]);
+            previous = a.getTimestamp();
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    public static MetricData decodeMetricData(byte[] body) throws IOException {
+        List<SingleMetric> data = new ArrayList<>();
+        MetricData metricData = new MetricData();
+        metricData.setTenantId(decodeMetricData(body, source -> true,
+                (source, timestamp, value) -> data.add(new SingleMetric(source, timestamp, value)), null));
+        metricData.setData(data);
+        return metricData;
+    }
+
+    /**
+     * Streaming decoding of a metric batch. The filter is tested once per distinct source of the batch.
+     *
+     * @param filter tested with the sources, the samples not accepted are skipped
+     * @param handler receives the accepted samples
+     * @return number of samples in the batch, accepted or not
+     */
+    public static int decodeMetricData(byte[] body, Predicate<String> filter, MetricHandler handler)
+            throws IOException {
+        int[] total = new int[1];
+        decodeMetricData(body, filter, handler, total);
+        return total[0];
+    }
+
+    private static String decodeMetricData(byte[] body, Predicate<String> filter, MetricHandler handler,
+            int[] total) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        readHeader(in, TYPE_METRIC);
+        int tenantRef = (int) readVarLong(in);
+        String[] dictionary = readDictionary(in, body.length);
+        boolean[] accepted = accept(dictionary, filter);
+        int size = readSize(in, body.length);
+        long timestamp = 0L;
+        for (int i = 0; i < size; i++) {
+            int ref = (int) readVarLong(in);
+            timestamp += unzigzag(readVarLong(in));
+            double value = in.readDouble();
+            if (accepted[checkRef(dictionary, ref)]) {
+                handler.metric(deref(dictionary, ref), timestamp, value);
+            }
+        }
+        if (null != total) {
+            total[0] = size;
+        }
+        return deref(dictionary, tenantRef);
+    }
+    public static AvailData decodeAvailData(byte[] body) throws IOException {
+        List<SingleAvail> data = new ArrayList<>();
+        decodeAvailData(body, id -> true,
+                (tenantId, id, timestamp, avail) -> data.add(new SingleAvail(tenantId, id, timestamp, avail)));
+        AvailData availData = new AvailData();
+        availData.setData(data);
+        return availData;
+    }
+
+    /**
+     * Streaming decoding of an avail batch. The filter is tested once per distinct string of the batch.
+     *
+     * @param filter tested with the ids, the samples not accepted are skipped
+     * @param handler receives the accepted samples
+     * @return number of samples in the batch, accepted or not
+     */
+    public static int decodeAvailData(byte[] body, Predicate<String> filter, AvailHandler handler)
+            throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        readHeader(in, TYPE_AVAIL);
+        String[] dictionary = readDictionary(in, body.length);
+        boolean[] accepted = accept(dictionary, filter);
+        int size = readSize(in, body.length);
+        long timestamp = 0L;
+        for (int i = 0; i < size; i++) {
+            int tenantRef = (int) readVarLong(in);
+            int idRef = (int) readVarLong(in);
+            timestamp += unzigzag(readVarLong(in));
+            int availRef = (int) readVarLong(in);
+            if (accepted[checkRef(dictionary, idRef)]) {
+                handler.avail(deref(dictionary, tenantRef), deref(dictionary, idRef), timestamp,
+                        deref(dictionary, availRef));
+            }
+        }
+        return size;
+    }
+    private static int ref(Map<String, Integer> dictionary, String s) {
+        if (null == s) {
+            return 0;
+        }
+        Integer ref = dictionary.get(s);
+        if (null == ref) {
+            ref = dictionary.size() + 1;
+            dictionary.put(s, ref);
+        }
+        return ref;
+    }
+
+    private static String deref(String[] dictionary, int ref) throws IOException {
+        return 0 == checkRef(dictionary, ref) ? null : dictionary[ref - 1];
+    }
+
+    private static int checkRef(String[] dictionary, int ref) throws IOException {
+        if (ref < 0 || ref > dictionary.length) {
+            throw new IOException("Invalid dictionary reference [" + ref + "]");
+        }
+        return ref;
+    }
+
+    /*
+        accepted[ref], the filter is tested once per dictionary string
+     */
+    private static boolean[] accept(String[] dictionary, Predicate<String> filter) {
+        boolean[] accepted = new boolean[dictionary.length + 1];
+        accepted[0] = filter.test(null);
+        for (int i = 0; i < dictionary.length; i++) {
+            accepted[i + 1] = filter.test(dictionary[i]);
+        }
+        return accepted;
+    }
+
+    private static void writeDictionary(DataOutput out, Map<String, Integer> dictionary) throws IOException {
+        writeVarLong(out, dictionary.size());
+        for (String s : dictionary.keySet()) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String[] readDictionary(DataInput in, int max) throws IOException {
+        String[] dictionary = new String[readSize(in, max)];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = in.readUTF();
+        }
+        return dictionary;
+    }
+
+    private static void readHeader(DataInput in, byte type) throws IOException {
+        byte version = in.readByte();
+        if (VERSION != version) {
+            throw new IOException("Unsupported version [" + version + "]");
+        }
+        byte actualType = in.readByte();
+        if (type != actualType) {
+            throw new IOException("Unexpected batch type [" + actualType + "], expected [" + type + "]");
+        }
+    }
+
+    /*
+        Every entry takes at least one byte, a bigger size can only come from a corrupt message
+     */
+    private static int readSize(DataInput in, int max) throws IOException {
+        long size = readVarLong(in);
+        if (size < 0 || size > max) {
+            throw new IOException("Invalid size [" + size + "]");
+        }
+        return (int) size;
+    }
+
+    private static long zigzag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    private static long unzigzag(long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    private static void writeVarLong(DataOutput out, long n) throws IOException {
+        while ((n & ~0x7FL) != 0) {
+            out.writeByte((int) ((n & 0x7F) | 0x80));
+            n >>>= 7;
+        }
+        out.writeByte((int) n);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long result = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.bus.messages;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Predicate;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Decodes the JSON of {@link MetricDataMessage} and {@link AvailDataMessage} as a token stream, handing every
+ * sample straight to a handler. No MetricData, AvailData or per sample POJO is built, and the samples rejected by
+ * the filter are skipped without further allocation.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class StreamingDataDecoder {
+
+    /**
+     * Receives the decoded samples of a metric batch.
+     */
+    @FunctionalInterface
+    public interface MetricHandler {
+        void metric(String source, long timestamp, double value);
+    }
+
+    /**
+     * Receives the decoded samples of an avail batch.
+     */
+    @FunctionalInterface
+    public interface AvailHandler {
+        void avail(String tenantId, String id, long timestamp, String avail);
+    }
+
+    private StreamingDataDecoder() {
+    }
+
+    /**
+     * @param json a MetricDataMessage
+     * @param filter tested with the source of every sample, the samples not accepted are skipped
+     * @param handler receives the accepted samples
+     * @return number of samples in the message, accepted or not
+     */
+    public static int decodeMetricData(Reader json, Predicate<String> filter, MetricHandler handler)
+            throws IOException {
+        int total = 0;
+        try (JsonReader in = new JsonReader(json)) {
+            in.beginObject();
+            while (in.hasNext()) {
+                if (!"metricData".equals(in.nextName()) || isNull(in)) {
+                    in.skipValue();
+                    continue;
+                }
+                in.beginObject();
+                while (in.hasNext()) {
+                    if (!"data".equals(in.nextName()) || isNull(in)) {
+                        in.skipValue();
+                        continue;
+                    }
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        total++;
+                        String source = null;
+                        long timestamp = 0L;
+                        double value = 0.0;
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            String name = in.nextName();
+                            if (isNull(in)) {
+                                in.skipValue();
+                            } else if ("source".equals(name)) {
+                                source = in.nextString();
+                            } else if ("timestamp".equals(name)) {
+                                timestamp = in.nextLong();
+                            } else if ("value".equals(name)) {
+                                value = in.nextDouble();
+                            } else {
+                                in.skipValue();
+                            }
+                        }
+                        in.endObject();
+                        if (filter.test(source)) {
+                            handler.metric(source, timestamp, value);
+                        }
+                    }
+                    in.endArray();
+                }
+                in.endObject();
+            }
+            in.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return total;
+    }
+
+    /**
+     * @param json an AvailDataMessage
+     * @param filter tested with the id of every sample, the samples not accepted are skipped
+     * @param handler receives the accepted samples
+     * @return number of samples in the message, accepted or not
+     */
+    public static int decodeAvailData(Reader json, Predicate<String> filter, AvailHandler handler)
+            throws IOException {
+        int total = 0;
+        try (JsonReader in = new JsonReader(json)) {
+            in.beginObject();
+            while (in.hasNext()) {
+                if (!"availData".equals(in.nextName()) || isNull(in)) {
+                    in.skipValue();
+                    continue;
+                }
+                in.beginObject();
+                while (in.hasNext()) {
+                    if (!"data".equals(in.nextName()) || isNull(in)) {
+                        in.skipValue();
+                        continue;
+                    }
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        total++;
+                        String tenantId = null;
+                        String id = null;
+                        long timestamp = 0L;
+                        String avail = null;
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            String name = in.nextName();
+                            if (isNull(in)) {
+                                in.skipValue();
+                            } else if ("tenantId".equals(name)) {
+                                tenantId = in.nextString();
+                            } else if ("id".equals(name)) {
+                                id = in.nextString();
+                            } else if ("timestamp".equals(name)) {
+                                timestamp = in.nextLong();
+                            } else if ("avail".equals(name)) {
+                                avail = in.nextString();
+                            } else {
+                                in.skipValue();
+                            }
+                        }
+                        in.endObject();
+                        if (filter.test(id)) {
+                            handler.avail(tenantId, id, timestamp, avail);
+                        }
+                    }
+                    in.endArray();
+                }
+                in.endObject();
+            }
+            in.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return total;
+    }
+
+    private static boolean isNull(JsonReader in) throws IOException {
+        return in.peek() == JsonToken.NULL;
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.bus.listener;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+
+import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.DataBatch;
+import org.hawkular.alerts.api.services.AlertsCriteria;
+import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.api.services.DataInterest;
+import org.junit.Test;
+
+/**
+ * DataBatcher must forward all the data, in arrival order, in fewer calls when batching.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class DataBatcherTest {
+
+    private static final int DATA = 5;
+
+    @Test
+    public void perMessageTest() {
+        RecordingAlertsService alerts = new RecordingAlertsService();
+        DataBatcher batcher = new DataBatcher(alerts, false, 1000, 10);
+        batcher.init();
+        for (int m = 0; m < 10; m++) {
+            batcher.sendData(message("NumericData-01", m));
+        }
+        batcher.shutdown();
+
+        assertEquals(10, alerts.getCalls());
+        assertEquals(10 * DATA, alerts.received("NumericData-01").size());
+    }
+
+    @Test
+    public void batchedTest() throws Exception {
+        int threads = 4;
+        int messages = 2000;
+        RecordingAlertsService alerts = new RecordingAlertsService();
+        DataBatcher batcher = new DataBatcher(alerts, true, 1000, 10);
+        batcher.init();
+
+        // one dataId per thread, as the MDB pool would deliver them
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            final String dataId = "NumericData-" + t;
+            Thread producer = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int m = 0; m < messages; m++) {
+                    batcher.sendData(message(dataId, m));
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        batcher.shutdown();
+
+        assertTrue(alerts.getCalls() + " calls", alerts.getCalls() < threads * messages);
+        for (int t = 0; t < threads; t++) {
+            List<Long> timestamps = alerts.received("NumericData-" + t);
+            assertEquals(messages * DATA, timestamps.size());
+            for (int i = 0; i < timestamps.size(); i++) {
+                assertEquals(i + 1, timestamps.get(i).longValue());
+            }
+        }
+    }
+
+    @Test
+    public void windowTest() throws Exception {
+        RecordingAlertsService alerts = new RecordingAlertsService();
+        DataBatcher batcher = new DataBatcher(alerts, true, 1000, 10);
+        batcher.init();
+
+        // far from the batch size, sent when the window expires
+        batcher.sendData(message("NumericData-01", 0));
+        for (int i = 0; i < 200 && alerts.getCalls() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, alerts.getCalls());
+        assertEquals(0, batcher.getPending());
+
+        // pending data is sent on shutdown
+        batcher.shutdown();
+        batcher.sendData(message("NumericData-01", 1));
+        assertEquals(2 * DATA, alerts.received("NumericData-01").size());
+    }
+
+    @Test
+    public void shutdownTest() {
+        RecordingAlertsService alerts = new RecordingAlertsService();
+        DataBatcher batcher = new DataBatcher(alerts, true, 1000, 10);
+        List<Thread> created = new ArrayList<>();
+        batcher.threadFactory = r -> {
+            Thread t = new Thread(r);
+            created.add(t);
+            return t;
+        };
+        batcher.init();
+        assertEquals(1, created.size());
+
+        // the flusher is stopped before the last data is sent
+        batcher.sendData(message("NumericData-01", 0));
+        batcher.shutdown();
+        assertFalse(created.get(0).isAlive());
+        assertEquals(DATA, alerts.received("NumericData-01").size());
+    }
+
+    private static DataBatch message(String dataId, int m) {
+        // timestamps from 1, 0 would be the current time
+        DataBatch data = new DataBatch(DATA);
+        for (int d = 0; d < DATA; d++) {
+            data.addNumeric(dataId, (long) m * DATA + d + 1, d);
+        }
+        return data;
+    }
+
+    private static class RecordingAlertsService implements AlertsService {
+        private int calls = 0;
+        private final Map<String, List<Long>> timestamps = new HashMap<>();
+
+        synchronized int getCalls() {
+            return calls;
+        }
+
+        synchronized List<Long> received(String dataId) {
+            List<Long> result = timestamps.get(dataId);
+            return null != result ? new ArrayList<>(result) : new ArrayList<>();
+        }
+
+        private void record(String dataId, long timestamp) {
+            timestamps.computeIfAbsent(dataId, id -> new ArrayList<>()).add(timestamp);
+        }
+
+        @Override
+        public synchronized void sendData(Collection<Data> data) {
+            calls++;
+            for (Data d : data) {
+                record(d.getId(), d.getTimestamp());
+            }
+        }
+
+        @Override
+        public synchronized void sendData(Data data) {
+            calls++;
+            record(data.getId(), data.getTimestamp());
+        }
+
+        @Override
+        public synchronized void sendData(DataBatch batch) {
+            calls++;
+            for (int i = 0; i < batch.size(); i++) {
+                record(batch.getId(i), batch.getTimestamp(i));
+            }
+        }
+
+        @Override
+        public DataInterest getDataInterest() {
+            return null;
+        }
+
+        @Override
+        public void clear() {
+        }
+
+        @Override
+        public void reload() {
+        }
+
+        @Override
+        public void reloadTrigger(String triggerId) {
+        }
+
+        @Override
+        public List<Alert> getAlerts(AlertsCriteria criteria) throws Exception {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public void getAlerts(AlertsCriteria criteria, Consumer<Alert> consumer) throws Exception {
+        }
+
+        @Override
+        public void addAlerts(Collection<Alert> alerts) throws Exception {
+        }
+
+        @Override
+        public long getBatchWindow() {
+            return 0;
+        }
+
+        @Override
+        public int getQueueDepth() {
+            return 0;
+        }
+
+        @Override
+        public int getAlertsQueueDepth() {
+            return 0;
+        }
+
+        @Override
+        public double getAlertsWriteLatency() {
+            return 0;
+        }
+    }
+}
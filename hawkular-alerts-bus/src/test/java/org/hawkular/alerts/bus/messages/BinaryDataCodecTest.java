@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.bus.messages;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hawkular.alerts.api.model.data.Availability.AvailabilityType;
+import org.hawkular.alerts.api.model.data.DataBatch;
+import org.hawkular.alerts.bus.messages.AvailDataMessage.AvailData;
+import org.hawkular.alerts.bus.messages.AvailDataMessage.SingleAvail;
+import org.hawkular.alerts.bus.messages.MetricDataMessage.MetricData;
+import org.hawkular.alerts.bus.messages.MetricDataMessage.SingleMetric;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Round trip tests for the binary encoding of bus data, and its equivalence with the JSON encoding.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class BinaryDataCodecTest {
+
+    private final Gson gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
+
+    @Test
+    public void metricDataTest() throws Exception {
+        List<SingleMetric> data = new ArrayList<>();
+        long now = 1430000000000L;
+        for (int i = 0; i < 100; i++) {
+            data.add(new SingleMetric("NumericData-0" + (i % 3), now + i * 1000L, i * 1.5));
+        }
+        MetricData regular = new MetricData();
+        regular.setTenantId("tenant");
+        regular.setData(new ArrayList<>(data));
+        String json = gson.toJson(regular);
+        int binaryLength = BinaryDataCodec.encode(regular).length;
+        assertTrue(binaryLength + " vs " + json.length(), binaryLength * 2 < json.length());
+
+        // out of order timestamps, special values and a null source
+        data.add(new SingleMetric("NumericData-00", now - 5000L, Double.NaN));
+        data.add(new SingleMetric(null, 0L, Double.NEGATIVE_INFINITY));
+        data.add(new SingleMetric("NumericData-01", Long.MAX_VALUE, -0.0));
+        MetricData metricData = new MetricData();
+        metricData.setTenantId("tenant");
+        metricData.setData(data);
+
+        byte[] body = BinaryDataCodec.encode(metricData);
+        MetricData decoded = BinaryDataCodec.decodeMetricData(body);
+
+        assertEquals("tenant", decoded.getTenantId());
+        assertEquals(data.size(), decoded.getData().size());
+        for (int i = 0; i < data.size(); i++) {
+            SingleMetric expected = data.get(i);
+            SingleMetric actual = decoded.getData().get(i);
+            assertEquals(expected.getSource(), actual.getSource());
+            assertEquals(expected.getTimestamp(), actual.getTimestamp());
+            assertEquals(Double.doubleToRawLongBits(expected.getValue()),
+                    Double.doubleToRawLongBits(actual.getValue()));
+        }
+    }
+
+    @Test
+    public void availDataTest() throws Exception {
+        List<SingleAvail> data = new ArrayList<>();
+        data.add(new SingleAvail("tenant", "Avail-01", 1430000000000L, "UP"));
+        data.add(new SingleAvail("tenant", "Avail-02", 1430000000100L, "DOWN"));
+        data.add(new SingleAvail(null, "Avail-01", 1430000000050L, "UP"));
+        AvailData availData = new AvailData();
+        availData.setData(data);
+
+        AvailData decoded = BinaryDataCodec.decodeAvailData(BinaryDataCodec.encode(availData));
+
+        assertEquals(data.size(), decoded.getData().size());
+        for (int i = 0; i < data.size(); i++) {
+            assertEquals(data.get(i).toString(), decoded.getData().get(i).toString());
+        }
+        assertNull(decoded.getData().get(2).getTenantId());
+    }
+
+    @Test
+    public void jsonEquivalenceTest() throws Exception {
+        // decoded as the listeners do, the JSON and binary messages must give the same batch
+        List<SingleMetric> metrics = new ArrayList<>();
+        long now = 1430000000000L;
+        double[] values = { 0.1, -0.0, 1e-300, Double.MAX_VALUE, 12.0 / 7 };
+        for (int i = 0; i < 50; i++) {
+            metrics.add(new SingleMetric("NumericData-0" + (i % 3), now + ((i * 7919) % 50) * 1000L,
+                    values[i % values.length]));
+        }
+        MetricData metricData = new MetricData();
+        metricData.setTenantId("tenant");
+        metricData.setData(metrics);
+
+        DataBatch fromJson = new DataBatch();
+        DataBatch fromBinary = new DataBatch();
+        int jsonTotal = StreamingDataDecoder.decodeMetricData(
+                new StringReader(gson.toJson(new MetricDataMessage(metricData))), id -> !"NumericData-02".equals(id),
+                fromJson::addNumeric);
+        int binaryTotal = BinaryDataCodec.decodeMetricData(BinaryDataCodec.encode(metricData),
+                id -> !"NumericData-02".equals(id), fromBinary::addNumeric);
+        assertEquals(jsonTotal, binaryTotal);
+        assertSameBatch(fromJson, fromBinary);
+
+        List<SingleAvail> avails = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            avails.add(new SingleAvail(i % 2 == 0 ? "tenant" : null, "Avail-0" + (i % 4), now - i,
+                    AvailabilityType.values()[i % 3].name()));
+        }
+        AvailData availData = new AvailData();
+        availData.setData(avails);
+
+        fromJson.clear();
+        fromBinary.clear();
+        jsonTotal = StreamingDataDecoder.decodeAvailData(new StringReader(gson.toJson(new AvailDataMessage(availData))),
+                id -> !"Avail-03".equals(id), (tenantId, id, timestamp, avail) -> fromJson.addAvailability(id,
+                        timestamp, AvailabilityType.valueOf(avail)));
+        binaryTotal = BinaryDataCodec.decodeAvailData(BinaryDataCodec.encode(availData), id -> !"Avail-03".equals(id),
+                (tenantId, id, timestamp, avail) -> fromBinary.addAvailability(id, timestamp,
+                        AvailabilityType.valueOf(avail)));
+        assertEquals(jsonTotal, binaryTotal);
+        assertSameBatch(fromJson, fromBinary);
+    }
+
+    private static void assertSameBatch(DataBatch expected, DataBatch actual) {
+        assertTrue(expected.size() > 0);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getData(i), actual.getData(i));
+        }
+    }
+
+    @Test
+    public void emptyTest() throws Exception {
+        MetricData decoded = BinaryDataCodec.decodeMetricData(BinaryDataCodec.encode(new MetricData()));
+        assertNull(decoded.getTenantId());
+        assertTrue(decoded.getData().isEmpty());
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void wrongTypeTest() throws Exception {
+        BinaryDataCodec.decodeMetricData(BinaryDataCodec.encode(new AvailData()));
+    }
+}
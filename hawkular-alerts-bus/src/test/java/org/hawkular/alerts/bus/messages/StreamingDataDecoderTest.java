@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.bus.messages;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hawkular.alerts.bus.messages.AvailDataMessage.AvailData;
+import org.hawkular.alerts.bus.messages.AvailDataMessage.SingleAvail;
+import org.hawkular.alerts.bus.messages.MetricDataMessage.MetricData;
+import org.hawkular.alerts.bus.messages.MetricDataMessage.SingleMetric;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Tests for the streaming decoding of bus data messages.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class StreamingDataDecoderTest {
+
+    private final Gson gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
+
+    @Test
+    public void metricDataTest() throws Exception {
+        List<SingleMetric> data = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            data.add(new SingleMetric("NumericData-0" + (i % 2), 1000L + i, i * 0.5));
+        }
+        MetricData metricData = new MetricData();
+        metricData.setTenantId("tenant");
+        metricData.setData(data);
+        String json = gson.toJson(new MetricDataMessage(metricData));
+
+        List<SingleMetric> decoded = new ArrayList<>();
+        int total = StreamingDataDecoder.decodeMetricData(new StringReader(json), "NumericData-01"::equals,
+                (source, timestamp, value) -> decoded.add(new SingleMetric(source, timestamp, value)));
+        assertEquals(10, total);
+        assertEquals(5, decoded.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(data.get(i * 2 + 1).toString(), decoded.get(i).toString());
+        }
+
+        // the same through the binary encoding
+        decoded.clear();
+        total = BinaryDataCodec.decodeMetricData(BinaryDataCodec.encode(metricData), "NumericData-01"::equals,
+                (source, timestamp, value) -> decoded.add(new SingleMetric(source, timestamp, value)));
+        assertEquals(10, total);
+        assertEquals(5, decoded.size());
+        assertEquals(data.get(9).toString(), decoded.get(4).toString());
+    }
+
+    @Test
+    public void availDataTest() throws Exception {
+        List<SingleAvail> data = new ArrayList<>();
+        data.add(new SingleAvail("tenant", "Avail-01", 1000L, "UP"));
+        data.add(new SingleAvail("tenant", "Avail-02", 1001L, "DOWN"));
+        AvailData availData = new AvailData();
+        availData.setData(data);
+        String json = gson.toJson(new AvailDataMessage(availData));
+
+        List<SingleAvail> decoded = new ArrayList<>();
+        int total = StreamingDataDecoder.decodeAvailData(new StringReader(json), "Avail-02"::equals,
+                (tenantId, id, timestamp, avail) -> decoded.add(new SingleAvail(tenantId, id, timestamp, avail)));
+        assertEquals(2, total);
+        assertEquals(1, decoded.size());
+        assertEquals(data.get(1).toString(), decoded.get(0).toString());
+    }
+
+    @Test
+    public void unknownFieldsTest() throws Exception {
+        String json = "{\"messageId\":{\"id\":\"1\"},\"metricData\":{\"tenantId\":null,\"extra\":[1,2],"
+                + "\"data\":[{\"source\":\"m1\",\"unit\":\"ms\",\"timestamp\":5,\"value\":1.5},"
+                + "{\"value\":2,\"timestamp\":6,\"source\":\"m1\"}]}}";
+        List<SingleMetric> decoded = new ArrayList<>();
+        int total = StreamingDataDecoder.decodeMetricData(new StringReader(json), id -> true,
+                (source, timestamp, value) -> decoded.add(new SingleMetric(source, timestamp, value)));
+        assertEquals(2, total);
+        assertEquals(new SingleMetric("m1", 5L, 1.5).toString(), decoded.get(0).toString());
+        assertEquals(new SingleMetric("m1", 6L, 2.0).toString(), decoded.get(1).toString());
+    }
+
+    @Test(expected = java.io.IOException.class)
+    public void malformedTest() throws Exception {
+        StreamingDataDecoder.decodeMetricData(new StringReader("{\"metricData\":{\"data\":[{\"timestamp\":\"x\"}]}}"),
+                id -> true, (source, timestamp, value) -> {
+                });
+    }
+}
@@ -16,25 +16,30 @@
  */
 package org.hawkular.alerts.engine.impl;
 
+import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
-import java.sql.Clob;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.function.Predicate;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.EJB;
 import javax.ejb.Singleton;
+import javax.enterprise.concurrent.ManagedThreadFactory;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
@@ -44,12 +49,15 @@ import org.hawkular.alerts.api.model.condition.Condition;
 import org.hawkular.alerts.api.model.condition.ConditionEval;
 import org.hawkular.alerts.api.model.dampening.Dampening;
 import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.DataBatch;
 import org.hawkular.alerts.api.model.trigger.Tag;
 import org.hawkular.alerts.api.model.trigger.Trigger;
 import org.hawkular.alerts.api.services.ActionsService;
 import org.hawkular.alerts.api.services.AlertsCriteria;
 import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.api.services.DataInterest;
 import org.hawkular.alerts.api.services.DefinitionsService;
+import org.hawkular.alerts.api.services.TriggerDefinition;
 import org.hawkular.alerts.engine.log.MsgLogger;
 import org.hawkular.alerts.engine.rules.RulesEngine;
 import org.jboss.logging.Logger;
@@ -60,28 +68,61 @@ import com.google.gson.GsonBuilder;
 /**
  * Basic implementation for {@link org.hawkular.alerts.api.services.AlertsService}.
  * This implementation processes data asynchronously using a buffer queue.
+ * Columnar {@link DataBatch}es are queued as is, they count for their number of samples against the queue capacity.
+ *
+ * Concurrency is bean managed: sendData() only enqueues into a lock-free bounded queue, so callers never wait on
+ * each other or on the rules engine. Access to the rules engine itself is serialized through <code>rulesLock</code>.
+ *
+ * Rules are fired by a dedicated thread as soon as BATCH_SIZE data are pending or the current batch window expires.
+ * The batch window adapts to the observed cost of firing the rules, bounded by MIN_WINDOW and MAX_LATENCY: an
+ * idle engine fires almost immediately and a loaded engine accumulates bigger batches.
+ *
+ * Alerts generated by the rules are only handed off to a bounded queue. A dedicated writer thread persists them in
+ * group commits of up to ALERTS_BATCH_SIZE alerts, at least every ALERTS_FLUSH_INTERVAL ms, so database round trips
+ * do not stall the evaluation of the rules.
+ *
+ * Both threads, and the workers of a partitioned rules engine, are created by the container's default
+ * ManagedThreadFactory, so they run with the application's context and are stopped with it.
+ *
+ * The dataIds referenced by the loaded triggers are published as the {@link DataInterest}, so data producers can
+ * drop data that no condition can match before calling sendData().
  *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
 @Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 public class BasicAlertsServiceImpl implements AlertsService {
     private final MsgLogger msgLog = MsgLogger.LOGGER;
     private final Logger log = Logger.getLogger(BasicAlertsServiceImpl.class);
     private static final int DELAY;
-    private static final int PERIOD;
-
-    private final List<Data> pendingData;
+    private static final int QUEUE_CAPACITY;
+    private static final int MAX_BATCH;
+    private static final int BATCH_SIZE;
+    private static final int MIN_WINDOW;
+    private static final int MAX_LATENCY;
+    private static final int LOAD_BATCH_SIZE;
+    private static final int ALERTS_QUEUE_CAPACITY;
+    private static final int ALERTS_BATCH_SIZE;
+    private static final int ALERTS_FLUSH_INTERVAL;
+    private static final int SHUTDOWN_TIMEOUT;
+    private static final int FETCH_SIZE = 500;
+
+    private final IngestionQueue<Data> pendingData;
+    private final IngestionQueue<DataBatch> pendingBatches;
+    private final IngestionQueue<Alert> pendingAlerts;
     private final List<Alert> alerts;
+    private final DataInterestRegistry interest = new DataInterestRegistry();
+    private final Object rulesLock = new Object();
 
-    private final Timer wakeUpTimer;
-    private TimerTask rulesTask;
+    private RulesInvoker rulesTask;
+    private AlertsWriter alertsTask;
 
     private Gson gson;
     private final String DS_NAME;
     private DataSource ds;
+    private DbAccess db;
 
-    @EJB
     RulesEngine rules;
 
     @EJB
@@ -90,28 +131,42 @@ public class BasicAlertsServiceImpl implements AlertsService {
     @EJB
     ActionsService actions;
 
+    @Resource
+    ManagedThreadFactory threadFactory;
+
     /*
         Init properties
      */
     static {
-        String sDelay = System.getProperty("org.hawkular.alerts.engine.DELAY");
-        String sPeriod = System.getProperty("org.hawkular.alerts.engine.PERIOD");
-        int dDelay = 1000;
-        int dPeriod = 2000;
+        DELAY = getIntProperty("org.hawkular.alerts.engine.DELAY", 1000);
+        QUEUE_CAPACITY = getIntProperty("org.hawkular.alerts.engine.QUEUE_CAPACITY", 100000);
+        MAX_BATCH = getIntProperty("org.hawkular.alerts.engine.MAX_BATCH", 10000);
+        BATCH_SIZE = getIntProperty("org.hawkular.alerts.engine.BATCH_SIZE", 1000);
+        MIN_WINDOW = getIntProperty("org.hawkular.alerts.engine.MIN_WINDOW", 10);
+        // PERIOD was the fixed timer period, it is kept as the default latency budget
+        MAX_LATENCY = getIntProperty("org.hawkular.alerts.engine.MAX_LATENCY",
+                getIntProperty("org.hawkular.alerts.engine.PERIOD", 2000));
+        LOAD_BATCH_SIZE = getIntProperty("org.hawkular.alerts.engine.LOAD_BATCH_SIZE", 1000);
+        ALERTS_QUEUE_CAPACITY = getIntProperty("org.hawkular.alerts.engine.ALERTS_QUEUE_CAPACITY", 10000);
+        ALERTS_BATCH_SIZE = getIntProperty("org.hawkular.alerts.engine.ALERTS_BATCH_SIZE", 500);
+        ALERTS_FLUSH_INTERVAL = getIntProperty("org.hawkular.alerts.engine.ALERTS_FLUSH_INTERVAL", 100);
+        SHUTDOWN_TIMEOUT = getIntProperty("org.hawkular.alerts.engine.SHUTDOWN_TIMEOUT", 10000);
+    }
+
+    private static int getIntProperty(String name, int defaultValue) {
         try {
-            dDelay = new Integer(sDelay).intValue();
-            dPeriod = new Integer(sPeriod).intValue();
+            return new Integer(System.getProperty(name)).intValue();
         } catch (Exception ignored) {
+            return defaultValue;
         }
-        DELAY = dDelay;
-        PERIOD = dPeriod;
     }
 
     public BasicAlertsServiceImpl() {
         log.debugf("Creating instance.");
-        pendingData = new CopyOnWriteArrayList<Data>();
-        alerts = new CopyOnWriteArrayList<Alert>();
-        wakeUpTimer = new Timer("BasicAlertsServiceImpl-Timer");
+        pendingData = new IngestionQueue<Data>(QUEUE_CAPACITY);
+        pendingBatches = new IngestionQueue<DataBatch>(QUEUE_CAPACITY, DataBatch::size);
+        pendingAlerts = new IngestionQueue<Alert>(ALERTS_QUEUE_CAPACITY);
+        alerts = new ArrayList<Alert>();
 
         DS_NAME = System.getProperty("org.hawkular.alerts.engine.datasource", "java:jboss/datasources/HawkularDS");
     }
@@ -131,8 +186,104 @@ public class BasicAlertsServiceImpl implements AlertsService {
                 msgLog.errorCannotConnectWithDatasource(e.getMessage());
             }
         }
+        if (ds != null) {
+            db = new DbAccess(ds);
+        }
+
+        // outside of a container, as in tests, plain threads are used
+        ThreadFactory factory = threadFactory != null ? threadFactory : Executors.defaultThreadFactory();
+
+        if (rules == null) {
+            rules = RulesEngineFactory.newRulesEngine(factory);
+        }
 
         reload();
+
+        alertsTask = new AlertsWriter();
+        Thread alertsThread = factory.newThread(alertsTask);
+        alertsThread.setName("BasicAlertsServiceImpl-Alerts");
+        alertsThread.setDaemon(true);
+        alertsTask.thread = alertsThread;
+        pendingAlerts.setConsumer(alertsThread, ALERTS_BATCH_SIZE);
+        alertsThread.start();
+
+        rulesTask = new RulesInvoker();
+        Thread rulesThread = factory.newThread(rulesTask);
+        rulesThread.setName("BasicAlertsServiceImpl-Rules");
+        rulesThread.setDaemon(true);
+        rulesTask.thread = rulesThread;
+        pendingData.setConsumer(rulesThread, BATCH_SIZE);
+        pendingBatches.setConsumer(rulesThread, BATCH_SIZE);
+        rulesThread.start();
+    }
+
+    /*
+        The rules thread is stopped first, so the alerts of its last firing are handed off before the writer stops.
+        The writer persists all the pending alerts before it exits. Each thread is waited for SHUTDOWN_TIMEOUT ms
+        at most, so a stalled database can not block the undeploy.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (rulesTask != null) {
+            pendingData.setConsumer(null, BATCH_SIZE);
+            pendingBatches.setConsumer(null, BATCH_SIZE);
+            rulesTask.stop();
+            join(rulesTask.thread);
+            rulesTask = null;
+        }
+        if (rules instanceof PartitionedRulesEngineImpl) {
+            ((PartitionedRulesEngineImpl) rules).shutdown();
+        }
+        if (alertsTask != null) {
+            pendingAlerts.setConsumer(null, ALERTS_BATCH_SIZE);
+            alertsTask.stop();
+            if (!join(alertsTask.thread)) {
+                msgLog.warningAlertsNotPersisted(pendingAlerts.size());
+            }
+            alertsTask = null;
+        }
+    }
+
+    /**
+     * @return true if the thread is terminated
+     */
+    private boolean join(Thread thread) {
+        if (null == thread) {
+            return true;
+        }
+        try {
+            thread.join(SHUTDOWN_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !thread.isAlive();
+    }
+
+    @Override
+    public long getBatchWindow() {
+        RulesInvoker task = rulesTask;
+        return task != null ? TimeUnit.NANOSECONDS.toMillis(task.window) : MIN_WINDOW;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return pendingData.size() + pendingBatches.size();
+    }
+
+    @Override
+    public int getAlertsQueueDepth() {
+        return pendingAlerts.size();
+    }
+
+    @Override
+    public double getAlertsWriteLatency() {
+        AlertsWriter task = alertsTask;
+        return task != null ? task.avgWriteTime / 1000000.0 : 0.0;
+    }
+
+    @Override
+    public DataInterest getDataInterest() {
+        return interest;
     }
 
     @Override
@@ -144,150 +295,138 @@ public class BasicAlertsServiceImpl implements AlertsService {
             throw new Exception("DataSource is null");
         }
 
-        Connection c = null;
-        PreparedStatement ps = null;
-        StringReader sr = null;
+        List<Object[]> rows = new ArrayList<>(alerts.size());
+        for (Alert a : alerts) {
+            rows.add(new Object[] { a.getTriggerId(), a.getCTime(), new StringReader(toJson(a)) });
+        }
 
-        try {
-            c = ds.getConnection();
-            String sql = "INSERT INTO HWK_ALERTS_ALERTS VALUES (?,?,?)";
-            ps = c.prepareStatement(sql);
-
-            for (Alert a : alerts) {
-                ps.setString(1, a.getTriggerId());
-                ps.setLong(2, a.getCTime());
-                sr = new StringReader(toJson(a));
-                ps.setCharacterStream(3, sr);
+        // Group commit when we own the transaction, a managed connection commits with its transaction
+        try (DbAccess.Session s = db.open()) {
+            try {
+                s.begin();
+                String sql = "INSERT INTO HWK_ALERTS_ALERTS VALUES (?,?,?)";
                 log.debugf("SQL: " + sql);
-                ps.executeUpdate();
-                sr.close();
-                sr = null;
+                s.batch(sql, rows, ALERTS_BATCH_SIZE);
+                s.commit();
+            } catch (SQLException e) {
+                s.rollback();
+                throw e;
             }
-
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
-        } finally {
-            close(c, ps, null);
-            if (null != sr) {
-                sr.close();
-            }
         }
     }
 
     @Override
     public List<Alert> getAlerts(AlertsCriteria criteria) throws Exception {
+        List<Alert> alerts = new ArrayList<>();
+        getAlerts(criteria, alerts::add);
+
+        log.debugf(alerts.isEmpty() ? "No Alerts Found" : "Alerts Found! " + alerts);
+        return alerts;
+    }
+
+    @Override
+    public void getAlerts(AlertsCriteria criteria, Consumer<Alert> consumer) throws Exception {
+        if (consumer == null) {
+            throw new IllegalArgumentException("Consumer must be not null");
+        }
         if (ds == null) {
             throw new Exception("DataSource is null");
         }
 
-        log.debugf("getAlerts criteria: %s", criteria.toString());
+        log.debugf("getAlerts criteria: %s", criteria);
 
         boolean filter = (null != criteria && criteria.hasCriteria());
-
-        List<Alert> alerts = new ArrayList<>();
-        Connection c = null;
-        Statement s = null;
-        ResultSet rs = null;
-        Reader r = null;
-        try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("SELECT a.triggerId, a.ctime, a.payload FROM HWK_ALERTS_ALERTS a");
-            if (filter) {
-                int filters = 0;
-                sql.append(" WHERE ");
-                if (isEmpty(criteria.getTriggerIds())) {
-                    if (!isEmpty(criteria.getTriggerId())) {
-                        sql.append(filters++ > 0 ? " AND " : " ");
-                        sql.append("( a.triggerId = '");
-                        sql.append(criteria.getTriggerId());
-                        sql.append("' )");
-                    }
-                } else {
-                    sql.append(filters++ > 0 ? " AND " : " ");
-                    sql.append("( a.triggerId IN (");
-                    int entries = 0;
-                    for (String triggerId : criteria.getTriggerIds()) {
-                        if (isEmpty(triggerId)) {
-                            continue;
-                        }
-                        sql.append(entries++ > 0 ? "," : "");
-                        sql.append("'");
-                        sql.append(triggerId);
-                        sql.append("'");
-                    }
-                    sql.append(") )");
+        Integer pageSize = (null != criteria) ? criteria.getPageSize() : null;
+
+        StringBuilder sql = new StringBuilder("SELECT a.triggerId, a.ctime, a.payload FROM HWK_ALERTS_ALERTS a");
+        List<Object> params = new ArrayList<>();
+        if (filter) {
+            int filters = 0;
+            sql.append(" WHERE ");
+            List<String> triggerIds = new ArrayList<>();
+            if (isEmpty(criteria.getTriggerIds())) {
+                if (!isEmpty(criteria.getTriggerId())) {
+                    triggerIds.add(criteria.getTriggerId());
                 }
-                if (filter && null != criteria.getStartTime()) {
-                    sql.append(filters++ > 0 ? " AND " : " ");
-                    sql.append("( a.ctime >= ");
-                    sql.append(criteria.getStartTime());
-                    sql.append(" )");
+            } else {
+                for (String triggerId : criteria.getTriggerIds()) {
+                    if (!isEmpty(triggerId)) {
+                        triggerIds.add(triggerId);
+                    }
                 }
-                if (filter && null != criteria.getEndTime()) {
-                    sql.append(filters++ > 0 ? " AND " : " ");
-                    sql.append("( a.ctime <= ");
-                    sql.append(criteria.getEndTime());
-                    sql.append(" )");
+            }
+            if (triggerIds.size() == 1) {
+                sql.append(filters++ > 0 ? " AND " : " ");
+                sql.append("( a.triggerId = ? )");
+                params.add(triggerIds.get(0));
+            } else if (triggerIds.size() > 1) {
+                sql.append(filters++ > 0 ? " AND " : " ");
+                sql.append("( a.triggerId IN (").append(DbAccess.inList(triggerIds.size())).append(") )");
+                params.addAll(DbAccess.inValues(triggerIds));
+            }
+            if (null != criteria.getStartTime()) {
+                sql.append(filters++ > 0 ? " AND " : " ");
+                sql.append("( a.ctime >= ? )");
+                params.add(criteria.getStartTime());
+            }
+            if (null != criteria.getEndTime()) {
+                sql.append(filters++ > 0 ? " AND " : " ");
+                sql.append("( a.ctime <= ? )");
+                params.add(criteria.getEndTime());
+            }
+            List<Tag> tags = new ArrayList<>();
+            if (isEmpty(criteria.getTags())) {
+                if (null != criteria.getTag()) {
+                    tags.add(criteria.getTag());
                 }
-                if (isEmpty(criteria.getTags())) {
-                    Tag tag = criteria.getTag();
-                    if (null != tag) {
-                        sql.append(filters++ > 0 ? " AND " : " ");
-                        sql.append("( EXISTS ( SELECT * FROM HWK_ALERTS_TAGS t WHERE");
-                        if (!isEmpty(tag.getCategory())) {
-                            sql.append(" t.triggerId = a.triggerId AND t.category = '");
-                            sql.append(tag.getCategory());
-                            sql.append("' AND");
-                        }
-                        sql.append(" t.name = '");
-                        sql.append(tag.getName());
-                        sql.append("' )");
-                    }
-                } else {
-                    sql.append(filters++ > 0 ? " AND " : " ");
-                    sql.append("(");
-                    int entries = 0;
-                    for (Tag tag : criteria.getTags()) {
-                        sql.append(entries++ > 0 ? " OR " : "");
-                        sql.append("( EXISTS ( SELECT * FROM HWK_ALERTS_TAGS t WHERE");
-                        if (!isEmpty(tag.getCategory())) {
-                            sql.append(" t.triggerId = a.triggerId AND t.category = '");
-                            sql.append(tag.getCategory());
-                            sql.append("' AND");
-                        }
-                        sql.append(" t.name = '");
-                        sql.append(tag.getName());
-                        sql.append("' ) )");
+            } else {
+                tags.addAll(criteria.getTags());
+            }
+            if (!tags.isEmpty()) {
+                sql.append(filters++ > 0 ? " AND " : " ");
+                sql.append("(");
+                int entries = 0;
+                for (Tag tag : tags) {
+                    sql.append(entries++ > 0 ? " OR " : "");
+                    sql.append("( EXISTS ( SELECT * FROM HWK_ALERTS_TAGS t WHERE t.triggerId = a.triggerId AND");
+                    if (!isEmpty(tag.getCategory())) {
+                        sql.append(" t.category = ? AND");
+                        params.add(tag.getCategory());
                     }
-                    sql.append(")");
+                    sql.append(" t.name = ? ) )");
+                    params.add(tag.getName());
                 }
+                sql.append(")");
             }
-            sql.append(" ORDER BY a.ctime");
-            log.debugf("SQL: " + sql);
-            rs = s.executeQuery(sql.toString());
-            while (rs.next()) {
-                Clob clob = rs.getClob(3);
-                r = clob.getCharacterStream();
-                Alert alert = fromJson(r, Alert.class);
-                r.close();
-                r = null;
-                alerts.add(alert);
+            if (criteria.hasCursor()) {
+                // keyset pagination, (ctime, triggerId) is the primary key so no alert is skipped or repeated
+                sql.append(filters++ > 0 ? " AND " : " ");
+                sql.append("( a.ctime > ? OR ( a.ctime = ? AND a.triggerId > ? ) )");
+                params.add(criteria.getCursorCTime());
+                params.add(criteria.getCursorCTime());
+                params.add(criteria.getCursorTriggerId());
             }
+        }
+        sql.append(" ORDER BY a.ctime, a.triggerId");
+
+        int maxRows = (null != pageSize && pageSize > 0) ? pageSize : 0;
+        int fetchSize = (maxRows > 0) ? Math.min(maxRows, FETCH_SIZE) : FETCH_SIZE;
+        log.debugf("SQL: " + sql);
+        try (DbAccess.Session s = db.open()) {
+            s.forEach(sql.toString(), fetchSize, maxRows, rs -> {
+                try (Reader r = rs.getClob(3).getCharacterStream()) {
+                    consumer.accept(fromJson(r, Alert.class));
+                } catch (IOException e) {
+                    throw new SQLException(e);
+                }
+            }, params.toArray());
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
-        } finally {
-            close(c, s, rs);
-            if (null != r) {
-                r.close();
-            }
         }
-
-        log.debugf(alerts.isEmpty() ? "No Alerts Found" : "Alerts Found! " + alerts);
-        return alerts;
     }
 
     private boolean isEmpty(Collection<?> c) {
@@ -310,68 +449,55 @@ public class BasicAlertsServiceImpl implements AlertsService {
         return gson.fromJson(json, clazz);
     }
 
-    private void close(Connection c, Statement s, ResultSet rs) {
-        try {
-            if (rs != null) {
-                rs.close();
-            }
-        } catch (Exception ignored) {
-        }
-        try {
-            if (s != null) {
-                s.close();
-            }
-        } catch (Exception ignored) {
-        }
-        try {
-            if (c != null) {
-                c.close();
-            }
-        } catch (Exception ignored) {
-        }
-    }
-
     @Override
     public void clear() {
-        rulesTask.cancel();
-
-        rules.clear();
+        synchronized (rulesLock) {
+            rules.clear();
+            interest.clear();
 
-        pendingData.clear();
-        alerts.clear();
-
-        rulesTask = new RulesInvoker();
-        wakeUpTimer.schedule(rulesTask, DELAY, PERIOD);
+            pendingData.clear();
+            pendingBatches.clear();
+            alerts.clear();
+        }
     }
 
     @Override
     public void reload() {
-        rules.reset();
-        if (rulesTask != null) {
-            rulesTask.cancel();
+        synchronized (rulesLock) {
+            doReload();
         }
+    }
+
+    private void doReload() {
+        rules.reset();
 
-        Collection<Trigger> triggers = null;
+        long start = System.currentTimeMillis();
+        final int[] numTriggers = { 0 };
+        final Map<String, Set<String>> triggerDataIds = new HashMap<>();
         try {
-            triggers = definitions.getAllTriggers();
+            definitions.getAllEnabledDefinitions(LOAD_BATCH_SIZE, batch -> {
+                List<Object> facts = new ArrayList<>();
+                for (TriggerDefinition definition : batch) {
+                    facts.add(definition.getTrigger());
+                    facts.addAll(definition.getConditions());
+                    facts.addAll(definition.getDampenings());
+                    triggerDataIds.put(definition.getTrigger().getId(),
+                            DataInterestRegistry.getDataIds(definition.getConditions()));
+                }
+                rules.addFacts(facts);
+                numTriggers[0] += batch.size();
+            });
         } catch (Exception e) {
             log.debugf(e.getMessage(), e);
             msgLog.errorDefinitionsService("Triggers", e.getMessage());
         }
-        if (triggers != null && !triggers.isEmpty()) {
-            for (Trigger trigger : triggers) {
-                if (trigger.isEnabled()) {
-                    reloadTrigger(trigger);
-                }
-            }
-        }
+        interest.reset(triggerDataIds);
+        log.debugf("Loaded [%1$d] enabled triggers in [%2$d] ms", numTriggers[0],
+                System.currentTimeMillis() - start);
 
         rules.addGlobal("log", log);
         rules.addGlobal("actions", actions);
         rules.addGlobal("alerts", alerts);
-
-        rulesTask = new RulesInvoker();
-        wakeUpTimer.schedule(rulesTask, DELAY, PERIOD);
     }
 
     @Override
@@ -390,11 +516,16 @@ public class BasicAlertsServiceImpl implements AlertsService {
         if (null == trigger) {
             log.debugf("Trigger not found for triggerId [" + triggerId + "], removing from rulebase if it exists");
             Trigger doomedTrigger = new Trigger(triggerId, "doomed");
-            removeTrigger(trigger);
+            synchronized (rulesLock) {
+                removeTrigger(doomedTrigger);
+                interest.removeTrigger(triggerId);
+            }
             return;
         }
 
-        reloadTrigger(trigger);
+        synchronized (rulesLock) {
+            reloadTrigger(trigger);
+        }
     }
 
     private void reloadTrigger(Trigger trigger) {
@@ -415,36 +546,20 @@ public class BasicAlertsServiceImpl implements AlertsService {
                 if (!dampenings.isEmpty()) {
                     rules.addFacts(dampenings);
                 }
+                interest.setTrigger(trigger.getId(), conditionSet);
             } catch (Exception e) {
                 log.debugf(e.getMessage(), e);
                 msgLog.errorDefinitionsService("Conditions/Dampening", e.getMessage());
+                interest.removeTrigger(trigger.getId());
             }
+        } else {
+            interest.removeTrigger(trigger.getId());
         }
     }
 
     private void removeTrigger(Trigger trigger) {
-        if (null != rules.getFact(trigger)) {
-            // First remove the related Trigger facts from the engine
-            rules.removeFact(trigger);
-
-            // then remove everything else.
-            // TODO: We may want to do this with rules, because as is, we need to loop through every Fact in
-            // the rules engine doing a relatively slow check.
-            final String triggerId = trigger.getId();
-            rules.removeFacts(new Predicate<Object>() {
-                @Override
-                public boolean test(Object t) {
-                    if (t instanceof Dampening) {
-                        return ((Dampening) t).getTriggerId().equals(triggerId);
-                    } else if (t instanceof Condition) {
-                        return ((Condition) t).getTriggerId().equals(triggerId);
-                    }
-                    return false;
-                }
-            });
-        } else {
-            log.debugf("Trigger not found. Not removed from rulebase %s", trigger);
-        }
+        // The rules engine indexes facts by triggerId, this does not scan the whole rulebase
+        rules.removeTrigger(trigger.getId());
     }
 
     @Override
@@ -452,7 +567,7 @@ public class BasicAlertsServiceImpl implements AlertsService {
         if (data == null) {
             throw new IllegalArgumentException("Data must be not null");
         }
-        pendingData.addAll(data);
+        pendingData.offerAll(data);
     }
 
     @Override
@@ -460,26 +575,109 @@ public class BasicAlertsServiceImpl implements AlertsService {
         if (data == null) {
             throw new IllegalArgumentException("Data must be not null");
         }
-        pendingData.add(data);
+        pendingData.offer(data);
     }
 
-    private class RulesInvoker extends TimerTask {
+    @Override
+    public void sendData(DataBatch batch) {
+        if (batch == null) {
+            throw new IllegalArgumentException("Batch must be not null");
+        }
+        if (!batch.isEmpty()) {
+            pendingBatches.offer(batch);
+        }
+    }
+
+    private class RulesInvoker implements Runnable {
+        private final List<Data> batch = new ArrayList<>();
+        private final List<DataBatch> batches = new ArrayList<>();
+        private final long minWindow = TimeUnit.MILLISECONDS.toNanos(MIN_WINDOW);
+        private final long maxLatency = TimeUnit.MILLISECONDS.toNanos(MAX_LATENCY);
+        private volatile boolean running = true;
+        private volatile Thread thread;
+        private volatile long window = minWindow;
+        private long avgFireTime = 0L;
+
         @Override
         public void run() {
-            if (!pendingData.isEmpty()) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(DELAY));
+            while (running) {
+                if (pendingData.isEmpty() && pendingBatches.isEmpty()) {
+                    // producers unpark us on the first pending data. Idle, the engine is still fired every
+                    // maxLatency, so time based dampenings expire without new data.
+                    LockSupport.parkNanos(maxLatency);
+                    if (running && pendingData.isEmpty() && pendingBatches.isEmpty()) {
+                        fireIdle();
+                    }
+                    continue;
+                }
+                long deadline = System.nanoTime() + window;
+                long remaining;
+                while (running && getQueueDepth() < BATCH_SIZE
+                        && (remaining = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(remaining);
+                }
+                if (running) {
+                    long start = System.nanoTime();
+                    fireRules();
+                    adapt(System.nanoTime() - start);
+                }
+            }
+        }
 
-                log.debugf("Pending data [%1$d] found. Executing rules engine.", pendingData.size());
+        /*
+            The window follows an exponentially weighted average of the firing time. Waiting about as long as the
+            last firings took keeps the engine busy at most half of the time when data trickles in, while an idle
+            engine keeps a window close to MIN_WINDOW.
+         */
+        private void adapt(long fireTime) {
+            avgFireTime = avgFireTime == 0L ? fireTime : (avgFireTime * 4 + fireTime) / 5;
+            window = Math.max(minWindow, Math.min(maxLatency, avgFireTime));
+        }
 
-                rules.addData(pendingData);
-                pendingData.clear();
+        private void fireRules() {
+            log.debugf("Pending data [%1$d] found. Executing rules engine.", getQueueDepth());
 
+            // At most MAX_BATCH data per firing, so reload() and clear() do not wait on a sustained ingest. What is
+            // left is fired on the next turn of the window, which adapts to the cost of a single firing. Each queue
+            // gets at least half of the budget, the other can use what it leaves.
+            synchronized (rulesLock) {
                 try {
+                    int n = pendingData.drainTo(batch, Math.max(1, MAX_BATCH / 2));
+                    n += pendingBatches.drainTo(batches, Math.max(1, MAX_BATCH - n));
+                    if (n < MAX_BATCH) {
+                        pendingData.drainTo(batch, MAX_BATCH - n);
+                    }
+                    if (!batch.isEmpty()) {
+                        rules.addData(batch);
+                    }
+                    for (DataBatch b : batches) {
+                        rules.addData(b);
+                    }
+
                     rules.fire();
-                    addAlerts(alerts);
+                    if (!alerts.isEmpty()) {
+                        pendingAlerts.offerAll(alerts);
+                    }
+                } catch (Exception e) {
+                    log.debugf("Error on rules processing: " + e);
+                    msgLog.errorProcessingRules(e.getMessage());
+                } finally {
+                    batch.clear();
+                    batches.clear();
                     alerts.clear();
+                }
+            }
+        }
 
+        private void fireIdle() {
+            synchronized (rulesLock) {
+                try {
+                    rules.fire();
+                    if (!alerts.isEmpty()) {
+                        pendingAlerts.offerAll(alerts);
+                    }
                 } catch (Exception e) {
-                    e.printStackTrace();
                     log.debugf("Error on rules processing: " + e);
                     msgLog.errorProcessingRules(e.getMessage());
                 } finally {
@@ -487,5 +685,70 @@ public class BasicAlertsServiceImpl implements AlertsService {
                 }
             }
         }
+
+        private void stop() {
+            running = false;
+            Thread t = thread;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
+    }
+
+    /*
+        Persists the alerts handed off by the rules thread. A batch is written as soon as ALERTS_BATCH_SIZE alerts
+        are pending, or when the flush interval expires.
+     */
+    private class AlertsWriter implements Runnable {
+        private final List<Alert> batch = new ArrayList<>();
+        private final long flushInterval = TimeUnit.MILLISECONDS.toNanos(ALERTS_FLUSH_INTERVAL);
+        private volatile boolean running = true;
+        private volatile Thread thread;
+        private volatile long avgWriteTime = 0L;
+
+        @Override
+        public void run() {
+            while (running) {
+                if (pendingAlerts.isEmpty()) {
+                    LockSupport.parkNanos(flushInterval);
+                    continue;
+                }
+                long deadline = System.nanoTime() + flushInterval;
+                long remaining;
+                while (running && pendingAlerts.size() < ALERTS_BATCH_SIZE
+                        && (remaining = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(remaining);
+                }
+                flush();
+            }
+            // persist what was already handed off before stopping
+            flush();
+        }
+
+        private void flush() {
+            while (pendingAlerts.drainTo(batch, ALERTS_BATCH_SIZE) > 0) {
+                long start = System.nanoTime();
+                try {
+                    addAlerts(batch);
+                } catch (Exception e) {
+                    log.debugf(e.getMessage(), e);
+                    msgLog.errorPersistingAlerts(batch.size(), e.getMessage());
+                } finally {
+                    batch.clear();
+                }
+                long writeTime = System.nanoTime() - start;
+                avgWriteTime = avgWriteTime == 0L ? writeTime : (avgWriteTime * 4 + writeTime) / 5;
+                log.debugf("Alerts batch written in [%1$d] ms, [%2$d] alerts pending",
+                        TimeUnit.NANOSECONDS.toMillis(writeTime), pendingAlerts.size());
+            }
+        }
+
+        private void stop() {
+            running = false;
+            Thread t = thread;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+        }
     }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.NumericData;
+import org.hawkular.alerts.engine.log.MsgLogger;
+
+/**
+ * The last value of the data2Ids of the CompareConditions in a drools session, so the rules can compare a Data with
+ * a data2Id value received in an earlier execution, as the native engine does. It is the "compareValues" global of
+ * the rules.
+ *
+ * The values are kept in a {@link LastValueStore} by {@link IdDictionary} key. They only change between executions
+ * of the rules: the engine reports the Data inserted for an execution and stores the data2Id values after it. A
+ * stored value is only used for a data2Id without Data in the current execution, so {@link #has(String, long)} is
+ * stable while the rules run.
+ *
+ * Not thread safe.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class CompareValues {
+    private final MsgLogger msgLog = MsgLogger.LOGGER;
+
+    private IdDictionary data2Ids = new IdDictionary();
+    private final LastValueStore lastValues = new LastValueStore();
+
+    // data2Id -> number of CompareConditions referencing it
+    private final Map<String, Integer> refs = new HashMap<>();
+
+    // data2Ids with Data in the current execution, and their NumericData
+    private final Set<String> inserted = new HashSet<>();
+    private final List<NumericData> pending = new ArrayList<>();
+
+    private long dropped;
+
+    public void addCondition(CompareCondition condition) {
+        String data2Id = condition.getData2Id();
+        Integer n = refs.get(data2Id);
+        refs.put(data2Id, null == n ? 1 : n + 1);
+        data2Ids.encode(data2Id);
+    }
+
+    public void removeCondition(CompareCondition condition) {
+        String data2Id = condition.getData2Id();
+        Integer n = refs.get(data2Id);
+        if (null == n) {
+            return;
+        }
+        if (n > 1) {
+            refs.put(data2Id, n - 1);
+        } else {
+            refs.remove(data2Id);
+            lastValues.remove(data2Ids.lookup(data2Id));
+        }
+    }
+
+    /**
+     * @param data a Data inserted for the current execution of the rules
+     */
+    public void inserted(Data data) {
+        if (!refs.containsKey(data.getId())) {
+            return;
+        }
+        inserted.add(data.getId());
+        if (data instanceof NumericData && null != ((NumericData) data).getValue()) {
+            pending.add((NumericData) data);
+        }
+    }
+
+    /**
+     * Store the data2Id values of the execution that ended.
+     */
+    public void executed() {
+        for (NumericData data : pending) {
+            int key = data2Ids.lookup(data.getId());
+            if (!lastValues.put(key, data.getTimestamp(), data.getValue()) && key >= lastValues.getMaxKeys()
+                    && 0 == dropped++) {
+                msgLog.warningLastValuesLimit(lastValues.getMaxKeys(), data.getId());
+            }
+        }
+        pending.clear();
+        inserted.clear();
+    }
+
+    /**
+     * @param data2Id the data2Id of a CompareCondition
+     * @param at timestamp of the Data compared with the data2Id value
+     * @return true if data2Id has no Data in the current execution and a stored value usable at that time
+     */
+    public boolean has(String data2Id, long at) {
+        return !inserted.contains(data2Id) && lastValues.has(data2Ids.lookup(data2Id), at);
+    }
+
+    /**
+     * @return the stored value of data2Id, only valid if {@link #has(String, long)}
+     */
+    public NumericData get(String data2Id) {
+        int key = data2Ids.lookup(data2Id);
+        return new NumericData(data2Id, lastValues.getTimestamp(key), lastValues.getValue(key));
+    }
+
+    /**
+     * @return number of data2Id values not kept because the LAST_VALUES_MAX limit is reached
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    public void clear() {
+        data2Ids = new IdDictionary();
+        lastValues.clear();
+        refs.clear();
+        inserted.clear();
+        pending.clear();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.services.DataInterest;
+
+/**
+ * The {@link DataInterest} of the engine, maintained incrementally as triggers are loaded into and removed from the
+ * rules engine.
+ *
+ * Lookups never lock: they read an immutable snapshot of the referenced dataIds, which is replaced on every change.
+ * Changes to the trigger population are rare compared to the rate of incoming data.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class DataInterestRegistry implements DataInterest {
+
+    /*
+        triggerId -> dataIds referenced by the conditions of the trigger, guarded by this
+     */
+    private final Map<String, Set<String>> triggerDataIds = new HashMap<>();
+    /*
+        dataId -> number of triggers referencing the dataId, guarded by this
+     */
+    private final Map<String, Integer> refCounts = new HashMap<>();
+
+    private volatile Set<String> dataIds = Collections.emptySet();
+    private final AtomicLong dropped = new AtomicLong();
+
+    @Override
+    public boolean isNeeded(String dataId) {
+        return null != dataId && dataIds.contains(dataId);
+    }
+
+    @Override
+    public void dropped(int numData) {
+        dropped.addAndGet(numData);
+    }
+
+    @Override
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return number of distinct dataIds referenced by the active triggers
+     */
+    public int size() {
+        return dataIds.size();
+    }
+
+    /**
+     * Set, or replace, the conditions of an active trigger.
+     */
+    public synchronized void setTrigger(String triggerId, Collection<Condition> conditions) {
+        if (null == triggerId) {
+            throw new IllegalArgumentException("TriggerId must be not null");
+        }
+        Set<String> ids = getDataIds(conditions);
+        if (ids.equals(triggerDataIds.get(triggerId))) {
+            return;
+        }
+        unregister(triggerId);
+        register(triggerId, ids);
+        publish();
+    }
+
+    /**
+     * Remove a trigger, no-op if the trigger is not active.
+     */
+    public synchronized void removeTrigger(String triggerId) {
+        if (unregister(triggerId)) {
+            publish();
+        }
+    }
+
+    /**
+     * Replace the whole set of active triggers in a single change.
+     * @param triggerDataIds triggerId -> dataIds referenced by the conditions of the trigger
+     */
+    public synchronized void reset(Map<String, Set<String>> triggerDataIds) {
+        this.triggerDataIds.clear();
+        this.refCounts.clear();
+        for (Map.Entry<String, Set<String>> entry : triggerDataIds.entrySet()) {
+            register(entry.getKey(), entry.getValue());
+        }
+        publish();
+    }
+
+    public synchronized void clear() {
+        triggerDataIds.clear();
+        refCounts.clear();
+        publish();
+    }
+
+    /**
+     * @return the dataIds referenced by the conditions, including the second dataId of a CompareCondition
+     */
+    public static Set<String> getDataIds(Collection<Condition> conditions) {
+        Set<String> result = new HashSet<>();
+        if (null != conditions) {
+            for (Condition condition : conditions) {
+                if (null != condition.getDataId()) {
+                    result.add(condition.getDataId());
+                }
+                if (condition instanceof CompareCondition && null != ((CompareCondition) condition).getData2Id()) {
+                    result.add(((CompareCondition) condition).getData2Id());
+                }
+            }
+        }
+        return result;
+    }
+
+    private void register(String triggerId, Set<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        triggerDataIds.put(triggerId, ids);
+        for (String dataId : ids) {
+            refCounts.merge(dataId, 1, Integer::sum);
+        }
+    }
+
+    private boolean unregister(String triggerId) {
+        Set<String> ids = triggerDataIds.remove(triggerId);
+        if (null == ids) {
+            return false;
+        }
+        for (String dataId : ids) {
+            refCounts.computeIfPresent(dataId, (k, count) -> count > 1 ? count - 1 : null);
+        }
+        return true;
+    }
+
+    private void publish() {
+        dataIds = Collections.unmodifiableSet(new HashSet<>(refCounts.keySet()));
+    }
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+/**
+ * A small data access layer over JDBC used by the database backed services.
+ *
+ * All the SQL goes through parameterized PreparedStatements, the SQL text of a query is constant so the database
+ * can reuse the parsed statement and its plan. A {@link Session} holds one connection and caches its
+ * PreparedStatements by SQL, but only for its own unit of work: a unit of work executing the same statement several
+ * times prepares it only once.
+ *
+ * Reuse across calls relies on the prepared statement cache of the pooled datasource, which keeps the statements of
+ * every physical connection. The statements of a connection handle are closed with it, so they can not be cached here.
+ * The datasource must be configured with a prepared-statement-cache-size at least as large as the number of distinct
+ * statements, see the README. IN-lists are padded to bound that number.
+ *
+ * Set-based variants are provided for IN-lists, padded to a power of two to bound the number of distinct
+ * statements, and for batched updates.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class DbAccess {
+
+    /**
+     * Maps the current row of a ResultSet.
+     */
+    public interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Processes the current row of a ResultSet.
+     */
+    public interface RowHandler {
+        void handle(ResultSet rs) throws SQLException;
+    }
+
+    private final DataSource ds;
+
+    public DbAccess(DataSource ds) {
+        if (ds == null) {
+            throw new IllegalArgumentException("DataSource must be not null");
+        }
+        this.ds = ds;
+    }
+
+    /**
+     * @return a new Session, it must be closed by the caller
+     */
+    public Session open() throws SQLException {
+        return new Session(ds.getConnection());
+    }
+
+    public <T> List<T> query(String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+        try (Session s = open()) {
+            return s.query(sql, mapper, params);
+        }
+    }
+
+    public <T> T queryFirst(String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+        try (Session s = open()) {
+            return s.queryFirst(sql, mapper, params);
+        }
+    }
+
+    public int update(String sql, Object... params) throws SQLException {
+        try (Session s = open()) {
+            return s.update(sql, params);
+        }
+    }
+
+    /**
+     * @param n number of values, greater than 0
+     * @return the placeholders for an IN-list of n values, padded to the next power of two
+     */
+    public static String inList(int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("IN-list must have at least one value");
+        }
+        int size = paddedSize(n);
+        StringBuilder sb = new StringBuilder(size * 2);
+        for (int i = 0; i < size; i++) {
+            sb.append(i > 0 ? ",?" : "?");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param values values of an IN-list, not empty
+     * @return the values padded, repeating the last one, to the size of {@link #inList(int)}
+     */
+    public static List<Object> inValues(Collection<?> values) {
+        int size = paddedSize(values.size());
+        List<Object> padded = new ArrayList<>(size);
+        padded.addAll(values);
+        Object last = padded.get(padded.size() - 1);
+        while (padded.size() < size) {
+            padded.add(last);
+        }
+        return padded;
+    }
+
+    private static int paddedSize(int n) {
+        return n == 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * A connection with a cache of PreparedStatements. Sessions are not thread safe.
+     */
+    public static class Session implements AutoCloseable {
+        private final Connection c;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+        private boolean ownTransaction = false;
+        private boolean pending = false;
+
+        Session(Connection c) {
+            this.c = c;
+        }
+
+        /**
+         * @param sql constant SQL text with ? placeholders
+         * @return the cached PreparedStatement for the sql, prepared on first use
+         */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            // any statement run in our transaction is pending until commit() or rollback()
+            pending = ownTransaction;
+            PreparedStatement ps = statements.get(sql);
+            if (null == ps) {
+                ps = c.prepareStatement(sql);
+                statements.put(sql, ps);
+            }
+            return ps;
+        }
+
+        public <T> List<T> query(String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+            List<T> result = new ArrayList<>();
+            forEach(sql, 0, 0, rs -> result.add(mapper.map(rs)), params);
+            return result;
+        }
+
+        /**
+         * @return the first mapped row, or null if there are no rows
+         */
+        public <T> T queryFirst(String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+            PreparedStatement ps = prepare(sql);
+            bind(ps, params);
+            ps.setFetchSize(0);
+            ps.setMaxRows(1);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? mapper.map(rs) : null;
+            }
+        }
+
+        /**
+         * Stream the rows of a query.
+         *
+         * @param fetchSize rows fetched per round trip, 0 for the driver default
+         * @param maxRows max number of rows, 0 for no limit
+         */
+        public void forEach(String sql, int fetchSize, int maxRows, RowHandler handler, Object... params)
+                throws SQLException {
+            PreparedStatement ps = prepare(sql);
+            bind(ps, params);
+            ps.setFetchSize(fetchSize);
+            ps.setMaxRows(maxRows);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    handler.handle(rs);
+                }
+            }
+        }
+
+        /**
+         * Query with an IN-list. The sql must contain a single <code>%s</code> where the IN-list placeholders go,
+         * the IN-list parameters are bound after the given params.
+         */
+        public <T> List<T> queryIn(String sql, Collection<?> values, RowMapper<T> mapper, Object... params)
+                throws SQLException {
+            if (values.isEmpty()) {
+                return new ArrayList<>();
+            }
+            return query(String.format(sql, inList(values.size())), mapper, concat(params, inValues(values)));
+        }
+
+        public int update(String sql, Object... params) throws SQLException {
+            PreparedStatement ps = prepare(sql);
+            bind(ps, params);
+            return ps.executeUpdate();
+        }
+
+        /**
+         * Execute the same statement for every row of params in batches.
+         *
+         * @param batchSize max number of rows sent per executeBatch
+         * @return total number of statements executed
+         */
+        public int batch(String sql, Collection<Object[]> rows, int batchSize) throws SQLException {
+            if (rows.isEmpty()) {
+                return 0;
+            }
+            PreparedStatement ps = prepare(sql);
+            int batched = 0;
+            for (Iterator<Object[]> i = rows.iterator(); i.hasNext();) {
+                bind(ps, i.next());
+                ps.addBatch();
+                if (++batched % batchSize == 0 || !i.hasNext()) {
+                    ps.executeBatch();
+                }
+            }
+            return batched;
+        }
+
+        /**
+         * Start a transaction if the connection is in auto-commit mode. A managed connection is left to commit with
+         * its own transaction.
+         */
+        public void begin() throws SQLException {
+            if (!ownTransaction && c.getAutoCommit()) {
+                c.setAutoCommit(false);
+                ownTransaction = true;
+            }
+        }
+
+        public void commit() throws SQLException {
+            if (ownTransaction) {
+                c.commit();
+                pending = false;
+            }
+        }
+
+        public void rollback() {
+            if (ownTransaction) {
+                pending = false;
+                try {
+                    c.rollback();
+                } catch (SQLException ignored) {
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            for (PreparedStatement ps : statements.values()) {
+                try {
+                    ps.close();
+                } catch (Exception ignored) {
+                }
+            }
+            statements.clear();
+            if (ownTransaction) {
+                // restoring auto-commit would commit the work of a unit that failed before its commit()
+                if (pending) {
+                    rollback();
+                }
+                try {
+                    c.setAutoCommit(true);
+                } catch (Exception ignored) {
+                }
+            }
+            try {
+                c.close();
+            } catch (Exception ignored) {
+            }
+        }
+
+        private static Object[] concat(Object[] params, List<Object> values) {
+            Object[] all = new Object[params.length + values.size()];
+            System.arraycopy(params, 0, all, 0, params.length);
+            for (int i = 0; i < values.size(); i++) {
+                all[params.length + i] = values.get(i);
+            }
+            return all;
+        }
+
+        private static void bind(PreparedStatement ps, Object[] params) throws SQLException {
+            for (int i = 0; i < params.length; i++) {
+                Object param = params[i];
+                if (null == param) {
+                    ps.setNull(i + 1, Types.VARCHAR);
+                } else if (param instanceof Reader) {
+                    ps.setCharacterStream(i + 1, (Reader) param);
+                } else if (param instanceof Enum) {
+                    ps.setString(i + 1, ((Enum) param).name());
+                } else {
+                    ps.setObject(i + 1, param);
+                }
+            }
+        }
+    }
+}
@@ -22,16 +22,16 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.sql.Connection;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import javax.annotation.PostConstruct;
 import javax.ejb.Singleton;
@@ -55,6 +55,7 @@ import org.hawkular.alerts.api.model.trigger.Trigger.Mode;
 import org.hawkular.alerts.api.model.trigger.TriggerTemplate;
 import org.hawkular.alerts.api.services.AlertsService;
 import org.hawkular.alerts.api.services.DefinitionsService;
+import org.hawkular.alerts.api.services.TriggerDefinition;
 import org.hawkular.alerts.engine.log.MsgLogger;
 
 import org.jboss.logging.Logger;
@@ -72,12 +73,53 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
     private static final String JBOSS_DATA_DIR = "jboss.server.data.dir";
     private static final String INIT_FOLDER = "hawkular-alerts";
 
+    private static final int BATCH_SIZE = 100;
+    private static final int CACHE_SIZE;
+
+    static {
+        CACHE_SIZE = getIntProperty("org.hawkular.alerts.engine.DEFINITIONS_CACHE_SIZE", 10000);
+    }
+
     private Gson gson;
     private final String DS_NAME;
     private DataSource ds;
+    private DbAccess db;
     private AlertsService alertsService;
     private boolean initialized = false;
 
+    /*
+        Read-through caches of the definitions, keyed by id. The json payloads are cached, not the decoded objects,
+        as callers are free to modify the returned definitions. Every write invalidates the affected entries after
+        it completes, a load overlapping an invalidation is not cached (see LruCache).
+     */
+    // triggerId -> payload
+    private final LruCache<String, String> triggerCache = new LruCache<>(CACHE_SIZE);
+    // triggerId -> [conditionId, triggerMode, className, payload]
+    private final LruCache<String, List<String[]>> triggerConditionsCache = new LruCache<>(CACHE_SIZE);
+    // conditionId -> [triggerId, className, payload]
+    private final LruCache<String, String[]> conditionCache = new LruCache<>(CACHE_SIZE, row -> row[0]);
+    // triggerId -> [dampeningId, triggerMode, payload]
+    private final LruCache<String, List<String[]>> triggerDampeningsCache = new LruCache<>(CACHE_SIZE);
+    // dampeningId -> [triggerId, payload]
+    private final LruCache<String, String[]> dampeningCache = new LruCache<>(CACHE_SIZE, row -> row[0]);
+    // actionId -> payload
+    private final LruCache<String, String> actionCache = new LruCache<>(CACHE_SIZE);
+    // actionPlugin -> payload
+    private final LruCache<String, String> actionPluginCache = new LruCache<>(CACHE_SIZE);
+    // triggerId -> all the tags of the trigger
+    private final LruCache<String, List<Tag>> tagsCache = new LruCache<>(CACHE_SIZE);
+
+    private final LruCache<?, ?>[] caches = { triggerCache, triggerConditionsCache, conditionCache,
+            triggerDampeningsCache, dampeningCache, actionCache, actionPluginCache, tagsCache };
+
+    private static int getIntProperty(String name, int defaultValue) {
+        try {
+            return new Integer(System.getProperty(name)).intValue();
+        } catch (Exception ignored) {
+            return defaultValue;
+        }
+    }
+
     public DbDefinitionsServiceImpl() {
         DS_NAME = System.getProperty("org.hawkular.alerts.engine.datasource", "java:jboss/datasources/HawkularDS");
     }
@@ -86,6 +128,9 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
         this();
         this.ds = ds;
         this.alertsService = alertsService;
+        if (ds != null) {
+            db = new DbAccess(ds);
+        }
     }
 
     @PostConstruct
@@ -101,6 +146,9 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
                     msgLog.errorCannotConnectWithDatasource(e.getMessage());
                 }
             }
+            if (ds != null && db == null) {
+                db = new DbAccess(ds);
+            }
             if (alertsService == null) {
                 try {
                     InitialContext ctx = new InitialContext();
@@ -134,59 +182,13 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             return;
         }
 
-        Connection c = null;
-        Statement s = null;
-        try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            s.execute("CREATE TABLE IF NOT EXISTS HWK_ALERTS_TRIGGERS " +
-                    "( triggerId VARCHAR2(250) PRIMARY KEY, " +
-                    "  payload VARCHAR2(1024) )");
-
-            s.execute("CREATE TABLE IF NOT EXISTS HWK_ALERTS_CONDITIONS " +
-                    "( conditionId VARCHAR2(250) PRIMARY KEY," +
-                    "  triggerId VARCHAR2(250) NOT NULL," +
-                    "  triggerMode VARCHAR2(20) NOT NULL," +
-                    "  className VARCHAR2(250) NOT NULL," +
-                    "  payload VARCHAR2(1024) )");
-
-            s.execute("CREATE TABLE IF NOT EXISTS HWK_ALERTS_DAMPENINGS " +
-                    "( dampeningId VARCHAR2(250) PRIMARY KEY," +
-                    "  triggerId VARCHAR2(250) NOT NULL," +
-                    "  triggerMode VARCHAR2(20) NOT NULL," +
-                    "  payload VARCHAR2(1024) )");
-
-            s.execute("CREATE TABLE IF NOT EXISTS HWK_ALERTS_ACTION_PLUGINS " +
-                    "( actionPlugin VARCHAR(250) PRIMARY KEY," +
-                    "  payload VARCHAR(1024) )");
-
-            s.execute("CREATE TABLE IF NOT EXISTS HWK_ALERTS_ACTIONS " +
-                    "( actionId VARCHAR(250) NOT NULL," +
-                    "  actionPLugin VARCHAR(250)," +
-                    "  payload VARCHAR(1024)," +
-                    "  PRIMARY KEY(actionId, actionPlugin))");
-
-            s.execute("CREATE TABLE IF NOT EXISTS HWK_ALERTS_TAGS " +
-                    "( triggerId VARCHAR2(250) NOT NULL, " +
-                    "  category VARCHAR2(250)," +
-                    "  name VARCHAR2(1024) NOT NULL, " +
-                    "  visible BOOLEAN NOT NULL, " +
-                    "  PRIMARY KEY(triggerId, category, name) )");
-
-            s.execute("CREATE TABLE IF NOT EXISTS HWK_ALERTS_ALERTS " +
-                    "( triggerId VARCHAR2(250) NOT NULL, " +
-                    "  ctime long NOT NULL," +
-                    "  payload CLOB," +
-                    "  PRIMARY KEY(triggerId, ctime) )");
-
-            s.close();
+        try (Connection c = ds.getConnection()) {
+            int version = DbSchema.migrate(c);
+            log.debugf("Schema version [%s]", version);
 
         } catch (SQLException e) {
             log.debugf(e.getMessage(), e);
             msgLog.errorDatabaseException(e.getMessage());
-        } finally {
-            close(c, s);
         }
     }
 
@@ -502,35 +504,12 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
         if (ds == null) {
             throw new Exception("DataSource is null");
         }
+
         List<Condition> conditions = new ArrayList<Condition>();
-        Connection c = null;
-        Statement s = null;
-        ResultSet rs = null;
         try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("SELECT conditionId, className, payload FROM HWK_ALERTS_CONDITIONS ")
-                    .append("ORDER BY conditionId");
+            String sql = "SELECT conditionId, className, payload FROM HWK_ALERTS_CONDITIONS ORDER BY conditionId";
             log.debugf("SQL: " + sql);
-            rs = s.executeQuery(sql.toString());
-            while (rs.next()) {
-                String className = rs.getString(2);
-                Condition condition;
-                if (className.equals("AvailabilityCondition")) {
-                    condition = fromJson(rs.getString(3), AvailabilityCondition.class);
-                } else if (className.equals("CompareCondition")) {
-                    condition = fromJson(rs.getString(3), CompareCondition.class);
-                } else if (className.equals("StringCondition")) {
-                    condition = fromJson(rs.getString(3), StringCondition.class);
-                } else if (className.equals("ThresholdCondition")) {
-                    condition = fromJson(rs.getString(3), ThresholdCondition.class);
-                } else if (className.equals("ThresholdRangeCondition")) {
-                    condition = fromJson(rs.getString(3), ThresholdRangeCondition.class);
-                } else {
-                    log.debugf("Condition type: " + className + " not found");
-                    condition = null;
-                }
+            for (Condition condition : db.query(sql, conditionMapper)) {
                 if (condition != null) {
                     conditions.add(condition);
                 }
@@ -538,8 +517,6 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
-        } finally {
-            close(c, s, rs);
         }
 
         return conditions;
@@ -554,45 +531,25 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        Condition condition = null;
-        Connection c = null;
-        Statement s = null;
-        ResultSet rs = null;
-        try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("SELECT conditionId, className, payload FROM HWK_ALERTS_CONDITIONS "
-                    + "WHERE ")
-                    .append("conditionId = '").append(conditionId).append("' ")
-                    .append("ORDER BY triggerId");
-            log.debugf("SQL: " + sql);
-            rs = s.executeQuery(sql.toString());
-            if (rs.next()) {
-                String className = rs.getString(2);
-                if (className.equals("AvailabilityCondition")) {
-                    condition = fromJson(rs.getString(3), AvailabilityCondition.class);
-                } else if (className.equals("CompareCondition")) {
-                    condition = fromJson(rs.getString(3), CompareCondition.class);
-                } else if (className.equals("StringCondition")) {
-                    condition = fromJson(rs.getString(3), StringCondition.class);
-                } else if (className.equals("ThresholdCondition")) {
-                    condition = fromJson(rs.getString(3), ThresholdCondition.class);
-                } else if (className.equals("ThresholdRangeCondition")) {
-                    condition = fromJson(rs.getString(3), ThresholdRangeCondition.class);
-                } else {
-                    log.debugf("Condition type: " + className + " not found");
-                    condition = null;
-                }
+        String[] row = conditionCache.get(conditionId);
+        if (null == row) {
+            long stamp = conditionCache.stamp();
+            try {
+                String sql = "SELECT triggerId, className, payload FROM HWK_ALERTS_CONDITIONS WHERE conditionId = ?";
+                log.debugf("SQL: " + sql);
+                row = db.queryFirst(sql, rs -> new String[] { rs.getString(1), rs.getString(2), rs.getString(3) },
+                        conditionId);
+            } catch (SQLException e) {
+                msgLog.errorDatabaseException(e.getMessage());
+                throw e;
             }
-        } catch (SQLException e) {
-            msgLog.errorDatabaseException(e.getMessage());
-            throw e;
-        } finally {
-            close(c, s, rs);
+            if (null == row) {
+                return null;
+            }
+            conditionCache.put(conditionId, row, stamp);
         }
 
-        return condition;
+        return fromJsonCondition(row[1], row[2]);
     }
 
     @Override
@@ -604,49 +561,32 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        List<Condition> conditions = new ArrayList<>();
-        Connection c = null;
-        Statement s = null;
-        ResultSet rs = null;
-        try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("SELECT triggerId, className, payload FROM HWK_ALERTS_CONDITIONS " +
-                    "WHERE ")
-                    .append("triggerId = '").append(triggerId).append("' ");
-            if (null != triggerMode) {
-                sql.append("AND triggerMode = '").append(triggerMode.name()).append("' ");
+        // cache the whole condition set of the trigger, the mode is applied on read
+        List<String[]> rows = triggerConditionsCache.get(triggerId);
+        if (null == rows) {
+            long stamp = triggerConditionsCache.stamp();
+            try {
+                String sql = "SELECT conditionId, triggerMode, className, payload FROM HWK_ALERTS_CONDITIONS "
+                        + "WHERE triggerId = ?";
+                log.debugf("SQL: " + sql);
+                rows = db.query(sql, rs -> new String[] { rs.getString(1), rs.getString(2), rs.getString(3),
+                        rs.getString(4) }, triggerId);
+            } catch (SQLException e) {
+                msgLog.errorDatabaseException(e.getMessage());
+                throw e;
             }
-            sql.append("ORDER BY triggerId");
-            log.debugf("SQL: " + sql);
-            rs = s.executeQuery(sql.toString());
-            while (rs.next()) {
-                String className = rs.getString(2);
-                Condition condition;
-                if (className.equals("AvailabilityCondition")) {
-                    condition = fromJson(rs.getString(3), AvailabilityCondition.class);
-                } else if (className.equals("CompareCondition")) {
-                    condition = fromJson(rs.getString(3), CompareCondition.class);
-                } else if (className.equals("StringCondition")) {
-                    condition = fromJson(rs.getString(3), StringCondition.class);
-                } else if (className.equals("ThresholdCondition")) {
-                    condition = fromJson(rs.getString(3), ThresholdCondition.class);
-                } else if (className.equals("ThresholdRangeCondition")) {
-                    condition = fromJson(rs.getString(3), ThresholdRangeCondition.class);
-                } else {
-                    log.debugf("Condition type: " + className + " not found");
-                    condition = null;
-                }
-                if (condition != null) {
-                    conditions.add(condition);
-                }
+            triggerConditionsCache.put(triggerId, rows, stamp);
+        }
+
+        List<Condition> conditions = new ArrayList<>(rows.size());
+        for (String[] row : rows) {
+            if (null != triggerMode && !triggerMode.name().equals(row[1])) {
+                continue;
+            }
+            Condition condition = fromJsonCondition(row[2], row[3]);
+            if (condition != null) {
+                conditions.add(condition);
             }
-        } catch (SQLException e) {
-            msgLog.errorDatabaseException(e.getMessage());
-            throw e;
-        } finally {
-            close(c, s, rs);
         }
 
         return conditions;
@@ -661,29 +601,24 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        Dampening dampening = null;
-        Connection c = null;
-        Statement s = null;
-        ResultSet rs = null;
-        try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("SELECT dampeningId, payload FROM HWK_ALERTS_DAMPENINGS WHERE ")
-                    .append("dampeningId = '").append(dampeningId).append("' ");
-            log.debugf("SQL: " + sql);
-            rs = s.executeQuery(sql.toString());
-            if (rs.next()) {
-                dampening = fromJson(rs.getString(2), Dampening.class);
+        String[] row = dampeningCache.get(dampeningId);
+        if (null == row) {
+            long stamp = dampeningCache.stamp();
+            try {
+                String sql = "SELECT triggerId, payload FROM HWK_ALERTS_DAMPENINGS WHERE dampeningId = ?";
+                log.debugf("SQL: " + sql);
+                row = db.queryFirst(sql, rs -> new String[] { rs.getString(1), rs.getString(2) }, dampeningId);
+            } catch (SQLException e) {
+                msgLog.errorDatabaseException(e.getMessage());
+                throw e;
             }
-        } catch (SQLException e) {
-            msgLog.errorDatabaseException(e.getMessage());
-            throw e;
-        } finally {
-            close(c, s, rs);
+            if (null == row) {
+                return null;
+            }
+            dampeningCache.put(dampeningId, row, stamp);
         }
 
-        return dampening;
+        return fromJson(row[1], Dampening.class);
     }
 
     @Override
@@ -695,32 +630,27 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        List<Dampening> dampenings = new ArrayList<>();
-        Connection c = null;
-        Statement s = null;
-        ResultSet rs = null;
-        try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("SELECT triggerId, payload FROM HWK_ALERTS_DAMPENINGS " +
-                    "WHERE ")
-                    .append("triggerId = '").append(triggerId).append("' ");
-            if (null != triggerMode) {
-                sql.append("AND triggerMode = '").append(triggerMode.name()).append("' ");
+        // cache all the dampenings of the trigger, the mode is applied on read
+        List<String[]> rows = triggerDampeningsCache.get(triggerId);
+        if (null == rows) {
+            long stamp = triggerDampeningsCache.stamp();
+            try {
+                String sql = "SELECT dampeningId, triggerMode, payload FROM HWK_ALERTS_DAMPENINGS WHERE triggerId = ?";
+                log.debugf("SQL: " + sql);
+                rows = db.query(sql, rs -> new String[] { rs.getString(1), rs.getString(2), rs.getString(3) },
+                        triggerId);
+            } catch (SQLException e) {
+                msgLog.errorDatabaseException(e.getMessage());
+                throw e;
             }
-            sql.append("ORDER BY triggerId");
-            log.debugf("SQL: " + sql);
-            rs = s.executeQuery(sql.toString());
-            while (rs.next()) {
-                Dampening dampening = fromJson(rs.getString(2), Dampening.class);
-                dampenings.add(dampening);
+            triggerDampeningsCache.put(triggerId, rows, stamp);
+        }
+
+        List<Dampening> dampenings = new ArrayList<>(rows.size());
+        for (String[] row : rows) {
+            if (null == triggerMode || triggerMode.name().equals(row[1])) {
+                dampenings.add(fromJson(row[2], Dampening.class));
             }
-        } catch (SQLException e) {
-            msgLog.errorDatabaseException(e.getMessage());
-            throw e;
-        } finally {
-            close(c, s, rs);
         }
 
         return dampenings;
@@ -731,30 +661,15 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
         if (ds == null) {
             throw new Exception("DataSource is null");
         }
-        List<Dampening> dampenings = new ArrayList<Dampening>();
-        Connection c = null;
-        Statement s = null;
-        ResultSet rs = null;
-        try {
-            c = ds.getConnection();
-            s = c.createStatement();
 
-            StringBuilder sql = new StringBuilder("SELECT triggerId, payload FROM HWK_ALERTS_DAMPENINGS ")
-                    .append("ORDER BY triggerId");
+        try {
+            String sql = "SELECT triggerId, payload FROM HWK_ALERTS_DAMPENINGS ORDER BY triggerId";
             log.debugf("SQL: " + sql);
-            rs = s.executeQuery(sql.toString());
-            while (rs.next()) {
-                Dampening dampening = fromJson(rs.getString(2), Dampening.class);
-                dampenings.add(dampening);
-            }
+            return db.query(sql, dampeningMapper);
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
-        } finally {
-            close(c, s, rs);
         }
-
-        return dampenings;
     }
 
     @Override
@@ -859,49 +774,51 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        // Get rid of the prior condition set
-        removeConditions(triggerId, triggerMode);
-
-        // Now add the new condition set
-        Connection c = null;
-        Statement s = null;
-        try {
-            c = ds.getConnection();
-            s = c.createStatement();
-            List<String> dataIds = new ArrayList<>(2);
-
-            int i = 0;
-            for (Condition cond : conditions) {
-                cond.setTriggerId(triggerId);
-                cond.setTriggerMode(triggerMode);
-                cond.setConditionSetSize(conditions.size());
-                cond.setConditionSetIndex(++i);
-
-                StringBuilder sql = new StringBuilder("INSERT INTO HWK_ALERTS_CONDITIONS VALUES (")
-                        .append("'").append(cond.getConditionId()).append("', ")
-                        .append("'").append(cond.getTriggerId()).append("', ")
-                        .append("'").append(cond.getTriggerMode().name()).append("', ")
-                        .append("'").append(cond.getClass().getSimpleName()).append("', ")
-                        .append("'").append(toJson(cond)).append("'")
-                        .append(")");
+        // Replace the condition set in a single unit of work
+        try (DbAccess.Session s = db.open()) {
+            try {
+                s.begin();
+
+                // Get rid of the prior condition set
+                removeConditions(s, triggerId, triggerMode);
+
+                // Now add the new condition set
+                List<Object[]> rows = new ArrayList<>(conditions.size());
+                Set<String> dataIds = new LinkedHashSet<>();
+                int i = 0;
+                for (Condition cond : conditions) {
+                    cond.setTriggerId(triggerId);
+                    cond.setTriggerMode(triggerMode);
+                    cond.setConditionSetSize(conditions.size());
+                    cond.setConditionSetIndex(++i);
+
+                    rows.add(new Object[] { cond.getConditionId(), cond.getTriggerId(), cond.getTriggerMode(),
+                            cond.getClass().getSimpleName(), toJson(cond) });
+
+                    // generate the automatic dataId tags for search
+                    dataIds.add(cond.getDataId());
+                    if (cond instanceof CompareCondition) {
+                        dataIds.add(((CompareCondition) cond).getData2Id());
+                    }
+                }
+                String sql = "INSERT INTO HWK_ALERTS_CONDITIONS VALUES (?,?,?,?,?)";
                 log.debugf("SQL: " + sql);
-                s.execute(sql.toString());
+                s.batch(sql, rows, BATCH_SIZE);
 
-                // generate the automatic dataId tags for search
-                dataIds.add(cond.getDataId());
-                if (cond instanceof CompareCondition) {
-                    dataIds.add(((CompareCondition) cond).getData2Id());
-                }
                 for (String dataId : dataIds) {
-                    insertTag(c, s, cond.getTriggerId(), "dataId", dataId, false);
+                    insertTag(s, triggerId, "dataId", dataId, false);
                 }
-                dataIds.clear();
+
+                s.commit();
+            } catch (SQLException e) {
+                s.rollback();
+                throw e;
             }
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         } finally {
-            close(c, s);
+            invalidateConditions(triggerId);
         }
 
         if (initialized && null != alertsService) {
@@ -920,26 +837,16 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        Connection c = null;
-        Statement s = null;
         try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("INSERT INTO HWK_ALERTS_DAMPENINGS VALUES (")
-                    .append("'").append(dampening.getDampeningId()).append("', ")
-                    .append("'").append(dampening.getTriggerId()).append("', ")
-                    .append("'").append(dampening.getTriggerMode().name()).append("', ")
-                    .append("'").append(toJson(dampening)).append("'")
-                    .append(")");
+            String sql = "INSERT INTO HWK_ALERTS_DAMPENINGS VALUES (?,?,?,?)";
             log.debugf("SQL: " + sql);
-            s.execute(sql.toString());
-
+            db.update(sql, dampening.getDampeningId(), dampening.getTriggerId(), dampening.getTriggerMode(),
+                    toJson(dampening));
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         } finally {
-            close(c, s);
+            invalidateDampening(dampening);
         }
 
         if (initialized && null != alertsService) {
@@ -965,25 +872,15 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        Connection c = null;
-        Statement s = null;
         try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("INSERT INTO HWK_ALERTS_ACTIONS VALUES (")
-                    .append("'").append(actionId).append("', ")
-                    .append("'").append(actionPlugin).append("', ")
-                    .append("'").append(toJson(properties)).append("'")
-                    .append(")");
+            String sql = "INSERT INTO HWK_ALERTS_ACTIONS VALUES (?,?,?)";
             log.debugf("SQL: " + sql);
-            s.execute(sql.toString());
-
+            db.update(sql, actionId, actionPlugin, toJson(properties));
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         } finally {
-            close(c, s);
+            actionCache.invalidate(actionId);
         }
     }
 
@@ -999,24 +896,15 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        Connection c = null;
-        Statement s = null;
         try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("INSERT INTO HWK_ALERTS_ACTION_PLUGINS VALUES (")
-                    .append("'").append(actionPlugin).append("', ")
-                    .append("'").append(toJson(properties)).append("'")
-                    .append(")");
+            String sql = "INSERT INTO HWK_ALERTS_ACTION_PLUGINS VALUES (?,?)";
             log.debugf("SQL: " + sql);
-            s.execute(sql.toString());
-            s.close();
+            db.update(sql, actionPlugin, toJson(properties));
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         } finally {
-            close(c, s);
+            actionPluginCache.invalidate(actionPlugin);
         }
     }
 
@@ -1029,24 +917,15 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        Connection c = null;
-        Statement s = null;
         try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("INSERT INTO HWK_ALERTS_TRIGGERS VALUES (")
-                    .append("'").append(trigger.getId()).append("', ")
-                    .append("'").append(toJson(trigger)).append("'")
-                    .append(")");
+            String sql = "INSERT INTO HWK_ALERTS_TRIGGERS VALUES (?,?)";
             log.debugf("SQL: " + sql);
-            s.execute(sql.toString());
-
+            db.update(sql, trigger.getId(), toJson(trigger));
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         } finally {
-            close(c, s);
+            triggerCache.invalidate(trigger.getId());
         }
     }
 
@@ -1148,31 +1027,21 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        Map<String, String> payload = null;
-        Connection c = null;
-        Statement s = null;
-        ResultSet rs = null;
-        try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("SELECT actionId, payload FROM HWK_ALERTS_ACTIONS WHERE ")
-                    .append("actionId = '").append(actionId).append("'");
-            log.debugf("SQL: " + sql);
-            rs = s.executeQuery(sql.toString());
-            if (rs.next()) {
-                payload = fromJson(rs.getString(2), Map.class);
+        String payload = actionCache.get(actionId);
+        if (null == payload) {
+            long stamp = actionCache.stamp();
+            try {
+                String sql = "SELECT actionId, payload FROM HWK_ALERTS_ACTIONS WHERE actionId = ?";
+                log.debugf("SQL: " + sql);
+                payload = db.queryFirst(sql, rs -> rs.getString(2), actionId);
+            } catch (SQLException e) {
+                msgLog.errorDatabaseException(e.getMessage());
+                throw e;
             }
-            s.close();
-
-        } catch (SQLException e) {
-            msgLog.errorDatabaseException(e.getMessage());
-            throw e;
-        } finally {
-            close(c, s, rs);
+            actionCache.put(actionId, payload, stamp);
         }
 
-        return payload;
+        return null != payload ? fromJson(payload, Map.class) : null;
     }
 
     @Override
@@ -1180,33 +1049,15 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
         if (ds == null) {
             throw new Exception("DataSource is null");
         }
-        if (ds == null) {
-            throw new Exception("DataSource is null");
-        }
 
-        List<String> actions = null;
-        Connection c = null;
-        Statement s = null;
-        ResultSet rs = null;
         try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("SELECT actionId FROM HWK_ALERTS_ACTIONS ORDER BY actionId ");
+            String sql = "SELECT actionId FROM HWK_ALERTS_ACTIONS ORDER BY actionId";
             log.debugf("SQL: " + sql);
-            rs = s.executeQuery(sql.toString());
-            actions = new ArrayList();
-            while (rs.next()) {
-                actions.add(rs.getString(1));
-            }
+            return db.query(sql, rs -> rs.getString(1));
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
-        } finally {
-            close(c, s, rs);
         }
-
-        return actions;
     }
 
     @Override
@@ -1218,31 +1069,14 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        List<String> actions = null;
-        Connection c = null;
-        Statement s = null;
-        ResultSet rs = null;
         try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("SELECT actionId FROM HWK_ALERTS_ACTIONS WHERE ")
-                    .append("actionPlugin = '").append(actionPlugin).append("' ")
-                    .append("ORDER BY actionId");
+            String sql = "SELECT actionId FROM HWK_ALERTS_ACTIONS WHERE actionPlugin = ? ORDER BY actionId";
             log.debugf("SQL: " + sql);
-            rs = s.executeQuery(sql.toString());
-            actions = new ArrayList();
-            while (rs.next()) {
-                actions.add(rs.getString(1));
-            }
+            return db.query(sql, rs -> rs.getString(1), actionPlugin);
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
-        } finally {
-            close(c, s, rs);
         }
-
-        return actions;
     }
 
     @Override
@@ -1254,28 +1088,21 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        Set<String> payload = null;
-        Connection c = null;
-        Statement s = null;
-        ResultSet rs = null;
-        try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("SELECT actionPlugin, payload FROM HWK_ALERTS_ACTION_PLUGINS WHERE ")
-                    .append("actionPlugin = '").append(actionPlugin).append("'");
-            log.debugf("SQL: " + sql);
-            rs = s.executeQuery(sql.toString());
-            if (rs.next()) {
-                payload = fromJson(rs.getString(2), Set.class);
+        String json = actionPluginCache.get(actionPlugin);
+        if (null == json) {
+            long stamp = actionPluginCache.stamp();
+            try {
+                String sql = "SELECT actionPlugin, payload FROM HWK_ALERTS_ACTION_PLUGINS WHERE actionPlugin = ?";
+                log.debugf("SQL: " + sql);
+                json = db.queryFirst(sql, rs -> rs.getString(2), actionPlugin);
+            } catch (SQLException e) {
+                msgLog.errorDatabaseException(e.getMessage());
+                throw e;
             }
-        } catch (SQLException e) {
-            msgLog.errorDatabaseException(e.getMessage());
-            throw e;
-        } finally {
-            close(c, s, rs);
+            actionPluginCache.put(actionPlugin, json, stamp);
         }
 
+        Set<String> payload = null != json ? fromJson(json, Set.class) : null;
         return payload != null && !payload.isEmpty() ? new HashSet(payload) : null;
     }
 
@@ -1285,29 +1112,14 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        List<String> actionPlugins = new ArrayList<String>();
-        Connection c = null;
-        Statement s = null;
-        ResultSet rs = null;
         try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("SELECT actionPlugin FROM HWK_ALERTS_ACTION_PLUGINS ")
-                    .append("ORDER BY actionPlugin");
+            String sql = "SELECT actionPlugin FROM HWK_ALERTS_ACTION_PLUGINS ORDER BY actionPlugin";
             log.debugf("SQL: " + sql);
-            rs = s.executeQuery(sql.toString());
-            while (rs.next()) {
-                actionPlugins.add(rs.getString(1));
-            }
+            return db.query(sql, rs -> rs.getString(1));
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
-        } finally {
-            close(c, s, rs);
         }
-
-        return actionPlugins;
     }
 
     @Override
@@ -1319,29 +1131,21 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        Trigger trigger = null;
-        Connection c = null;
-        Statement s = null;
-        ResultSet rs = null;
-        try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("SELECT triggerId, payload FROM HWK_ALERTS_TRIGGERS WHERE ")
-                    .append("triggerId = '").append(triggerId).append("' ");
-            log.debugf("SQL: " + sql);
-            rs = s.executeQuery(sql.toString());
-            if (rs.next()) {
-                trigger = fromJson(rs.getString(2), Trigger.class);
+        String payload = triggerCache.get(triggerId);
+        if (null == payload) {
+            long stamp = triggerCache.stamp();
+            try {
+                String sql = "SELECT triggerId, payload FROM HWK_ALERTS_TRIGGERS WHERE triggerId = ?";
+                log.debugf("SQL: " + sql);
+                payload = db.queryFirst(sql, rs -> rs.getString(2), triggerId);
+            } catch (SQLException e) {
+                msgLog.errorDatabaseException(e.getMessage());
+                throw e;
             }
-        } catch (SQLException e) {
-            msgLog.errorDatabaseException(e.getMessage());
-            throw e;
-        } finally {
-            close(c, s, rs);
+            triggerCache.put(triggerId, payload, stamp);
         }
 
-        return trigger;
+        return null != payload ? fromJson(payload, Trigger.class) : null;
     }
 
     @Override
@@ -1350,66 +1154,130 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        List<Trigger> triggers = new ArrayList<Trigger>();
-        Connection c = null;
-        Statement s = null;
-        ResultSet rs = null;
         try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("SELECT triggerId, payload FROM HWK_ALERTS_TRIGGERS ")
-                    .append("ORDER BY triggerId");
+            String sql = "SELECT triggerId, payload FROM HWK_ALERTS_TRIGGERS ORDER BY triggerId";
             log.debugf("SQL: " + sql);
-            rs = s.executeQuery(sql.toString());
-            while (rs.next()) {
-                Trigger trigger = fromJson(rs.getString(2), Trigger.class);
-                triggers.add(trigger);
-            }
+            return db.query(sql, triggerMapper);
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
-        } finally {
-            close(c, s, rs);
         }
-
-        return triggers;
     }
 
-    private void removeConditions(String triggerId, Trigger.Mode triggerMode) throws Exception {
-        if (triggerId == null || triggerId.isEmpty()) {
-            throw new IllegalArgumentException("TriggerId must not be null");
+    @Override
+    public void getAllEnabledDefinitions(int batchSize, Consumer<Collection<TriggerDefinition>> consumer)
+            throws Exception {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("BatchSize must be greater than 0");
         }
-        if (triggerMode == null) {
-            throw new IllegalArgumentException("TriggerMode must not be null");
+        if (consumer == null) {
+            throw new IllegalArgumentException("Consumer must be not null");
         }
         if (ds == null) {
             throw new Exception("DataSource is null");
         }
 
-        Connection c = null;
-        Statement s = null;
-        try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("DELETE FROM HWK_ALERTS_CONDITIONS WHERE ")
-                    .append("triggerId = '").append(triggerId).append("' ")
-                    .append(" AND triggerMode = '").append(triggerMode.name()).append("' ");
+        final List<RawDefinition>[] batch = new List[] { new ArrayList<>(batchSize) };
+        final RawDefinition[] current = { null };
+        try (DbAccess.Session s = db.open()) {
+            // A single ordered pass over the three tables, the rows of a trigger are contiguous. Batches are decoded
+            // on the calling thread, an EJB must not hand work to threads the container does not manage.
+            String sql = "SELECT triggerId, 'Trigger', payload FROM HWK_ALERTS_TRIGGERS "
+                    + "UNION ALL SELECT triggerId, className, payload FROM HWK_ALERTS_CONDITIONS "
+                    + "UNION ALL SELECT triggerId, 'Dampening', payload FROM HWK_ALERTS_DAMPENINGS "
+                    + "ORDER BY 1";
             log.debugf("SQL: " + sql);
-            s.execute(sql.toString());
-
-            // if removing conditions remove the automatically-added dataId tags
-            deleteTags(c, s, triggerId, "dataId", null);
+            s.forEach(sql, batchSize, 0, rs -> {
+                String triggerId = rs.getString(1);
+                if (null == current[0] || !current[0].triggerId.equals(triggerId)) {
+                    if (null != current[0]) {
+                        batch[0].add(current[0]);
+                        if (batch[0].size() == batchSize) {
+                            consumer.accept(decode(batch[0]));
+                            batch[0] = new ArrayList<>(batchSize);
+                        }
+                    }
+                    current[0] = new RawDefinition(triggerId);
+                }
+                String kind = rs.getString(2);
+                String payload = rs.getString(3);
+                if ("Trigger".equals(kind)) {
+                    current[0].trigger = payload;
+                } else if ("Dampening".equals(kind)) {
+                    current[0].dampenings.add(payload);
+                } else {
+                    current[0].conditions.add(new String[] { kind, payload });
+                }
+            });
+            if (null != current[0]) {
+                batch[0].add(current[0]);
+            }
+            consumer.accept(decode(batch[0]));
 
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
-        } finally {
-            close(c, s);
         }
     }
 
+    private List<TriggerDefinition> decode(List<RawDefinition> batch) {
+        List<TriggerDefinition> definitions = new ArrayList<>(batch.size());
+        for (RawDefinition raw : batch) {
+            TriggerDefinition definition = decode(raw);
+            if (null != definition) {
+                definitions.add(definition);
+            }
+        }
+        return definitions;
+    }
+
+    private TriggerDefinition decode(RawDefinition raw) {
+        if (null == raw.trigger) {
+            log.debugf("Definitions found for not existing trigger %s", raw.triggerId);
+            return null;
+        }
+        Trigger trigger = fromJson(raw.trigger, Trigger.class);
+        if (!trigger.isEnabled()) {
+            return null;
+        }
+        List<Condition> conditions = new ArrayList<>(raw.conditions.size());
+        for (String[] condition : raw.conditions) {
+            Condition decoded = fromJsonCondition(condition[0], condition[1]);
+            if (null != decoded) {
+                conditions.add(decoded);
+            }
+        }
+        List<Dampening> dampenings = new ArrayList<>(raw.dampenings.size());
+        for (String dampening : raw.dampenings) {
+            dampenings.add(fromJson(dampening, Dampening.class));
+        }
+        return new TriggerDefinition(trigger, conditions, dampenings);
+    }
+
+    /*
+        Undecoded rows of a trigger definition
+     */
+    private static class RawDefinition {
+        final String triggerId;
+        String trigger;
+        final List<String[]> conditions = new ArrayList<>(2);
+        final List<String> dampenings = new ArrayList<>(1);
+
+        RawDefinition(String triggerId) {
+            this.triggerId = triggerId;
+        }
+    }
+
+    private void removeConditions(DbAccess.Session s, String triggerId, Trigger.Mode triggerMode)
+            throws SQLException {
+        String sql = "DELETE FROM HWK_ALERTS_CONDITIONS WHERE triggerId = ? AND triggerMode = ?";
+        log.debugf("SQL: " + sql);
+        s.update(sql, triggerId, triggerMode);
+
+        // if removing conditions remove the automatically-added dataId tags
+        deleteTags(s, triggerId, "dataId", null);
+    }
+
     @Override
     public void removeDampening(String dampeningId) throws Exception {
         if (dampeningId == null || dampeningId.isEmpty()) {
@@ -1425,22 +1293,15 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             return;
         }
 
-        Connection c = null;
-        Statement s = null;
         try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("DELETE FROM HWK_ALERTS_DAMPENINGS WHERE ")
-                    .append("dampeningId = '").append(dampeningId).append("' ");
+            String sql = "DELETE FROM HWK_ALERTS_DAMPENINGS WHERE dampeningId = ?";
             log.debugf("SQL: " + sql);
-            s.execute(sql.toString());
-
+            db.update(sql, dampeningId);
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         } finally {
-            close(c, s);
+            invalidateDampening(dampening);
         }
 
         if (initialized && null != alertsService) {
@@ -1457,22 +1318,15 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        Connection c = null;
-        Statement s = null;
         try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("DELETE FROM HWK_ALERTS_ACTIONS WHERE ")
-                    .append("actionId = '").append(actionId).append("' ");
+            String sql = "DELETE FROM HWK_ALERTS_ACTIONS WHERE actionId = ?";
             log.debugf("SQL: " + sql);
-            s.execute(sql.toString());
-
+            db.update(sql, actionId);
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         } finally {
-            close(c, s);
+            actionCache.invalidate(actionId);
         }
     }
 
@@ -1485,22 +1339,15 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        Connection c = null;
-        Statement s = null;
         try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("DELETE FROM HWK_ALERTS_ACTION_PLUGINS WHERE ")
-                    .append("actionPlugin = '").append(actionPlugin).append("' ");
+            String sql = "DELETE FROM HWK_ALERTS_ACTION_PLUGINS WHERE actionPlugin = ?";
             log.debugf("SQL: " + sql);
-            s.execute(sql.toString());
-
+            db.update(sql, actionPlugin);
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         } finally {
-            close(c, s);
+            actionPluginCache.invalidate(actionPlugin);
         }
     }
 
@@ -1514,37 +1361,25 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        Connection c = null;
-        Statement s = null;
-        try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("DELETE FROM HWK_ALERTS_DAMPENINGS WHERE ")
-                    .append("triggerId = '").append(triggerId).append("' ");
-            log.debugf("SQL: " + sql);
-            s.execute(sql.toString());
-
-            sql = new StringBuilder("DELETE FROM HWK_ALERTS_CONDITIONS WHERE ")
-                    .append("triggerId = '").append(triggerId).append("' ");
-            log.debugf("SQL: " + sql);
-            s.execute(sql.toString());
-
-            sql = new StringBuilder("DELETE FROM HWK_ALERTS_TAGS WHERE ")
-                    .append("triggerId = '").append(triggerId).append("' ");
-            log.debugf("SQL: " + sql);
-            s.execute(sql.toString());
-
-            sql = new StringBuilder("DELETE FROM HWK_ALERTS_TRIGGERS WHERE ")
-                    .append("triggerId = '").append(triggerId).append("' ");
-            log.debugf("SQL: " + sql);
-            s.execute(sql.toString());
-
+        try (DbAccess.Session s = db.open()) {
+            try {
+                s.begin();
+                for (String table : new String[] { "HWK_ALERTS_DAMPENINGS", "HWK_ALERTS_CONDITIONS", "HWK_ALERTS_TAGS",
+                        "HWK_ALERTS_TRIGGERS" }) {
+                    String sql = "DELETE FROM " + table + " WHERE triggerId = ?";
+                    log.debugf("SQL: " + sql);
+                    s.update(sql, triggerId);
+                }
+                s.commit();
+            } catch (SQLException e) {
+                s.rollback();
+                throw e;
+            }
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         } finally {
-            close(c, s);
+            invalidateTrigger(triggerId);
         }
 
         if (initialized && null != alertsService) {
@@ -1561,23 +1396,15 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        Connection c = null;
-        Statement s = null;
         try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("UPDATE HWK_ALERTS_DAMPENINGS SET ")
-                    .append("payload = '").append(toJson(dampening)).append("' ")
-                    .append("WHERE dampeningId = '").append(dampening.getDampeningId()).append("' ");
+            String sql = "UPDATE HWK_ALERTS_DAMPENINGS SET payload = ? WHERE dampeningId = ?";
             log.debugf("SQL: " + sql);
-            s.execute(sql.toString());
-
+            db.update(sql, toJson(dampening), dampening.getDampeningId());
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         } finally {
-            close(c, s);
+            invalidateDampening(dampening);
         }
 
         if (initialized && null != alertsService) {
@@ -1599,23 +1426,15 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        Connection c = null;
-        Statement s = null;
         try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("UPDATE HWK_ALERTS_ACTIONS SET ")
-                    .append("payload = '").append(toJson(properties)).append("' ")
-                    .append("WHERE actionId = '").append(actionId).append("' ");
+            String sql = "UPDATE HWK_ALERTS_ACTIONS SET payload = ? WHERE actionId = ?";
             log.debugf("SQL: " + sql);
-            s.execute(sql.toString());
-
+            db.update(sql, toJson(properties), actionId);
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         } finally {
-            close(c, s);
+            actionCache.invalidate(actionId);
         }
     }
 
@@ -1631,23 +1450,15 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        Connection c = null;
-        Statement s = null;
         try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("UPDATE HWK_ALERTS_ACTION_PLUGINS SET ")
-                    .append("payload = '").append(toJson(properties)).append("' ")
-                    .append("WHERE actionPlugin = '").append(actionPlugin).append("' ");
+            String sql = "UPDATE HWK_ALERTS_ACTION_PLUGINS SET payload = ? WHERE actionPlugin = ?";
             log.debugf("SQL: " + sql);
-            s.execute(sql.toString());
-
+            db.update(sql, toJson(properties), actionPlugin);
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         } finally {
-            close(c, s);
+            actionPluginCache.invalidate(actionPlugin);
         }
     }
 
@@ -1660,23 +1471,15 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        Connection c = null;
-        Statement s = null;
         try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("UPDATE HWK_ALERTS_TRIGGERS SET ")
-                    .append("payload = '").append(toJson(trigger)).append("' ")
-                    .append("WHERE triggerId = '").append(trigger.getId()).append("' ");
+            String sql = "UPDATE HWK_ALERTS_TRIGGERS SET payload = ? WHERE triggerId = ?";
             log.debugf("SQL: " + sql);
-            s.execute(sql.toString());
-
+            db.update(sql, toJson(trigger), trigger.getId());
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         } finally {
-            close(c, s);
+            triggerCache.invalidate(trigger.getId());
         }
 
         if (initialized && null != alertsService) {
@@ -1686,6 +1489,58 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
         return trigger;
     }
 
+    private void invalidateConditions(String triggerId) {
+        triggerConditionsCache.invalidate(triggerId);
+        conditionCache.invalidateGroup(triggerId);
+        // the dataId tags are maintained with the conditions
+        tagsCache.invalidate(triggerId);
+    }
+
+    private void invalidateDampening(Dampening dampening) {
+        triggerDampeningsCache.invalidate(dampening.getTriggerId());
+        dampeningCache.invalidate(dampening.getDampeningId());
+    }
+
+    private void invalidateTrigger(String triggerId) {
+        triggerCache.invalidate(triggerId);
+        invalidateConditions(triggerId);
+        triggerDampeningsCache.invalidate(triggerId);
+        dampeningCache.invalidateGroup(triggerId);
+    }
+
+    /**
+     * @return the number of definition reads served by the cache
+     */
+    public long getCacheHits() {
+        long hits = 0L;
+        for (LruCache<?, ?> cache : caches) {
+            hits += cache.getHits();
+        }
+        return hits;
+    }
+
+    /**
+     * @return the number of definition reads that went to the database
+     */
+    public long getCacheMisses() {
+        long misses = 0L;
+        for (LruCache<?, ?> cache : caches) {
+            misses += cache.getMisses();
+        }
+        return misses;
+    }
+
+    /**
+     * @return the number of cached entries, each cache is bounded to DEFINITIONS_CACHE_SIZE entries
+     */
+    public int getCacheSize() {
+        int size = 0;
+        for (LruCache<?, ?> cache : caches) {
+            size += cache.size();
+        }
+        return size;
+    }
+
     public int getNumTable(String table) throws Exception {
         if (table == null || table.isEmpty()) {
             throw new IllegalArgumentException("Table must be not null");
@@ -1694,32 +1549,22 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        int numRows = -1;
-        Connection c = null;
-        Statement s = null;
-        ResultSet rs = null;
         try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM ")
-                    .append(table);
+            String sql = "SELECT COUNT(*) FROM " + table;
             log.debugf("SQL: " + sql);
-            rs = s.executeQuery(sql.toString());
-            if (rs.next()) {
-                numRows = rs.getInt(1);
-            }
-
+            Integer numRows = db.queryFirst(sql, rs -> rs.getInt(1));
+            return null != numRows ? numRows : -1;
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
-        } finally {
-            close(c, s);
         }
-
-        return numRows;
     }
 
+    private final DbAccess.RowMapper<Condition> conditionMapper = rs -> fromJsonCondition(rs.getString(2),
+            rs.getString(3));
+    private final DbAccess.RowMapper<Dampening> dampeningMapper = rs -> fromJson(rs.getString(2), Dampening.class);
+    private final DbAccess.RowMapper<Trigger> triggerMapper = rs -> fromJson(rs.getString(2), Trigger.class);
+
     private String toJson(Object resource) {
 
         return gson.toJson(resource);
@@ -1731,29 +1576,20 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
         return gson.fromJson(json, clazz);
     }
 
-    private void close(Connection c, Statement s) {
-        close(c, s, null);
-    }
-
-    private void close(Connection c, Statement s, ResultSet rs) {
-        try {
-            if (rs != null) {
-                rs.close();
-            }
-        } catch (Exception ignored) {
-        }
-        try {
-            if (s != null) {
-                s.close();
-            }
-        } catch (Exception ignored) {
-        }
-        try {
-            if (c != null) {
-                c.close();
-            }
-        } catch (Exception ignored) {
-        }
+    private Condition fromJsonCondition(String className, String json) {
+        if (className.equals("AvailabilityCondition")) {
+            return fromJson(json, AvailabilityCondition.class);
+        } else if (className.equals("CompareCondition")) {
+            return fromJson(json, CompareCondition.class);
+        } else if (className.equals("StringCondition")) {
+            return fromJson(json, StringCondition.class);
+        } else if (className.equals("ThresholdCondition")) {
+            return fromJson(json, ThresholdCondition.class);
+        } else if (className.equals("ThresholdRangeCondition")) {
+            return fromJson(json, ThresholdRangeCondition.class);
+        }
+        log.debugf("Condition type: " + className + " not found");
+        return null;
     }
 
     @Override
@@ -1769,43 +1605,27 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
         }
 
         // Now add the tag
-        Connection c = null;
-        Statement s = null;
-        try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            insertTag(c, s, tag.getTriggerId(), tag.getCategory(), tag.getName(), tag.isVisible());
-
+        try (DbAccess.Session s = db.open()) {
+            insertTag(s, tag.getTriggerId(), tag.getCategory(), tag.getName(), tag.isVisible());
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         } finally {
-            close(c, s);
+            tagsCache.invalidate(tag.getTriggerId());
         }
     }
 
-    private void insertTag(Connection c, Statement s, String triggerId, String category, String name, boolean visible)
-            throws Exception {
+    private void insertTag(DbAccess.Session s, String triggerId, String category, String name, boolean visible)
+            throws SQLException {
 
         // If the desired Tag already exists just return
-        if (!getTags(c, s, triggerId, category, name).isEmpty()) {
+        if (!getTags(s, triggerId, category, name).isEmpty()) {
             return;
         }
 
-        StringBuilder sql = new StringBuilder("INSERT INTO HWK_ALERTS_TAGS VALUES (");
-        sql.append("'").append(triggerId).append("', ");
-        if (isEmpty(category)) {
-            sql.append("NULL, ");
-        } else {
-            sql.append("'").append(category).append("', ");
-        }
-        sql.append("'").append(name).append("', ");
-        sql.append("'").append(String.valueOf(visible)).append("' ");
-        sql.append(")");
+        String sql = "INSERT INTO HWK_ALERTS_TAGS VALUES (?,?,?,?)";
         log.debugf("SQL: " + sql);
-        s = c.createStatement();
-        s.execute(sql.toString());
+        s.update(sql, triggerId, isEmpty(category) ? null : category, name, visible);
     }
 
     @Override
@@ -1815,35 +1635,31 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
         }
 
         // Now remove the tag(s)
-        Connection c = null;
-        Statement s = null;
-        try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            deleteTags(c, s, triggerId, category, name);
-
+        try (DbAccess.Session s = db.open()) {
+            deleteTags(s, triggerId, category, name);
         } catch (SQLException e) {
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         } finally {
-            close(c, s);
+            tagsCache.invalidate(triggerId);
         }
     }
 
-    private void deleteTags(Connection c, Statement s, String triggerId, String category, String name)
-            throws Exception {
-        StringBuilder sql = new StringBuilder("DELETE FROM HWK_ALERTS_TAGS WHERE ");
-        sql.append("triggerId = '").append(triggerId).append("' ");
+    private void deleteTags(DbAccess.Session s, String triggerId, String category, String name)
+            throws SQLException {
+        StringBuilder sql = new StringBuilder("DELETE FROM HWK_ALERTS_TAGS WHERE triggerId = ?");
+        List<Object> params = new ArrayList<>(3);
+        params.add(triggerId);
         if (!isEmpty(category)) {
-            sql.append("AND category = '").append(category).append("' ");
+            sql.append(" AND category = ?");
+            params.add(category);
         }
         if (!isEmpty(name)) {
-            sql.append("AND name = '").append(name).append("' ");
+            sql.append(" AND name = ?");
+            params.add(name);
         }
         log.debugf("SQL: " + sql);
-        s = c.createStatement();
-        s.executeUpdate(sql.toString());
+        s.update(sql.toString(), params.toArray());
     }
 
     @Override
@@ -1855,56 +1671,49 @@ public class DbDefinitionsServiceImpl implements DefinitionsService {
             throw new Exception("DataSource is null");
         }
 
-        List<Tag> tags = null;
-        Connection c = null;
-        Statement s = null;
-        try {
-            c = ds.getConnection();
-            s = c.createStatement();
-
-            tags = getTags(c, s, triggerId, category, null);
+        // cache all the tags of the trigger, the category is applied on read
+        List<Tag> tags = tagsCache.get(triggerId);
+        if (null == tags) {
+            long stamp = tagsCache.stamp();
+            try (DbAccess.Session s = db.open()) {
+                tags = getTags(s, triggerId, null, null);
+            } catch (SQLException e) {
+                msgLog.errorDatabaseException(e.getMessage());
+                throw e;
+            }
+            tagsCache.put(triggerId, tags, stamp);
+        }
 
-        } catch (SQLException e) {
-            msgLog.errorDatabaseException(e.getMessage());
-            throw e;
-        } finally {
-            close(c, s);
+        List<Tag> result = new ArrayList<>(tags.size());
+        for (Tag tag : tags) {
+            if (isEmpty(category) || category.equals(tag.getCategory())) {
+                result.add(new Tag(tag.getTriggerId(), tag.getCategory(), tag.getName(), tag.isVisible()));
+            }
         }
 
-        return tags;
+        return result;
     }
 
-    private List<Tag> getTags(Connection c, Statement s, String triggerId, String category, String name)
-            throws Exception {
-
+    private List<Tag> getTags(DbAccess.Session s, String triggerId, String category, String name)
+            throws SQLException {
+        // at most four distinct statements, depending on the optional filters
         StringBuilder sql = new StringBuilder(
-                "SELECT triggerId, category, name, visible FROM HWK_ALERTS_TAGS WHERE ");
-        sql.append("triggerId = '").append(triggerId).append("' ");
+                "SELECT triggerId, category, name, visible FROM HWK_ALERTS_TAGS WHERE triggerId = ?");
+        List<Object> params = new ArrayList<>(3);
+        params.add(triggerId);
         if (!isEmpty(category)) {
-            sql.append("AND category = '").append(category).append("' ");
+            sql.append(" AND category = ?");
+            params.add(category);
         }
         if (!isEmpty(name)) {
-            sql.append("AND name = '").append(name).append("' ");
+            sql.append(" AND name = ?");
+            params.add(name);
         }
-
-        sql.append("ORDER BY category, name");
+        sql.append(" ORDER BY category, name");
         log.debugf("SQL: " + sql);
 
-        List<Tag> tags = new ArrayList<>();
-        ResultSet rs = null;
-        try {
-            rs = s.executeQuery(sql.toString());
-            while (rs.next()) {
-                Tag tag = new Tag(rs.getString(1), rs.getString(2), rs.getString(3), rs.getBoolean(4));
-                tags.add(tag);
-            }
-        } finally {
-            if (null != rs) {
-                rs.close();
-            }
-        }
-
-        return tags;
+        return s.query(sql.toString(), rs -> new Tag(rs.getString(1), rs.getString(2), rs.getString(3),
+                rs.getBoolean(4)), params.toArray());
     }
 
     private boolean isEmpty(String s) {
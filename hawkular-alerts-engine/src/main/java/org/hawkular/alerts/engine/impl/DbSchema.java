@@ -0,0 +1,228 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.hawkular.alerts.engine.log.MsgLogger;
+import org.jboss.logging.Logger;
+
+/**
+ * Versioned schema of the HWK_ALERTS_* tables.
+ *
+ * The applied version is recorded in HWK_ALERTS_SCHEMA_VERSION, one row per migration. On startup every migration
+ * newer than the recorded version is applied in order, so an existing install is brought up to date and a new
+ * install is created from scratch. Migrations are append-only: to evolve the schema add a new version at the end of
+ * {@link #MIGRATIONS}, never edit a released one. Statements should be idempotent (IF [NOT] EXISTS) as DDL is not
+ * transactional on every database, and several nodes may start at the same time.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class DbSchema {
+    private static final MsgLogger msgLog = MsgLogger.LOGGER;
+    private static final Logger log = Logger.getLogger(DbSchema.class);
+
+    public static final String VERSION_TABLE = "HWK_ALERTS_SCHEMA_VERSION";
+
+    public static final List<Migration> MIGRATIONS;
+
+    static {
+        List<Migration> migrations = new ArrayList<>();
+
+        migrations.add(new Migration(1, "Initial tables",
+                "CREATE TABLE IF NOT EXISTS HWK_ALERTS_TRIGGERS " +
+                        "( triggerId VARCHAR2(250) PRIMARY KEY, " +
+                        "  payload VARCHAR2(1024) )",
+
+                "CREATE TABLE IF NOT EXISTS HWK_ALERTS_CONDITIONS " +
+                        "( conditionId VARCHAR2(250) PRIMARY KEY," +
+                        "  triggerId VARCHAR2(250) NOT NULL," +
+                        "  triggerMode VARCHAR2(20) NOT NULL," +
+                        "  className VARCHAR2(250) NOT NULL," +
+                        "  payload VARCHAR2(1024) )",
+
+                "CREATE TABLE IF NOT EXISTS HWK_ALERTS_DAMPENINGS " +
+                        "( dampeningId VARCHAR2(250) PRIMARY KEY," +
+                        "  triggerId VARCHAR2(250) NOT NULL," +
+                        "  triggerMode VARCHAR2(20) NOT NULL," +
+                        "  payload VARCHAR2(1024) )",
+
+                "CREATE TABLE IF NOT EXISTS HWK_ALERTS_ACTION_PLUGINS " +
+                        "( actionPlugin VARCHAR(250) PRIMARY KEY," +
+                        "  payload VARCHAR(1024) )",
+
+                "CREATE TABLE IF NOT EXISTS HWK_ALERTS_ACTIONS " +
+                        "( actionId VARCHAR(250) NOT NULL," +
+                        "  actionPLugin VARCHAR(250)," +
+                        "  payload VARCHAR(1024)," +
+                        "  PRIMARY KEY(actionId, actionPlugin))",
+
+                "CREATE TABLE IF NOT EXISTS HWK_ALERTS_TAGS " +
+                        "( triggerId VARCHAR2(250) NOT NULL, " +
+                        "  category VARCHAR2(250)," +
+                        "  name VARCHAR2(1024) NOT NULL, " +
+                        "  visible BOOLEAN NOT NULL, " +
+                        "  PRIMARY KEY(triggerId, category, name) )",
+
+                "CREATE TABLE IF NOT EXISTS HWK_ALERTS_ALERTS " +
+                        "( triggerId VARCHAR2(250) NOT NULL, " +
+                        "  ctime long NOT NULL," +
+                        "  payload CLOB," +
+                        "  PRIMARY KEY(triggerId, ctime) )"));
+
+        migrations.add(new Migration(2, "Secondary indexes",
+                // getTriggerConditions, getTriggerDampenings, setConditions
+                "CREATE INDEX IF NOT EXISTS HWK_ALERTS_CONDITIONS_TRIGGER " +
+                        "ON HWK_ALERTS_CONDITIONS (triggerId, triggerMode)",
+                "CREATE INDEX IF NOT EXISTS HWK_ALERTS_DAMPENINGS_TRIGGER " +
+                        "ON HWK_ALERTS_DAMPENINGS (triggerId, triggerMode)",
+                // getActions(actionPlugin)
+                "CREATE INDEX IF NOT EXISTS HWK_ALERTS_ACTIONS_PLUGIN " +
+                        "ON HWK_ALERTS_ACTIONS (actionPlugin)",
+                // time range alert queries, matches the (ctime, triggerId) keyset order
+                "CREATE INDEX IF NOT EXISTS HWK_ALERTS_ALERTS_CTIME " +
+                        "ON HWK_ALERTS_ALERTS (ctime, triggerId)",
+                // tag searches, name is always given and category is optional
+                "CREATE INDEX IF NOT EXISTS HWK_ALERTS_TAGS_NAME " +
+                        "ON HWK_ALERTS_TAGS (name, category, triggerId)"));
+
+        MIGRATIONS = Collections.unmodifiableList(migrations);
+    }
+
+    /**
+     * The schema version expected by this code.
+     */
+    public static final int VERSION = MIGRATIONS.get(MIGRATIONS.size() - 1).getVersion();
+
+    private DbSchema() {
+    }
+
+    /**
+     * @return the applied schema version, 0 if no migration was applied
+     */
+    public static int getVersion(Connection c) throws SQLException {
+        createVersionTable(c);
+        try (Statement s = c.createStatement();
+             ResultSet rs = s.executeQuery("SELECT MAX(version) FROM " + VERSION_TABLE)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Apply, in order, every migration newer than the applied schema version.
+     *
+     * A connection in auto-commit mode is committed after each migration. A managed connection, enlisted in a
+     * container transaction, is left to commit with its transaction, as DbAccess does.
+     *
+     * @return the schema version after the migration
+     */
+    public static int migrate(Connection c) throws SQLException {
+        int version = getVersion(c);
+        if (version > VERSION) {
+            log.debugf("Schema version [%s] is newer than expected [%s]", version, VERSION);
+            return version;
+        }
+        boolean ownTransaction = c.getAutoCommit();
+        try {
+            if (ownTransaction) {
+                c.setAutoCommit(false);
+            }
+            for (Migration migration : MIGRATIONS) {
+                if (migration.getVersion() <= version) {
+                    continue;
+                }
+                try (Statement s = c.createStatement()) {
+                    for (String sql : migration.getStatements()) {
+                        log.debugf("SQL: " + sql);
+                        s.execute(sql);
+                    }
+                    try (PreparedStatement ps = c.prepareStatement("INSERT INTO " + VERSION_TABLE +
+                            " VALUES (?,?,?)")) {
+                        ps.setInt(1, migration.getVersion());
+                        ps.setString(2, migration.getDescription());
+                        ps.setLong(3, System.currentTimeMillis());
+                        ps.executeUpdate();
+                    }
+                    if (ownTransaction) {
+                        c.commit();
+                    }
+                } catch (SQLException e) {
+                    if (!ownTransaction) {
+                        throw e;
+                    }
+                    c.rollback();
+                    // another node may have applied it concurrently
+                    if (getVersion(c) >= migration.getVersion()) {
+                        continue;
+                    }
+                    throw e;
+                }
+                version = migration.getVersion();
+                msgLog.infoSchemaMigrated(version, migration.getDescription());
+            }
+        } finally {
+            if (ownTransaction) {
+                c.setAutoCommit(true);
+            }
+        }
+        return version;
+    }
+
+    private static void createVersionTable(Connection c) throws SQLException {
+        try (Statement s = c.createStatement()) {
+            s.execute("CREATE TABLE IF NOT EXISTS " + VERSION_TABLE +
+                    "( version INT PRIMARY KEY," +
+                    "  description VARCHAR(250)," +
+                    "  applied long NOT NULL )");
+        }
+    }
+
+    /**
+     * A schema version, the set of statements moving the schema from the previous version to this one.
+     */
+    public static class Migration {
+        private final int version;
+        private final String description;
+        private final String[] statements;
+
+        public Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = statements;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String[] getStatements() {
+            return statements.clone();
+        }
+    }
+}
@@ -17,12 +17,24 @@
 package org.hawkular.alerts.engine.impl;
 
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
+import java.util.function.LongSupplier;
 import java.util.function.Predicate;
 
-import javax.ejb.Singleton;
-
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
 import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.DataBatch;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.model.trigger.Trigger.Mode;
 import org.hawkular.alerts.engine.log.MsgLogger;
 import org.hawkular.alerts.engine.rules.RulesEngine;
 import org.kie.api.KieServices;
@@ -36,12 +48,27 @@ import org.jboss.logging.Logger;
 /**
  * An implementation of RulesEngine based on drools framework.
  *
- * This implementations has an approach of fixed rules based on filesystem.
+ * This implementations has an approach of fixed rules based on filesystem. It is used when
+ * org.hawkular.alerts.engine.RULES_ENGINE=drools, see {@link RulesEngineFactory}.
+ *
+ * By default, for any dataId only the oldest Data is inserted in one execution of the rules, so a backlog of N
+ * samples for a dataId requires N executions. In burst mode (org.hawkular.alerts.engine.BURST=true) all pending
+ * Data is inserted at once and the rules apply the samples of every dataId in timestamp order within a single
+ * execution.
+ *
+ * Every fire() first applies the passing of time to the STRICT_TIME and RELAXED_TIME dampenings whose deadline is
+ * reached, so they are satisfied or start over without new data, as with the native engine. The deadlines are only
+ * checked on fire(), so their resolution is the rate at which the engine is fired, every MAX_LATENCY when idle.
+ * The time is read from an injectable clock, also exposed to the rules as the "clock" global for the dampening of
+ * the evaluations.
+ *
+ * A CompareCondition does not need both Data in the same execution of the rules. The last value of every data2Id is
+ * kept in {@link CompareValues}, the "compareValues" global, and is used when the data2Id has no Data in the
+ * execution. In burst mode a data2Id with Data in the burst is only compared with the Data of the burst.
  *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
-@Singleton
 public class DroolsRulesEngineImpl implements RulesEngine {
     private final MsgLogger msgLog = MsgLogger.LOGGER;
     private final Logger log = Logger.getLogger(DroolsRulesEngineImpl.class);
@@ -50,14 +77,55 @@ public class DroolsRulesEngineImpl implements RulesEngine {
     private KieServices ks;
     private KieContainer kc;
     private KieSession kSession;
+    private final boolean burst;
+    private final LongSupplier clock;
 
     TreeSet<Data> pendingData = new TreeSet<>();
 
+    /*
+        triggerId -> Trigger, Condition and Dampening facts of the trigger. The fact objects are indexed instead of
+        the FactHandles because the rules retract and re-insert Triggers and Dampenings, generating new handles.
+        The session uses equality so the handles are resolved by a lookup when needed.
+     */
+    private final Map<String, Set<Object>> triggerFacts = new HashMap<>();
+
+    /*
+        The STRICT_TIME and RELAXED_TIME dampenings, the only ones time alone can change. The rules re-insert the
+        same Dampening objects, so they stay valid across rule executions.
+     */
+    private final Set<Dampening> timeDampenings = new HashSet<>();
+
+    private final CompareValues compareValues = new CompareValues();
+
     public DroolsRulesEngineImpl() {
-        log.debugf("Creating instance.");
+        this(System::currentTimeMillis);
+    }
+
+    public DroolsRulesEngineImpl(boolean burst) {
+        this(burst, System::currentTimeMillis);
+    }
+
+    public DroolsRulesEngineImpl(LongSupplier clock) {
+        this(Boolean.getBoolean("org.hawkular.alerts.engine.BURST"), clock);
+    }
+
+    /**
+     * @param burst true to insert all the pending Data in a single execution of the rules
+     * @param clock the time, in ms, used for the dampening of the evaluations and to expire the time based dampenings
+     */
+    public DroolsRulesEngineImpl(boolean burst, LongSupplier clock) {
+        log.debugf("Creating instance. Burst mode [%1$s]", burst);
+        this.burst = burst;
+        this.clock = clock;
         ks = KieServices.Factory.get();
         kc = ks.getKieClasspathContainer();
+        newSession();
+    }
+
+    private void newSession() {
         kSession = kc.newKieSession(SESSION_NAME);
+        kSession.setGlobal("clock", clock);
+        kSession.setGlobal("compareValues", compareValues);
     }
 
     @Override
@@ -68,6 +136,7 @@ public class DroolsRulesEngineImpl implements RulesEngine {
 
         log.debugf("Insert %s ", fact);
         kSession.insert(fact);
+        index(fact);
     }
 
     @Override
@@ -80,9 +149,66 @@ public class DroolsRulesEngineImpl implements RulesEngine {
         for (Object fact : facts) {
             log.debugf("Insert %s ", fact);
             kSession.insert(fact);
+            index(fact);
         }
     }
 
+    private static String triggerIdOf(Object fact) {
+        if (fact instanceof Trigger) {
+            return ((Trigger) fact).getId();
+        } else if (fact instanceof Condition) {
+            return ((Condition) fact).getTriggerId();
+        } else if (fact instanceof Dampening) {
+            return ((Dampening) fact).getTriggerId();
+        }
+        return null;
+    }
+
+    private void index(Object fact) {
+        String triggerId = triggerIdOf(fact);
+        if (null != triggerId) {
+            Set<Object> facts = triggerFacts.get(triggerId);
+            if (null == facts) {
+                facts = new HashSet<>();
+                triggerFacts.put(triggerId, facts);
+            }
+            if (facts.add(fact) && fact instanceof CompareCondition) {
+                compareValues.addCondition((CompareCondition) fact);
+            }
+        }
+        if (isTimeDampening(fact)) {
+            // replace an equal dampening of the same trigger and mode
+            timeDampenings.remove(fact);
+            timeDampenings.add((Dampening) fact);
+        }
+    }
+
+    private void unindex(Object fact) {
+        String triggerId = triggerIdOf(fact);
+        if (null != triggerId) {
+            Set<Object> facts = triggerFacts.get(triggerId);
+            if (null != facts && facts.remove(fact)) {
+                if (fact instanceof CompareCondition) {
+                    compareValues.removeCondition((CompareCondition) fact);
+                }
+                if (facts.isEmpty()) {
+                    triggerFacts.remove(triggerId);
+                }
+            }
+        }
+        if (isTimeDampening(fact)) {
+            timeDampenings.remove(fact);
+        }
+    }
+
+    private static boolean isTimeDampening(Object fact) {
+        if (!(fact instanceof Dampening)) {
+            return false;
+        }
+        Dampening.Type type = ((Dampening) fact).getType();
+        return Dampening.Type.STRICT_TIME == type || Dampening.Type.RELAXED_TIME == type;
+    }
+
     @Override
     public void addData(Data data) {
         pendingData.add(data);
@@ -93,6 +219,14 @@ public class DroolsRulesEngineImpl implements RulesEngine {
         pendingData.addAll(data);
     }
 
+    @Override
+    public void addData(DataBatch batch) {
+        // drools needs the samples as facts
+        for (int i = 0; i < batch.size(); i++) {
+            pendingData.add(batch.getData(i));
+        }
+    }
+
     @Override
     public void addGlobal(String name, Object global) {
         log.debugf("Add Global %s = %s", name, global);
@@ -105,44 +239,93 @@ public class DroolsRulesEngineImpl implements RulesEngine {
             log.debugf("Delete %s ", factHandle);
             kSession.delete(factHandle);
         }
+        triggerFacts.clear();
+        timeDampenings.clear();
+        compareValues.clear();
     }
 
     @Override
     public void fire() {
-        // The rules engine requires that for any DataId only the oldest Data instance is processed in one
-        // execution of the rules.  So, if we find multiple Data instances for the same Id, defer all but
-        // the oldest to a subsequent run. Note that pendingData is already sorted by (id ASC, timestamp ASC) so
-        // the iterator will present Data with the same id together, and time-ordered.
-        while (!pendingData.isEmpty()) {
-
-            log.debugf("Data found. Firing rules on [%1$d] datums.", pendingData.size());
-
-            TreeSet<Data> batchData = new TreeSet<Data>(pendingData);
-            Data previousData = null;
+        // deadlines passed since the last fire() are due before the new data
+        if (checkTime(clock.getAsLong())) {
+            kSession.fireAllRules();
+        }
+        if (pendingData.isEmpty()) {
+            return;
+        }
 
+        if (burst) {
+            log.debugf("Data found. Firing rules on [%1$d] datums in burst mode.", pendingData.size());
+            for (Data data : pendingData) {
+                kSession.insert(data);
+                compareValues.inserted(data);
+            }
             pendingData.clear();
+            kSession.fireAllRules();
+            compareValues.executed();
+            return;
+        }
 
-            for (Data data : batchData) {
-                if (null == previousData || !data.getId().equals(previousData.getId())) {
-                    kSession.insert(data);
-                    previousData = data;
-
-                } else {
-                    pendingData.add(data);
-                    log.debugf("Deferring more recent %1$s until older %2$s is processed", data, previousData);
+        // The rules engine requires that for any DataId only the oldest Data instance is processed in one
+        // execution of the rules.  So, if we find multiple Data instances for the same Id, defer all but
+        // the oldest to a subsequent run. Note that pendingData is already sorted by (id ASC, timestamp ASC) so
+        // it is split once into time-ordered runs per dataId, and every execution takes the head of each run.
+        List<LinkedList<Data>> runs = new LinkedList<>();
+        LinkedList<Data> run = null;
+        for (Data data : pendingData) {
+            if (null == run || !data.getId().equals(run.getFirst().getId())) {
+                run = new LinkedList<>();
+                runs.add(run);
+            }
+            run.add(data);
+        }
+        pendingData.clear();
+
+        while (!runs.isEmpty()) {
+            log.debugf("Data found. Firing rules on [%1$d] datums.", runs.size());
+
+            for (Iterator<LinkedList<Data>> i = runs.iterator(); i.hasNext();) {
+                LinkedList<Data> r = i.next();
+                Data data = r.removeFirst();
+                kSession.insert(data);
+                compareValues.inserted(data);
+                if (r.isEmpty()) {
+                    i.remove();
                 }
             }
 
-            if (!pendingData.isEmpty()) {
-                log.debugf("Deferring [%1$d] Datum(s) to next firing !!", pendingData.size());
+            if (!runs.isEmpty()) {
+                log.debugf("Deferring Datum(s) of [%1$d] dataIds to next firing !!", runs.size());
             }
 
-            batchData.clear();
-
             kSession.fireAllRules();
+            compareValues.executed();
         }
     }
 
+    /*
+        Apply the passing of time to the dampenings whose deadline is reached, and update them in the session so the
+        rules see the satisfied ones. Returns true if a dampening was updated.
+     */
+    private boolean checkTime(long now) {
+        boolean updated = false;
+        for (Dampening d : timeDampenings) {
+            long deadline = d.getDeadline();
+            if (deadline <= 0L || deadline > now) {
+                continue;
+            }
+            FactHandle factHandle = kSession.getFactHandle(d);
+            if (null == factHandle) {
+                continue;
+            }
+            log.debugf("Dampening deadline expired for: %s", d);
+            d.checkTime(now);
+            kSession.update(factHandle, d);
+            updated = true;
+        }
+        return updated;
+    }
+
     @Override
     public Object getFact(Object o) {
         return kSession.getFactHandle(o);
@@ -155,6 +338,7 @@ public class DroolsRulesEngineImpl implements RulesEngine {
             log.debugf("Delete %s ", factHandle);
             kSession.delete(factHandle);
         }
+        unindex(fact);
     }
 
     @Override
@@ -178,8 +362,37 @@ public class DroolsRulesEngineImpl implements RulesEngine {
         }
 
         for (FactHandle h : handles) {
+            Object fact = kSession.getObject(h);
             log.debugf("Delete %s ", h);
-            removeFact(h);
+            kSession.delete(h);
+            unindex(fact);
+        }
+    }
+
+    @Override
+    public void removeTrigger(String triggerId) {
+        Set<Object> facts = triggerFacts.remove(triggerId);
+        if (null != facts) {
+            timeDampenings.removeAll(facts);
+            for (Object fact : facts) {
+                if (fact instanceof CompareCondition) {
+                    compareValues.removeCondition((CompareCondition) fact);
+                }
+                FactHandle factHandle = kSession.getFactHandle(fact);
+                if (factHandle != null) {
+                    log.debugf("Delete %s ", factHandle);
+                    kSession.delete(factHandle);
+                }
+            }
+        }
+        // Default dampenings are inserted by the rules, dampenings are equal by triggerId and mode
+        for (Mode mode : Mode.values()) {
+            FactHandle factHandle = kSession.getFactHandle(new Dampening(triggerId, mode, Dampening.Type.STRICT,
+                    1, 1, 0L));
+            if (factHandle != null) {
+                log.debugf("Delete %s ", factHandle);
+                kSession.delete(factHandle);
+            }
         }
     }
 
@@ -193,6 +406,9 @@ public class DroolsRulesEngineImpl implements RulesEngine {
     public void reset() {
         log.debugf("Reset session");
         kSession.dispose();
-        kSession = kc.newKieSession(SESSION_NAME);
+        compareValues.clear();
+        newSession();
+        triggerFacts.clear();
+        timeDampenings.clear();
     }
 }
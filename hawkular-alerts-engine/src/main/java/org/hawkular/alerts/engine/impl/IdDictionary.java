@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A dictionary of dense int keys for String ids, used to index dataIds and triggerIds internally so the hot paths
+ * compare and hash ints instead of long hierarchical names. Strings are only kept at the API boundary.
+ *
+ * Keys are assigned in order from 0 and are never reused, so a key can index arrays sized {@link #size()}. Ids are
+ * encoded when definitions are loaded. Incoming data only looks its ids up, so unknown ids never grow the
+ * dictionary.
+ *
+ * Every engine owns its dictionaries, so a shard only holds the ids of its own definitions, and replaces them when it
+ * is cleared. The keys of removed ids are reclaimed on the next reload.
+ *
+ * Lookups never lock. Encoding new ids is serialized.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class IdDictionary {
+    private final ConcurrentHashMap<String, Integer> keys = new ConcurrentHashMap<>();
+    private volatile String[] ids = new String[16];
+    private volatile int size = 0;
+
+    /**
+     * @param id not null
+     * @return the key of the id, a new key is assigned if the id is not in the dictionary
+     */
+    public int encode(String id) {
+        Integer key = keys.get(id);
+        if (null != key) {
+            return key;
+        }
+        synchronized (this) {
+            key = keys.get(id);
+            if (null != key) {
+                return key;
+            }
+            int k = size;
+            String[] current = ids;
+            if (k == current.length) {
+                current = Arrays.copyOf(current, k * 2);
+            }
+            current[k] = id;
+            ids = current;
+            size = k + 1;
+            keys.put(id, k);
+            return k;
+        }
+    }
+
+    /**
+     * @param id the id to look up
+     * @return the key of the id, -1 if the id is null or not in the dictionary
+     */
+    public int lookup(String id) {
+        if (null == id) {
+            return -1;
+        }
+        Integer key = keys.get(id);
+        return null == key ? -1 : key;
+    }
+
+    /**
+     * @param key a key returned by this dictionary
+     * @return the id of the key
+     */
+    public String decode(int key) {
+        if (key < 0 || key >= size) {
+            throw new IllegalArgumentException("Unknown key: " + key);
+        }
+        return ids[key];
+    }
+
+    /**
+     * @return number of ids in the dictionary, all keys are lower than this
+     */
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.ToIntFunction;
+
+/**
+ * A bounded multi-producer / single-consumer queue used to buffer incoming data before it is sent to the
+ * rules engine.
+ *
+ * Producers never take a lock: capacity is reserved with a CAS on the size counter and elements are linked into a
+ * {@link ConcurrentLinkedQueue}. When the queue is full producers back off until the consumer drains it, which
+ * propagates back-pressure to the callers instead of growing the heap without limit.
+ *
+ * A single consumer is expected to call {@link #drainTo(Collection, int)}. A consumer thread can register itself
+ * with {@link #setConsumer(Thread, int)} to be unparked when the queue stops being empty or when it reaches the
+ * wake up size, so it does not need to poll.
+ *
+ * By default every element counts as one against the capacity. A weigher can be provided for elements that carry
+ * many items, like a DataBatch, so capacity, size and the drain limit are expressed in items.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class IngestionQueue<E> {
+    private static final long BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final int capacity;
+    private final ToIntFunction<? super E> weigher;
+    private final AtomicInteger size = new AtomicInteger();
+    private final ConcurrentLinkedQueue<E> queue = new ConcurrentLinkedQueue<>();
+
+    private volatile Thread consumer;
+    private volatile int wakeUpSize = Integer.MAX_VALUE;
+
+    public IngestionQueue(int capacity) {
+        this(capacity, null);
+    }
+
+    /**
+     * @param capacity maximum total weight of the queued elements
+     * @param weigher weight of an element, null to count every element as one
+     */
+    public IngestionQueue(int capacity, ToIntFunction<? super E> weigher) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than 0");
+        }
+        this.capacity = capacity;
+        this.weigher = weigher;
+    }
+
+    private int weight(E e) {
+        return null == weigher ? 1 : weigher.applyAsInt(e);
+    }
+
+    /**
+     * @param e element to add, blocking while the queue is full
+     */
+    public void offer(E e) {
+        if (e == null) {
+            throw new IllegalArgumentException("Element must be not null");
+        }
+        int n = weight(e);
+        int previous = reserve(n);
+        queue.offer(e);
+        signal(previous, n);
+    }
+
+    /**
+     * Add a collection of elements with a single capacity reservation.
+     * A collection bigger than the capacity is accepted only when the queue is empty.
+     *
+     * @param c elements to add, blocking while the queue is full
+     */
+    public void offerAll(Collection<? extends E> c) {
+        if (c == null) {
+            throw new IllegalArgumentException("Collection must be not null");
+        }
+        if (c.isEmpty()) {
+            return;
+        }
+        int n = 0;
+        if (null == weigher) {
+            n = c.size();
+        } else {
+            for (E e : c) {
+                n += weight(e);
+            }
+        }
+        int previous = reserve(n);
+        queue.addAll(c);
+        signal(previous, n);
+    }
+
+    private int reserve(int n) {
+        for (;;) {
+            int current = size.get();
+            if (current == 0 || current + n <= capacity) {
+                if (size.compareAndSet(current, current + n)) {
+                    return current;
+                }
+            } else {
+                LockSupport.parkNanos(BACKOFF_NANOS);
+            }
+        }
+    }
+
+    private void signal(int previous, int n) {
+        Thread t = consumer;
+        if (t != null && (previous == 0 || (previous < wakeUpSize && previous + n >= wakeUpSize))) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    /**
+     * @param consumer thread to unpark when elements arrive to an empty queue or the wake up size is reached,
+     * null to stop signaling
+     * @param wakeUpSize queue size that should wake up the consumer
+     */
+    public void setConsumer(Thread consumer, int wakeUpSize) {
+        this.wakeUpSize = wakeUpSize;
+        this.consumer = consumer;
+    }
+
+    /**
+     * Move up to <code>max</code> weight of elements into the given collection. At least one element is moved if the
+     * queue is not empty, even if heavier than <code>max</code>.
+     *
+     * @param c target collection
+     * @param max maximum weight of elements to move
+     * @return weight of the elements moved
+     */
+    public int drainTo(Collection<? super E> c, int max) {
+        int n = 0;
+        E e;
+        while (n < max && (e = queue.poll()) != null) {
+            c.add(e);
+            n += weight(e);
+        }
+        if (n > 0) {
+            size.addAndGet(-n);
+        }
+        return n;
+    }
+
+    /**
+     * Discard all the queued elements.
+     */
+    public void clear() {
+        int n = 0;
+        E e;
+        while ((e = queue.poll()) != null) {
+            n += weight(e);
+        }
+        if (n > 0) {
+            size.addAndGet(-n);
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.Arrays;
+
+/**
+ * The most recent numeric value of each dataId, by {@link IdDictionary} key, so a CompareCondition can compare
+ * against a value received in an earlier batch without keeping the Data itself.
+ *
+ * Values are held in primitive arrays addressed by key. At most maxKeys keys are stored, values of higher keys are
+ * not kept. With a maxAge greater than 0 a value is only used for a Data at most maxAge ms apart from it. The engines
+ * use the org.hawkular.alerts.engine.LAST_VALUES_MAX and org.hawkular.alerts.engine.COMPARE_MAX_AGE system properties
+ * as maxKeys and maxAge, see {@link #LastValueStore()}.
+ *
+ * A store is not thread safe.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class LastValueStore {
+    private static final long NONE = Long.MIN_VALUE;
+
+    /*
+        The values of at most LAST_VALUES_MAX data2Ids are kept per engine, about 12 bytes each. The keys are assigned
+        as the ids are encoded, so the data2Ids defined after the limit is reached have no last value: their
+        CompareConditions only compare Data of the same round, or execution of the rules. The engines log the first
+        value dropped and count them.
+     */
+    private static final int LAST_VALUES_MAX;
+    private static final int COMPARE_MAX_AGE;
+
+    static {
+        LAST_VALUES_MAX = getIntProperty("org.hawkular.alerts.engine.LAST_VALUES_MAX", 100000);
+        COMPARE_MAX_AGE = getIntProperty("org.hawkular.alerts.engine.COMPARE_MAX_AGE", 0);
+    }
+
+    private static int getIntProperty(String name, int defaultValue) {
+        try {
+            return new Integer(System.getProperty(name)).intValue();
+        } catch (Exception ignored) {
+            return defaultValue;
+        }
+    }
+
+    private final int maxKeys;
+    private final long maxAge;
+    private long[] timestamps = new long[0];
+    private double[] values = new double[0];
+    private int size;
+
+    /**
+     * A store configured by the LAST_VALUES_MAX and COMPARE_MAX_AGE system properties.
+     */
+    public LastValueStore() {
+        this(LAST_VALUES_MAX, COMPARE_MAX_AGE);
+    }
+
+    /**
+     * @param maxKeys maximum key stored + 1
+     * @param maxAge maximum time in ms between a stored value and the Data it is compared with, 0 for no limit
+     */
+    public LastValueStore(int maxKeys, long maxAge) {
+        if (maxKeys < 0) {
+            throw new IllegalArgumentException("MaxKeys must be not negative");
+        }
+        this.maxKeys = maxKeys;
+        this.maxAge = Math.max(0, maxAge);
+    }
+
+    /**
+     * Store the value unless a more recent one is already stored.
+     *
+     * @return true if the value is stored, false if a more recent value is stored or the key is not lower than
+     * {@link #getMaxKeys()}
+     */
+    public boolean put(int key, long timestamp, double value) {
+        if (key < 0 || key >= maxKeys) {
+            return false;
+        }
+        if (key >= timestamps.length) {
+            int length = Math.min(maxKeys, Math.max(key + 1, timestamps.length * 2));
+            int old = timestamps.length;
+            timestamps = Arrays.copyOf(timestamps, length);
+            values = Arrays.copyOf(values, length);
+            Arrays.fill(timestamps, old, length, NONE);
+        }
+        if (NONE == timestamps[key]) {
+            size++;
+        } else if (timestamps[key] > timestamp) {
+            return false;
+        }
+        timestamps[key] = timestamp;
+        values[key] = value;
+        return true;
+    }
+
+    /**
+     * @param at timestamp of the Data the value is compared with
+     * @return true if a value is stored for the key and is not older, or newer, than maxAge from at
+     */
+    public boolean has(int key, long at) {
+        if (key < 0 || key >= timestamps.length || NONE == timestamps[key]) {
+            return false;
+        }
+        return 0 == maxAge || Math.abs(at - timestamps[key]) <= maxAge;
+    }
+
+    /**
+     * @return timestamp of the stored value, only valid if {@link #has(int, long)}
+     */
+    public long getTimestamp(int key) {
+        return timestamps[key];
+    }
+
+    /**
+     * @return the stored value, only valid if {@link #has(int, long)}
+     */
+    public double getValue(int key) {
+        return values[key];
+    }
+
+    public void remove(int key) {
+        if (key >= 0 && key < timestamps.length && NONE != timestamps[key]) {
+            timestamps[key] = NONE;
+            size--;
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(timestamps, NONE);
+        size = 0;
+    }
+
+    /**
+     * @return maximum key stored + 1
+     */
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+    /**
+     * @return number of stored values
+     */
+    public int size() {
+        return size;
+    }
+}
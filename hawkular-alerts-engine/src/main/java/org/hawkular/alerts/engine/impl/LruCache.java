@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A size bounded, least recently used cache with hit/miss counters, used to cache definitions read from the
+ * database.
+ *
+ * To avoid caching a stale value when a load races with an update, a loader takes a {@link #stamp()} before reading
+ * the database and passes it to {@link #put(Object, Object, long)}, the value is discarded if anything was
+ * invalidated in between. Values should be immutable, or copied by the caller on read.
+ *
+ * A cache can be given a group function, e.g. the triggerId of a cached row, to invalidate all the entries of a group
+ * by key with {@link #invalidateGroup(Object)}, without scanning the cache.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class LruCache<K, V> {
+    private final int maxSize;
+    private final LinkedHashMap<K, V> map;
+    private final Function<V, ?> group;
+    private final Map<Object, Set<K>> groups;
+    private long invalidations = 0L;
+    private long hits = 0L;
+    private long misses = 0L;
+
+    public LruCache(final int maxSize) {
+        this(maxSize, null);
+    }
+
+    /**
+     * @param group group of a cached value, null for no groups
+     */
+    public LruCache(final int maxSize, Function<V, ?> group) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("MaxSize must be greater than 0");
+        }
+        this.maxSize = maxSize;
+        this.group = group;
+        this.groups = (null != group) ? new HashMap<>() : null;
+        this.map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > maxSize) {
+                    unindex(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return the cached value, or null on a miss
+     */
+    public synchronized V get(K key) {
+        V value = map.get(key);
+        if (null == value) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    /**
+     * @return the current invalidation stamp, to be taken before loading a value
+     */
+    public synchronized long stamp() {
+        return invalidations;
+    }
+
+    /**
+     * Cache a loaded value, unless an invalidation happened since the stamp was taken.
+     */
+    public synchronized void put(K key, V value, long stamp) {
+        if (stamp == invalidations && null != value) {
+            V old = map.put(key, value);
+            if (null != groups) {
+                if (null != old) {
+                    unindex(key, old);
+                }
+                groups.computeIfAbsent(group.apply(value), g -> new HashSet<>()).add(key);
+            }
+        }
+    }
+
+    public synchronized void invalidate(K key) {
+        invalidations++;
+        V old = map.remove(key);
+        if (null != old) {
+            unindex(key, old);
+        }
+    }
+
+    /**
+     * Invalidate all the entries of a group.
+     */
+    public synchronized void invalidateGroup(Object groupKey) {
+        invalidations++;
+        if (null == groups) {
+            throw new IllegalStateException("Cache has no groups");
+        }
+        Set<K> keys = groups.remove(groupKey);
+        if (null != keys) {
+            for (K key : keys) {
+                map.remove(key);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        invalidations++;
+        map.clear();
+        if (null != groups) {
+            groups.clear();
+        }
+    }
+
+    private void unindex(K key, V value) {
+        if (null == groups) {
+            return;
+        }
+        Object groupKey = group.apply(value);
+        Set<K> keys = groups.get(groupKey);
+        if (null != keys && keys.remove(key) && keys.isEmpty()) {
+            groups.remove(groupKey);
+        }
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,1061 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+import org.hawkular.alerts.api.model.action.Action;
+import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.api.model.condition.AvailabilityCondition;
+import org.hawkular.alerts.api.model.condition.AvailabilityConditionEval;
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.CompareConditionEval;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.StringCondition;
+import org.hawkular.alerts.api.model.condition.StringConditionEval;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdConditionEval;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeConditionEval;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Availability.AvailabilityType;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.DataBatch;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.model.trigger.Trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.TriggerTemplate.Match;
+import org.hawkular.alerts.api.services.ActionsService;
+import org.hawkular.alerts.engine.log.MsgLogger;
+import org.hawkular.alerts.engine.rules.RulesEngine;
+import org.jboss.logging.Logger;
+
+/**
+ * An implementation of RulesEngine that does not use a rules framework.
+ *
+ * It implements the same semantics than ConditionMatch.drl with plain java structures: a dataId index of the
+ * conditions, direct Condition evaluation and a dampening state per trigger. Data, ConditionEvals and Dampening
+ * updates are never inserted as facts, so there is no working memory churn. Incoming data is accumulated in a
+ * columnar {@link DataBatch} and evaluated in place.
+ *
+ * Internally dataIds and triggerIds are encoded as dense int keys, see {@link IdDictionary}. The trigger states and the
+ * condition index are arrays addressed by key and the batch is sorted and split in runs by key, so the per sample
+ * work involves no String hashing or comparison. The String ids are only used at the API boundary.
+ *
+ * When many literal StringConditions watch the same dataId they are evaluated together, in one pass over the value,
+ * by a {@link StringLiteralMatcher}. Likewise many threshold conditions on a dataId are resolved with binary searches
+ * by a {@link ThresholdIndex}. Structurally identical conditions of different triggers, as copied triggers have, are
+ * evaluated once per Data and the result is applied to every trigger's dampening.
+ *
+ * As in the drools implementation a CompareCondition does not need both Data in the same batch. The last value of
+ * every data2Id is kept in a bounded {@link LastValueStore}, and is used when the data2Id has no Data in the round.
+ * The org.hawkular.alerts.engine.COMPARE_MAX_AGE system property, in ms, limits how far apart the compared values can
+ * be. The default, 0, sets no limit.
+ *
+ * STRICT_TIME and RELAXED_TIME dampenings are also applied the passing of time, so a STRICT_TIME trigger fires at
+ * the end of its evalPeriod even when its data stops. Their deadlines are kept in a {@link TimerWheel} that fire()
+ * advances to the time of the injected clock, see {@link Dampening#checkTime(long)}.
+ *
+ * As in the drools implementation only the oldest Data of each dataId is processed in a single round. For
+ * multi-condition ALL-match triggers only the most recent evaluation of each condition is used, and a tuple is
+ * applied to the dampening once per round if it contains a new evaluation.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class NativeRulesEngineImpl implements RulesEngine {
+    private final MsgLogger msgLog = MsgLogger.LOGGER;
+    private final Logger log = Logger.getLogger(NativeRulesEngineImpl.class);
+
+    /*
+        Minimum number of literal StringConditions, or of threshold conditions, on a dataId to evaluate them together
+        with a StringLiteralMatcher or a ThresholdIndex
+     */
+    private static final int MATCHER_MIN = 4;
+
+    private static final int TIMER_TICK;
+
+    static {
+        TIMER_TICK = getIntProperty("org.hawkular.alerts.engine.TIMER_TICK", 100);
+    }
+
+    private static int getIntProperty(String name, int defaultValue) {
+        try {
+            return new Integer(System.getProperty(name)).intValue();
+        } catch (Exception ignored) {
+            return defaultValue;
+        }
+    }
+
+    /*
+        Inserted facts, by equality, as drools is configured with equalsBehavior="equality"
+     */
+    private final Map<Object, Object> facts = new HashMap<>();
+    private final Map<String, Object> globals = new HashMap<>();
+
+    /*
+        Triggers and conditions are indexed by the dictionary keys of their triggerIds and dataIds, so the evaluation
+        never hashes or compares the id strings. Slots of unused keys are null. The dictionaries are replaced on
+        clear(), so the arrays are sized to the ids of the current definitions.
+     */
+    private IdDictionary triggerIds = new IdDictionary();
+    private IdDictionary dataIds = new IdDictionary();
+    private TriggerState[] triggers = new TriggerState[16];
+    private DataIdIndex[] conditionsByDataId = new DataIdIndex[16];
+
+    private final DataBatch pendingData = new DataBatch();
+    /*
+        dataId key -> run of the dataId in the data being fired, -1 if none. Reset after every fire.
+     */
+    private int[] runOf = new int[0];
+
+    /*
+        Last value of the dataIds referenced as data2Id, so a CompareCondition compares with the most recent value of
+        its data2Id when no sample of it is in the same round
+     */
+    private final LastValueStore lastValues = new LastValueStore();
+    private long droppedLastValues;
+
+    /*
+        Condition evaluations performed, and saved by sharing the result of an identical condition. Only updated by
+        fire(), read for monitoring.
+     */
+    private long evaluations;
+    private long sharedEvaluations;
+
+    /*
+        Deadlines of the time based dampenings, by trigger. fireTime is the clock time of the current fire().
+     */
+    private final LongSupplier clock;
+    private final TimerWheel<TriggerState> timers;
+    private long fireTime;
+
+    private ActionsService actions;
+    private List<Alert> alerts;
+
+    public NativeRulesEngineImpl() {
+        this(System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock the time, in ms, used for the dampening of the evaluations and to expire the time based dampenings
+     */
+    public NativeRulesEngineImpl(LongSupplier clock) {
+        log.debugf("Creating instance.");
+        this.clock = clock;
+        this.timers = new TimerWheel<>(TIMER_TICK, clock.getAsLong());
+    }
+
+    /**
+     * @return number of conditions evaluated one by one, the ones resolved by a matcher are not counted
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * @return number of condition evaluations saved by reusing the result of an identical condition of another
+     * trigger on the same Data
+     */
+    public long getSharedEvaluations() {
+        return sharedEvaluations;
+    }
+
+    /**
+     * @return number of data2Id values not kept for a later round because the LAST_VALUES_MAX limit is reached
+     */
+    public long getDroppedLastValues() {
+        return droppedLastValues;
+    }
+
+    private static class TriggerState {
+        Trigger trigger;
+        final Set<Condition> conditions = new LinkedHashSet<>();
+        Dampening fireDampening;
+        Dampening safetyDampening;
+        Dampening defaultFireDampening;
+        Dampening defaultSafetyDampening;
+        ConditionEval[] lastEvals;
+        TimerWheel.Timer<TriggerState> timer;
+
+        boolean isEmpty() {
+            return null == trigger && conditions.isEmpty() && null == fireDampening && null == safetyDampening;
+        }
+    }
+
+    /*
+        The conditions on a dataId, and the number of CompareConditions using the dataId as data2Id. The matchers of
+        the literal StringConditions and of the threshold conditions, and the groups of identical conditions, are
+        rebuilt on first use after the conditions change.
+     */
+    private static class DataIdIndex {
+        final List<IndexedCondition> conditions = new ArrayList<>();
+        int data2Refs;
+        StringLiteralMatcher literals;
+        ThresholdIndex thresholds;
+        boolean matchersValid;
+        /*
+            By group of identical conditions, whether one was evaluated on the current sample, and its result
+         */
+        boolean[] sharedDone = new boolean[0];
+        boolean[] sharedMatch = new boolean[0];
+
+        boolean isEmpty() {
+            return conditions.isEmpty() && 0 == data2Refs;
+        }
+
+        void add(IndexedCondition ic) {
+            conditions.add(ic);
+            matchersValid = false;
+        }
+
+        /**
+         * @return the match results of the literal StringConditions, by slot, null if they are evaluated one by one
+         */
+        boolean[] matchLiterals(String value) {
+            return (null == literals || null == value) ? null : literals.match(value);
+        }
+
+        /**
+         * @return the match results of the threshold conditions, by slot, null if they are evaluated one by one
+         */
+        boolean[] matchThresholds(double value) {
+            return (null == thresholds) ? null : thresholds.match(value);
+        }
+
+        /**
+         * Rebuild the matchers if needed and reset the shared evaluations, before evaluating a new sample.
+         */
+        void prepare() {
+            if (!matchersValid) {
+                buildMatchers();
+            }
+            if (sharedDone.length > 0) {
+                Arrays.fill(sharedDone, false);
+            }
+        }
+
+        private void buildMatchers() {
+            List<StringCondition> literalConditions = new ArrayList<>();
+            List<IndexedCondition> literalIcs = new ArrayList<>();
+            List<Condition> thresholdConditions = new ArrayList<>();
+            List<IndexedCondition> thresholdIcs = new ArrayList<>();
+            for (IndexedCondition ic : conditions) {
+                ic.slot = -1;
+                if (ic.condition instanceof StringCondition
+                        && StringLiteralMatcher.isLiteral((StringCondition) ic.condition)) {
+                    literalConditions.add((StringCondition) ic.condition);
+                    literalIcs.add(ic);
+                } else if (ThresholdIndex.isIndexable(ic.condition)) {
+                    thresholdConditions.add(ic.condition);
+                    thresholdIcs.add(ic);
+                }
+            }
+            literals = null;
+            if (literalConditions.size() >= MATCHER_MIN) {
+                literals = new StringLiteralMatcher(literalConditions);
+                for (int i = 0; i < literalIcs.size(); i++) {
+                    literalIcs.get(i).slot = i;
+                }
+            }
+            thresholds = null;
+            if (thresholdConditions.size() >= MATCHER_MIN) {
+                thresholds = new ThresholdIndex(thresholdConditions);
+                for (int i = 0; i < thresholdIcs.size(); i++) {
+                    thresholdIcs.get(i).slot = thresholds.slot(i);
+                }
+            }
+
+            // the conditions left to evaluate one by one are grouped by signature, a group is evaluated once
+            Map<String, List<IndexedCondition>> bySignature = new HashMap<>();
+            for (IndexedCondition ic : conditions) {
+                ic.shared = -1;
+                String signature = (ic.slot < 0) ? signature(ic.condition) : null;
+                if (null != signature) {
+                    List<IndexedCondition> group = bySignature.get(signature);
+                    if (null == group) {
+                        group = new ArrayList<>(2);
+                        bySignature.put(signature, group);
+                    }
+                    group.add(ic);
+                }
+            }
+            int numShared = 0;
+            for (List<IndexedCondition> group : bySignature.values()) {
+                if (group.size() > 1) {
+                    for (IndexedCondition ic : group) {
+                        ic.shared = numShared;
+                    }
+                    numShared++;
+                }
+            }
+            sharedDone = new boolean[numShared];
+            sharedMatch = new boolean[numShared];
+            matchersValid = true;
+        }
+
+        /*
+            What makes two conditions on the same dataId evaluate the same, everything but the trigger fields. Null
+            for the conditions that are never shared.
+         */
+        private static String signature(Condition condition) {
+            if (condition instanceof ThresholdCondition) {
+                ThresholdCondition c = (ThresholdCondition) condition;
+                return "T|" + c.getOperator() + "|" + c.getThreshold();
+            } else if (condition instanceof ThresholdRangeCondition) {
+                ThresholdRangeCondition c = (ThresholdRangeCondition) condition;
+                return "R|" + c.getOperatorLow() + "|" + c.getOperatorHigh() + "|" + c.getThresholdLow() + "|"
+                        + c.getThresholdHigh() + "|" + c.isInRange();
+            } else if (condition instanceof CompareCondition) {
+                CompareCondition c = (CompareCondition) condition;
+                return "C|" + c.getOperator() + "|" + c.getData2Multiplier() + "|" + c.getData2Id();
+            } else if (condition instanceof AvailabilityCondition) {
+                return "A|" + ((AvailabilityCondition) condition).getOperator();
+            } else if (condition instanceof StringCondition) {
+                StringCondition c = (StringCondition) condition;
+                return "S|" + c.getOperator() + "|" + c.isIgnoreCase() + "|" + c.getPattern();
+            }
+            return null;
+        }
+    }
+
+    private static class IndexedCondition {
+        final Condition condition;
+        final TriggerState ts;
+        final int data2Key;
+        /*
+            Slot of the condition in the StringLiteralMatcher or ThresholdIndex of its dataId, -1 if none
+         */
+        int slot = -1;
+        /*
+            Group of the identical conditions on its dataId, -1 if the condition is not shared
+         */
+        int shared = -1;
+
+        IndexedCondition(Condition condition, TriggerState ts, int data2Key) {
+            this.condition = condition;
+            this.ts = ts;
+            this.data2Key = data2Key;
+        }
+    }
+
+    private TriggerState state(String triggerId) {
+        int key = triggerIds.encode(triggerId);
+        if (key >= triggers.length) {
+            triggers = Arrays.copyOf(triggers, Math.max(key + 1, triggers.length * 2));
+        }
+        TriggerState ts = triggers[key];
+        if (null == ts) {
+            ts = new TriggerState();
+            triggers[key] = ts;
+        }
+        return ts;
+    }
+
+    private TriggerState getState(String triggerId) {
+        int key = triggerIds.lookup(triggerId);
+        return (key < 0 || key >= triggers.length) ? null : triggers[key];
+    }
+
+    private void releaseState(String triggerId, TriggerState ts) {
+        if (ts.isEmpty()) {
+            triggers[triggerIds.lookup(triggerId)] = null;
+            timers.cancel(ts.timer);
+        }
+    }
+
+    private DataIdIndex dataIdIndex(String dataId) {
+        int key = dataIds.encode(dataId);
+        if (key >= conditionsByDataId.length) {
+            conditionsByDataId = Arrays.copyOf(conditionsByDataId, Math.max(key + 1, conditionsByDataId.length * 2));
+        }
+        DataIdIndex index = conditionsByDataId[key];
+        if (null == index) {
+            index = new DataIdIndex();
+            conditionsByDataId[key] = index;
+        }
+        return index;
+    }
+
+    private DataIdIndex getDataIdIndex(int key) {
+        return (key < 0 || key >= conditionsByDataId.length) ? null : conditionsByDataId[key];
+    }
+
+    private void releaseDataIdIndex(String dataId, DataIdIndex index) {
+        if (index.isEmpty()) {
+            conditionsByDataId[dataIds.lookup(dataId)] = null;
+        }
+    }
+
+    /*
+        Key of a dataId with conditions or referenced as data2Id, -1 for data no condition can use
+     */
+    private int dataKey(String dataId) {
+        int key = dataIds.lookup(dataId);
+        return null == getDataIdIndex(key) ? -1 : key;
+    }
+
+    @Override
+    public void addGlobal(String name, Object global) {
+        log.debugf("Add Global %s = %s", name, global);
+        globals.put(name, global);
+        if ("actions".equals(name)) {
+            actions = (ActionsService) global;
+        } else if ("alerts".equals(name)) {
+            alerts = (List<Alert>) global;
+        }
+    }
+
+    @Override
+    public void removeGlobal(String name) {
+        log.debugf("Remove Global %s ", name);
+        globals.remove(name);
+        if ("actions".equals(name)) {
+            actions = null;
+        } else if ("alerts".equals(name)) {
+            alerts = null;
+        }
+    }
+
+    @Override
+    public void addFact(Object fact) {
+        if (fact instanceof Data) {
+            throw new IllegalArgumentException(fact.toString());
+        }
+
+        log.debugf("Insert %s ", fact);
+        Object previous = facts.remove(fact);
+        if (null != previous) {
+            unindex(previous);
+        }
+        facts.put(fact, fact);
+        index(fact);
+    }
+
+    @Override
+    public void addFacts(Collection facts) {
+        for (Object fact : facts) {
+            if (fact instanceof Data) {
+                throw new IllegalArgumentException(fact.toString());
+            }
+        }
+        for (Object fact : facts) {
+            addFact(fact);
+        }
+    }
+
+    @Override
+    public Object getFact(Object fact) {
+        return facts.get(fact);
+    }
+
+    @Override
+    public void removeFact(Object fact) {
+        Object existing = facts.remove(fact);
+        if (null != existing) {
+            log.debugf("Delete %s ", existing);
+            unindex(existing);
+        }
+    }
+
+    @Override
+    public void removeFacts(Collection facts) {
+        for (Object fact : facts) {
+            removeFact(fact);
+        }
+    }
+
+    @Override
+    public void removeFacts(Predicate<Object> factFilter) {
+        List<Object> doomed = new ArrayList<>();
+        for (Object fact : facts.keySet()) {
+            if (factFilter.test(fact)) {
+                doomed.add(fact);
+            }
+        }
+        for (Object fact : doomed) {
+            removeFact(fact);
+        }
+    }
+
+    private void index(Object fact) {
+        if (fact instanceof Trigger) {
+            Trigger trigger = (Trigger) fact;
+            state(trigger.getId()).trigger = trigger;
+
+        } else if (fact instanceof Condition) {
+            Condition condition = (Condition) fact;
+            TriggerState ts = state(condition.getTriggerId());
+            ts.conditions.add(condition);
+            if (null != condition.getDataId()) {
+                int data2Key = -1;
+                if (condition instanceof CompareCondition && null != ((CompareCondition) condition).getData2Id()) {
+                    String data2Id = ((CompareCondition) condition).getData2Id();
+                    dataIdIndex(data2Id).data2Refs++;
+                    data2Key = dataIds.lookup(data2Id);
+                }
+                dataIdIndex(condition.getDataId()).add(new IndexedCondition(condition, ts, data2Key));
+            }
+
+        } else if (fact instanceof Dampening) {
+            Dampening dampening = (Dampening) fact;
+            TriggerState ts = state(dampening.getTriggerId());
+            if (Mode.FIRE == dampening.getTriggerMode()) {
+                ts.fireDampening = dampening;
+            } else {
+                ts.safetyDampening = dampening;
+            }
+        }
+    }
+
+    private void unindex(Object fact) {
+        if (fact instanceof Trigger) {
+            Trigger trigger = (Trigger) fact;
+            TriggerState ts = getState(trigger.getId());
+            if (null != ts) {
+                ts.trigger = null;
+                ts.lastEvals = null;
+                releaseState(trigger.getId(), ts);
+            }
+
+        } else if (fact instanceof Condition) {
+            Condition condition = (Condition) fact;
+            unindexByDataId(condition);
+            TriggerState ts = getState(condition.getTriggerId());
+            if (null != ts && ts.conditions.remove(condition)) {
+                ts.lastEvals = null;
+                releaseState(condition.getTriggerId(), ts);
+            }
+
+        } else if (fact instanceof Dampening) {
+            Dampening dampening = (Dampening) fact;
+            TriggerState ts = getState(dampening.getTriggerId());
+            if (null != ts) {
+                if (Mode.FIRE == dampening.getTriggerMode()) {
+                    ts.fireDampening = null;
+                } else {
+                    ts.safetyDampening = null;
+                }
+                releaseState(dampening.getTriggerId(), ts);
+            }
+        }
+    }
+
+    private void unindexByDataId(Condition condition) {
+        DataIdIndex index = getDataIdIndex(dataIds.lookup(condition.getDataId()));
+        if (null == index) {
+            return;
+        }
+        for (Iterator<IndexedCondition> i = index.conditions.iterator(); i.hasNext();) {
+            if (i.next().condition.equals(condition)) {
+                i.remove();
+                index.matchersValid = false;
+                releaseDataIdIndex(condition.getDataId(), index);
+                if (condition instanceof CompareCondition) {
+                    String data2Id = ((CompareCondition) condition).getData2Id();
+                    DataIdIndex data2Index = getDataIdIndex(dataIds.lookup(data2Id));
+                    if (null != data2Index) {
+                        data2Index.data2Refs--;
+                        if (0 == data2Index.data2Refs) {
+                            lastValues.remove(dataIds.lookup(data2Id));
+                        }
+                        releaseDataIdIndex(data2Id, data2Index);
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void removeTrigger(String triggerId) {
+        TriggerState ts = getState(triggerId);
+        if (null == ts) {
+            return;
+        }
+        triggers[triggerIds.lookup(triggerId)] = null;
+        log.debugf("Delete trigger %s ", triggerId);
+        timers.cancel(ts.timer);
+        if (null != ts.trigger) {
+            facts.remove(ts.trigger);
+        }
+        for (Condition condition : ts.conditions) {
+            facts.remove(condition);
+            unindexByDataId(condition);
+        }
+        if (null != ts.fireDampening) {
+            facts.remove(ts.fireDampening);
+        }
+        if (null != ts.safetyDampening) {
+            facts.remove(ts.safetyDampening);
+        }
+    }
+
+    @Override
+    public void addData(Data data) {
+        pendingData.add(data);
+    }
+
+    @Override
+    public void addData(Collection<Data> data) {
+        pendingData.addAll(data);
+    }
+
+    @Override
+    public void addData(DataBatch batch) {
+        pendingData.addAll(batch);
+    }
+
+    @Override
+    public void fire() {
+        // deadlines passed since the last fire() are due before the new data
+        fireTime = clock.getAsLong();
+        if (timers.size() > 0) {
+            timers.advance(fireTime, this::expired);
+        }
+        if (pendingData.isEmpty()) {
+            return;
+        }
+
+        // Same as the drools implementation, for any DataId only the oldest Data instance is processed in one
+        // round, the rest is deferred to subsequent rounds. The dataIds are encoded once, dropping the data no
+        // condition can use, then the samples are sorted by (dataId key ASC, timestamp ASC) and deduplicated, as a
+        // TreeSet<Data> would, so the samples of a dataId form a contiguous run. Every round takes the next sample of
+        // each run that still has samples, and the whole burst is applied in this single call. No per sample objects
+        // are created, only the resulting ConditionEvals.
+        Rounds rounds = null;
+        try {
+            int dropped = pendingData.encodeIds(this::dataKey);
+            if (dropped > 0) {
+                log.debugf("Dropped [%1$d] Datum(s) not referenced by any condition", dropped);
+            }
+            if (pendingData.isEmpty()) {
+                return;
+            }
+            pendingData.sort();
+            pendingData.dedup();
+
+            if (runOf.length < dataIds.size()) {
+                runOf = new int[Math.max(dataIds.size(), runOf.length * 2)];
+                Arrays.fill(runOf, -1);
+            }
+            rounds = new Rounds(pendingData, runOf);
+
+            while (rounds.numActive > 0) {
+                log.debugf("Data found. Firing rules on [%1$d] datums.", rounds.numActive);
+
+                fireRound(rounds);
+
+                rounds.next();
+                if (rounds.numActive > 0) {
+                    log.debugf("Deferring Datum(s) of [%1$d] dataIds to next round !!", rounds.numActive);
+                }
+            }
+        } finally {
+            if (null != rounds) {
+                rounds.release();
+            }
+            pendingData.clear();
+        }
+    }
+
+    /*
+        The runs of a sorted batch, one per dataId. cursor[r] is the sample of run r in the current round, active
+        holds the runs that still have samples. runOf maps the dataId keys to their run.
+     */
+    private static class Rounds {
+        final DataBatch batch;
+        final int[] runOf;
+        final int[] key;
+        final int[] cursor;
+        final int[] end;
+        final int[] active;
+        int numActive;
+
+        Rounds(DataBatch batch, int[] runOf) {
+            int numRuns = 0;
+            for (int i = 0; i < batch.size(); i++) {
+                if (0 == i || batch.getKey(i) != batch.getKey(i - 1)) {
+                    numRuns++;
+                }
+            }
+            this.batch = batch;
+            this.runOf = runOf;
+            this.key = new int[numRuns];
+            this.cursor = new int[numRuns];
+            this.end = new int[numRuns];
+            this.active = new int[numRuns];
+            int r = -1;
+            for (int i = 0; i < batch.size(); i++) {
+                if (0 == i || batch.getKey(i) != batch.getKey(i - 1)) {
+                    r++;
+                    key[r] = batch.getKey(i);
+                    cursor[r] = i;
+                    active[r] = r;
+                    runOf[key[r]] = r;
+                }
+                end[r] = i + 1;
+            }
+            this.numActive = numRuns;
+        }
+
+        /**
+         * @return the sample of the dataId key in the current round, -1 if the dataId has no sample in the round.
+         */
+        int sample(int dataKey) {
+            int r = (dataKey < 0 || dataKey >= runOf.length) ? -1 : runOf[dataKey];
+            return (r < 0 || cursor[r] >= end[r]) ? -1 : cursor[r];
+        }
+
+        void next() {
+            int n = 0;
+            for (int a = 0; a < numActive; a++) {
+                int r = active[a];
+                if (++cursor[r] < end[r]) {
+                    active[n++] = r;
+                }
+            }
+            numActive = n;
+        }
+
+        void release() {
+            for (int k : key) {
+                runOf[k] = -1;
+            }
+        }
+    }
+
+    private void fireRound(Rounds rounds) {
+        // evaluate conditions, grouping the evals by trigger
+        DataBatch batch = rounds.batch;
+        Map<TriggerState, List<ConditionEval>> evals = new LinkedHashMap<>();
+        for (int a = 0; a < rounds.numActive; a++) {
+            int i = rounds.cursor[rounds.active[a]];
+            DataIdIndex index = getDataIdIndex(batch.getKey(i));
+            if (null == index) {
+                continue;
+            }
+            index.prepare();
+            boolean[] matches = null;
+            if (Data.Type.STRING == batch.getType(i)) {
+                matches = index.matchLiterals(batch.getString(i));
+            } else if (Data.Type.NUMERIC == batch.getType(i)) {
+                matches = index.matchThresholds(batch.getValue(i));
+            }
+            for (IndexedCondition ic : index.conditions) {
+                TriggerState ts = ic.ts;
+                if (null == ts.trigger || ts.trigger.getMode() != ic.condition.getTriggerMode()) {
+                    continue;
+                }
+                ConditionEval ce = evaluate(ic, index, batch, i, rounds, matches);
+                if (null == ce) {
+                    continue;
+                }
+                List<ConditionEval> triggerEvals = evals.get(ts);
+                if (null == triggerEvals) {
+                    triggerEvals = new ArrayList<>();
+                    evals.put(ts, triggerEvals);
+                }
+                triggerEvals.add(ce);
+            }
+        }
+
+        // keep the values a CompareCondition may need in a later round or batch
+        for (int a = 0; a < rounds.numActive; a++) {
+            int i = rounds.cursor[rounds.active[a]];
+            DataIdIndex index = getDataIdIndex(batch.getKey(i));
+            if (null != index && index.data2Refs > 0 && Data.Type.NUMERIC == batch.getType(i)) {
+                int key = batch.getKey(i);
+                if (!lastValues.put(key, batch.getTimestamp(i), batch.getValue(i)) && key >= lastValues.getMaxKeys()
+                        && 0 == droppedLastValues++) {
+                    msgLog.warningLastValuesLimit(lastValues.getMaxKeys(), dataIds.decode(key));
+                }
+            }
+        }
+
+        // update dampening and generate alerts
+        for (Map.Entry<TriggerState, List<ConditionEval>> entry : evals.entrySet()) {
+            dampen(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private ConditionEval evaluate(IndexedCondition ic, DataIdIndex index, DataBatch batch, int i, Rounds rounds,
+            boolean[] matches) {
+        Condition condition = ic.condition;
+        ConditionEval ce = null;
+        Data.Type type = batch.getType(i);
+        long timestamp = batch.getTimestamp(i);
+        Boolean known;
+        boolean match;
+        if (condition instanceof ThresholdCondition) {
+            if (Data.Type.NUMERIC == type) {
+                ThresholdCondition c = (ThresholdCondition) condition;
+                double value = batch.getValue(i);
+                known = known(ic, index, matches);
+                match = (null != known) ? known : shared(ic, index, c.match(value));
+                ce = new ThresholdConditionEval(c, timestamp, value, match);
+            }
+        } else if (condition instanceof ThresholdRangeCondition) {
+            if (Data.Type.NUMERIC == type) {
+                ThresholdRangeCondition c = (ThresholdRangeCondition) condition;
+                double value = batch.getValue(i);
+                known = known(ic, index, matches);
+                match = (null != known) ? known : shared(ic, index, c.match(value));
+                ce = new ThresholdRangeConditionEval(c, timestamp, value, match);
+            }
+        } else if (condition instanceof CompareCondition) {
+            // the data2Id sample of the same round, else the last value of data2Id, if any and not stale
+            int i2 = rounds.sample(ic.data2Key);
+            if (Data.Type.NUMERIC == type
+                    && (i2 >= 0 ? Data.Type.NUMERIC == batch.getType(i2) : lastValues.has(ic.data2Key, timestamp))) {
+                CompareCondition c = (CompareCondition) condition;
+                double value = batch.getValue(i);
+                long timestamp2 = (i2 >= 0) ? batch.getTimestamp(i2) : lastValues.getTimestamp(ic.data2Key);
+                double value2 = (i2 >= 0) ? batch.getValue(i2) : lastValues.getValue(ic.data2Key);
+                known = known(ic, index, matches);
+                match = (null != known) ? known : shared(ic, index, c.match(value, value2));
+                ce = new CompareConditionEval(c, timestamp, value, timestamp2, value2, match);
+            }
+        } else if (condition instanceof AvailabilityCondition) {
+            if (Data.Type.AVAILABILITY == type) {
+                AvailabilityCondition c = (AvailabilityCondition) condition;
+                AvailabilityType value = batch.getAvailability(i);
+                known = known(ic, index, matches);
+                match = (null != known) ? known : shared(ic, index, c.match(value));
+                ce = new AvailabilityConditionEval(c, timestamp, value, match);
+            }
+        } else if (condition instanceof StringCondition) {
+            if (Data.Type.STRING == type) {
+                StringCondition c = (StringCondition) condition;
+                String value = batch.getString(i);
+                known = known(ic, index, matches);
+                match = (null != known) ? known : shared(ic, index, c.match(value));
+                ce = new StringConditionEval(c, timestamp, value, match);
+            }
+        }
+        if (null != ce && log.isDebugEnabled()) {
+            log.debug(condition.getType() + " Eval: " + (ce.isMatch() ? "  Match! " : "no match ") + ce.getLog());
+        }
+        return ce;
+    }
+
+    /*
+        The result of the condition on the current sample when it is already known, from the matcher of the sample
+        type or from an identical condition, null if the condition must be evaluated. A slot is only used with the
+        matches of its own matcher, as the sample type selects both.
+     */
+    private Boolean known(IndexedCondition ic, DataIdIndex index, boolean[] matches) {
+        if (null != matches && ic.slot >= 0) {
+            return matches[ic.slot];
+        }
+        if (ic.shared >= 0 && index.sharedDone[ic.shared]) {
+            sharedEvaluations++;
+            return index.sharedMatch[ic.shared];
+        }
+        evaluations++;
+        return null;
+    }
+
+    private boolean shared(IndexedCondition ic, DataIdIndex index, boolean match) {
+        if (ic.shared >= 0) {
+            index.sharedDone[ic.shared] = true;
+            index.sharedMatch[ic.shared] = match;
+        }
+        return match;
+    }
+
+    private void dampen(TriggerState ts, List<ConditionEval> evals) {
+        Trigger trigger = ts.trigger;
+        List<ConditionEval> tupleEvals = null;
+        for (ConditionEval ce : evals) {
+            if (Match.ANY == trigger.getMatch() || 1 == ce.getConditionSetSize()) {
+                // single-condition semantics, every eval is applied to the dampening
+                Dampening dampening = dampening(ts);
+                log.debugf("Updating dampening for: %s", ce);
+                dampening.perform(fireTime, ce);
+                if (dampening.isSatisfied()) {
+                    satisfied(ts, dampening);
+                }
+                schedule(ts);
+            } else {
+                if (null == tupleEvals) {
+                    tupleEvals = new ArrayList<>();
+                }
+                tupleEvals.add(ce);
+            }
+        }
+        if (null == tupleEvals) {
+            return;
+        }
+
+        // multi-condition ALL-match, keep the most recent eval for each condition
+        int size = tupleEvals.get(0).getConditionSetSize();
+        if (null == ts.lastEvals || ts.lastEvals.length != size) {
+            ts.lastEvals = new ConditionEval[size];
+        }
+        for (ConditionEval ce : tupleEvals) {
+            int i = ce.getConditionSetIndex() - 1;
+            if (i >= 0 && i < size) {
+                ts.lastEvals[i] = ce;
+            }
+        }
+        boolean unused = false;
+        for (ConditionEval ce : ts.lastEvals) {
+            if (null == ce) {
+                return;
+            }
+            unused |= !ce.isUsed();
+        }
+        if (!unused) {
+            return;
+        }
+
+        ConditionEval[] tuple = ts.lastEvals.clone();
+        Dampening dampening = dampening(ts);
+        log.debugf("Updating dampening for: %s", tupleEvals);
+        dampening.perform(fireTime, tuple);
+        for (ConditionEval ce : tuple) {
+            ce.setUsed(true);
+        }
+        if (dampening.isSatisfied()) {
+            satisfied(ts, dampening);
+        }
+        schedule(ts);
+    }
+
+    /*
+        Keep the timer of the trigger on the deadline of its current dampening, if any
+     */
+    private void schedule(TriggerState ts) {
+        long deadline = (null == ts.trigger) ? 0L : dampening(ts).getDeadline();
+        if (null != ts.timer) {
+            if (ts.timer.isScheduled() && ts.timer.getDeadline() == deadline) {
+                return;
+            }
+            timers.cancel(ts.timer);
+            ts.timer = null;
+        }
+        if (deadline > 0L) {
+            ts.timer = timers.schedule(ts, deadline);
+        }
+    }
+
+    private void expired(TriggerState ts) {
+        ts.timer = null;
+        if (null == ts.trigger) {
+            return;
+        }
+        Dampening dampening = dampening(ts);
+        log.debugf("Dampening deadline expired for: %s", dampening);
+        if (dampening.checkTime(fireTime)) {
+            satisfied(ts, dampening);
+        }
+        schedule(ts);
+    }
+
+    private Dampening dampening(TriggerState ts) {
+        Trigger trigger = ts.trigger;
+        if (Mode.FIRE == trigger.getMode()) {
+            if (null != ts.fireDampening) {
+                return ts.fireDampening;
+            }
+            if (null == ts.defaultFireDampening) {
+                log.debugf("Adding default %s dampening for trigger! %s", Mode.FIRE, trigger.getId());
+                ts.defaultFireDampening = new Dampening(trigger.getId(), Mode.FIRE, Dampening.Type.STRICT, 1, 1, 0L);
+            }
+            return ts.defaultFireDampening;
+        }
+        if (null != ts.safetyDampening) {
+            return ts.safetyDampening;
+        }
+        if (null == ts.defaultSafetyDampening) {
+            log.debugf("Adding default %s dampening for trigger! %s", Mode.SAFETY, trigger.getId());
+            ts.defaultSafetyDampening = new Dampening(trigger.getId(), Mode.SAFETY, Dampening.Type.STRICT, 1, 1,
+                    0L);
+        }
+        return ts.defaultSafetyDampening;
+    }
+
+    private void satisfied(TriggerState ts, Dampening dampening) {
+        Trigger trigger = ts.trigger;
+        if (Mode.FIRE == trigger.getMode()) {
+            if (log.isDebugEnabled()) {
+                log.debug("AlertOnSatisfiedDampening! " + dampening.log());
+            }
+            Alert newAlert = new Alert(trigger.getId(), dampening.getSatisfyingEvals(),
+                    dampening.getOmittedSatisfyingEvals());
+            if (null != alerts) {
+                alerts.add(newAlert);
+            }
+            if (null != actions) {
+                for (String actionId : trigger.getActions()) {
+                    Action action = new Action(actionId, newAlert.toString());
+                    actions.send(action);
+                }
+            }
+            dampening.reset();
+
+            if (trigger.isSafetyEnabled()) {
+                log.debugf("Setting Trigger to Safety Mode! %s", trigger);
+                trigger.setMode(Mode.SAFETY);
+                ts.lastEvals = null;
+            } else {
+                log.debugf("Trigger remains in Fire mode, Safety Mode not enabled. %s", trigger);
+            }
+        } else {
+            if (log.isDebugEnabled()) {
+                log.debug("SetFiringModeOnSatisfiedDampening! " + dampening.log());
+            }
+            dampening.reset();
+            trigger.setMode(Mode.FIRE);
+            ts.lastEvals = null;
+        }
+    }
+
+    @Override
+    public void clear() {
+        log.debugf("Clear facts");
+        facts.clear();
+        triggerIds = new IdDictionary();
+        dataIds = new IdDictionary();
+        triggers = new TriggerState[16];
+        conditionsByDataId = new DataIdIndex[16];
+        runOf = new int[0];
+        lastValues.clear();
+        timers.clear();
+    }
+
+    @Override
+    public void reset() {
+        log.debugf("Reset session");
+        clear();
+        globals.clear();
+        actions = null;
+        alerts = null;
+    }
+}
@@ -0,0 +1,436 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.DataBatch;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.rules.RulesEngine;
+import org.jboss.logging.Logger;
+
+/**
+ * A RulesEngine that partitions the rulebase across N independent RulesEngine shards.
+ *
+ * Triggers, together with their conditions and dampenings, are hashed by triggerId onto a shard. Data is routed
+ * only to the shards with a condition on its dataId, and the shards are fired in parallel on a worker pool. As a
+ * trigger is always evaluated by a single shard, the results and the alert ordering per trigger are the same as
+ * with a single engine. Alerts generated by every shard are collected into the "alerts" global in shard order.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class PartitionedRulesEngineImpl implements RulesEngine {
+    private final Logger log = Logger.getLogger(PartitionedRulesEngineImpl.class);
+    private static final String ALERTS = "alerts";
+
+    private final RulesEngine[] shards;
+    private final List<List<Alert>> shardAlerts;
+    private final ExecutorService executor;
+
+    /*
+        dataId -> number of conditions per shard referencing the dataId
+     */
+    private final Map<String, int[]> interest = new HashMap<>();
+    /*
+        triggerId -> conditions of the trigger
+     */
+    private final Map<String, Set<Condition>> conditions = new HashMap<>();
+    private final List<Data> pendingData = new ArrayList<>();
+    private final DataBatch pendingBatch = new DataBatch();
+
+    private List<Alert> alerts;
+
+    public PartitionedRulesEngineImpl(int numShards, Supplier<RulesEngine> shardFactory) {
+        this(numShards, shardFactory, Executors.defaultThreadFactory());
+    }
+
+    /**
+     * @param numShards number of independent engines, fired in parallel
+     * @param shardFactory creates the engine of every shard
+     * @param threadFactory creates the worker threads, a container managed factory when running in a container
+     */
+    public PartitionedRulesEngineImpl(int numShards, Supplier<RulesEngine> shardFactory,
+            ThreadFactory threadFactory) {
+        if (numShards < 1) {
+            throw new IllegalArgumentException("Number of shards must be greater than 0");
+        }
+        if (null == shardFactory) {
+            throw new IllegalArgumentException("ShardFactory must be not null");
+        }
+        if (null == threadFactory) {
+            throw new IllegalArgumentException("ThreadFactory must be not null");
+        }
+        log.debugf("Creating instance with [%1$d] shards.", numShards);
+
+        shards = new RulesEngine[numShards];
+        shardAlerts = new ArrayList<>(numShards);
+        for (int i = 0; i < numShards; i++) {
+            shards[i] = shardFactory.get();
+            shardAlerts.add(new ArrayList<>());
+        }
+
+        final AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(numShards, r -> {
+            Thread t = threadFactory.newThread(r);
+            t.setName("PartitionedRulesEngine-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public int getNumShards() {
+        return shards.length;
+    }
+
+    /**
+     * Stop the worker pool. The engine can not be fired after shutdown.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private int shardOf(Object fact) {
+        String triggerId = null;
+        if (fact instanceof Trigger) {
+            triggerId = ((Trigger) fact).getId();
+        } else if (fact instanceof Condition) {
+            triggerId = ((Condition) fact).getTriggerId();
+        } else if (fact instanceof Dampening) {
+            triggerId = ((Dampening) fact).getTriggerId();
+        } else if (fact instanceof ConditionEval) {
+            triggerId = ((ConditionEval) fact).getTriggerId();
+        }
+        int hash = (null != triggerId) ? triggerId.hashCode() : fact.hashCode();
+        return Math.floorMod(hash, shards.length);
+    }
+
+    private void addInterest(Condition condition, int shard) {
+        Set<Condition> triggerConditions = conditions.get(condition.getTriggerId());
+        if (null == triggerConditions) {
+            triggerConditions = new HashSet<>();
+            conditions.put(condition.getTriggerId(), triggerConditions);
+        }
+        if (!triggerConditions.add(condition)) {
+            return;
+        }
+        updateInterest(condition.getDataId(), shard, 1);
+        if (condition instanceof CompareCondition) {
+            updateInterest(((CompareCondition) condition).getData2Id(), shard, 1);
+        }
+    }
+
+    private void removeInterest(Condition condition, int shard) {
+        Set<Condition> triggerConditions = conditions.get(condition.getTriggerId());
+        if (null == triggerConditions || !triggerConditions.remove(condition)) {
+            return;
+        }
+        if (triggerConditions.isEmpty()) {
+            conditions.remove(condition.getTriggerId());
+        }
+        updateInterest(condition.getDataId(), shard, -1);
+        if (condition instanceof CompareCondition) {
+            updateInterest(((CompareCondition) condition).getData2Id(), shard, -1);
+        }
+    }
+
+    private void updateInterest(String dataId, int shard, int delta) {
+        if (null == dataId) {
+            return;
+        }
+        int[] counts = interest.get(dataId);
+        if (null == counts) {
+            if (delta < 0) {
+                return;
+            }
+            counts = new int[shards.length];
+            interest.put(dataId, counts);
+        }
+        counts[shard] += delta;
+        if (delta < 0) {
+            for (int count : counts) {
+                if (count > 0) {
+                    return;
+                }
+            }
+            interest.remove(dataId);
+        }
+    }
+
+    @Override
+    public void addGlobal(String name, Object global) {
+        if (ALERTS.equals(name)) {
+            alerts = (List<Alert>) global;
+            for (int i = 0; i < shards.length; i++) {
+                shards[i].addGlobal(name, shardAlerts.get(i));
+            }
+            return;
+        }
+        for (RulesEngine shard : shards) {
+            shard.addGlobal(name, global);
+        }
+    }
+
+    @Override
+    public void removeGlobal(String name) {
+        if (ALERTS.equals(name)) {
+            alerts = null;
+        }
+        for (RulesEngine shard : shards) {
+            shard.removeGlobal(name);
+        }
+    }
+
+    @Override
+    public void addFact(Object fact) {
+        if (fact instanceof Data) {
+            throw new IllegalArgumentException(fact.toString());
+        }
+        int shard = shardOf(fact);
+        shards[shard].addFact(fact);
+        if (fact instanceof Condition) {
+            addInterest((Condition) fact, shard);
+        }
+    }
+
+    @Override
+    public Object getFact(Object fact) {
+        return shards[shardOf(fact)].getFact(fact);
+    }
+
+    @Override
+    public void removeFact(Object fact) {
+        int shard = shardOf(fact);
+        shards[shard].removeFact(fact);
+        if (fact instanceof Condition) {
+            removeInterest((Condition) fact, shard);
+        }
+    }
+
+    @Override
+    public void addFacts(Collection facts) {
+        for (Object fact : facts) {
+            if (fact instanceof Data) {
+                throw new IllegalArgumentException(fact.toString());
+            }
+        }
+        for (Object fact : facts) {
+            addFact(fact);
+        }
+    }
+
+    @Override
+    public void removeFacts(Collection facts) {
+        for (Object fact : facts) {
+            removeFact(fact);
+        }
+    }
+
+    @Override
+    public void removeFacts(Predicate<Object> factFilter) {
+        for (RulesEngine shard : shards) {
+            shard.removeFacts(factFilter);
+        }
+        List<Condition> doomed = new ArrayList<>();
+        for (Set<Condition> triggerConditions : conditions.values()) {
+            for (Condition condition : triggerConditions) {
+                if (factFilter.test(condition)) {
+                    doomed.add(condition);
+                }
+            }
+        }
+        for (Condition condition : doomed) {
+            removeInterest(condition, shardOf(condition));
+        }
+    }
+
+    @Override
+    public void removeTrigger(String triggerId) {
+        int shard = Math.floorMod(triggerId.hashCode(), shards.length);
+        shards[shard].removeTrigger(triggerId);
+        Set<Condition> triggerConditions = conditions.get(triggerId);
+        if (null != triggerConditions) {
+            for (Condition condition : new ArrayList<>(triggerConditions)) {
+                removeInterest(condition, shard);
+            }
+        }
+    }
+
+    @Override
+    public void addData(Data data) {
+        pendingData.add(data);
+    }
+
+    @Override
+    public void addData(Collection<Data> data) {
+        pendingData.addAll(data);
+    }
+
+    @Override
+    public void addData(DataBatch batch) {
+        pendingBatch.addAll(batch);
+    }
+
+    @Override
+    public void fire() {
+        boolean[] active = new boolean[shards.length];
+        int numActive = 0;
+        int dropped = 0;
+        for (Data data : pendingData) {
+            int[] counts = interest.get(data.getId());
+            if (null == counts) {
+                dropped++;
+                continue;
+            }
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    shards[i].addData(data);
+                    if (!active[i]) {
+                        active[i] = true;
+                        numActive++;
+                    }
+                }
+            }
+        }
+        pendingData.clear();
+
+        // batch samples are routed into a new batch per shard, the shards own them after addData()
+        DataBatch[] shardBatches = new DataBatch[shards.length];
+        for (int s = 0; s < pendingBatch.size(); s++) {
+            int[] counts = interest.get(pendingBatch.getId(s));
+            if (null == counts) {
+                dropped++;
+                continue;
+            }
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    if (null == shardBatches[i]) {
+                        shardBatches[i] = new DataBatch();
+                    }
+                    shardBatches[i].add(pendingBatch, s);
+                }
+            }
+        }
+        pendingBatch.clear();
+        for (int i = 0; i < shards.length; i++) {
+            if (null != shardBatches[i]) {
+                shards[i].addData(shardBatches[i]);
+                if (!active[i]) {
+                    active[i] = true;
+                    numActive++;
+                }
+            }
+        }
+
+        if (dropped > 0) {
+            log.debugf("Dropped [%1$d] Datum(s) not referenced by any condition", dropped);
+        }
+
+        if (numActive == 0) {
+            // no data, the shards only process their due dampening deadlines, if any
+            for (RulesEngine shard : shards) {
+                shard.fire();
+            }
+        } else if (numActive == 1) {
+            for (int i = 0; i < shards.length; i++) {
+                if (active[i]) {
+                    shards[i].fire();
+                }
+            }
+        } else if (numActive > 1) {
+            List<Callable<Void>> tasks = new ArrayList<>(numActive);
+            for (int i = 0; i < shards.length; i++) {
+                if (active[i]) {
+                    final RulesEngine shard = shards[i];
+                    tasks.add(() -> {
+                        shard.fire();
+                        return null;
+                    });
+                }
+            }
+            try {
+                for (Future<Void> f : executor.invokeAll(tasks)) {
+                    f.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while firing rules", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+
+        for (List<Alert> shardAlert : shardAlerts) {
+            if (!shardAlert.isEmpty()) {
+                if (null != alerts) {
+                    alerts.addAll(shardAlert);
+                }
+                shardAlert.clear();
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (RulesEngine shard : shards) {
+            shard.clear();
+        }
+        interest.clear();
+        conditions.clear();
+        pendingData.clear();
+        pendingBatch.clear();
+    }
+
+    @Override
+    public void reset() {
+        for (RulesEngine shard : shards) {
+            shard.reset();
+        }
+        interest.clear();
+        conditions.clear();
+        pendingData.clear();
+        pendingBatch.clear();
+        for (List<Alert> shardAlert : shardAlerts) {
+            shardAlert.clear();
+        }
+    }
+}
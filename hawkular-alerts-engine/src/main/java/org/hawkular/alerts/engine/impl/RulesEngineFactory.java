@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+
+import org.hawkular.alerts.engine.rules.RulesEngine;
+
+/**
+ * Creates the RulesEngine used by the alerts service, as configured by system properties:
+ *
+ * <ul>
+ *   <li>org.hawkular.alerts.engine.RULES_ENGINE: <code>native</code> (default) for {@link NativeRulesEngineImpl} or
+ *   <code>drools</code> for the rules based engine.</li>
+ *   <li>org.hawkular.alerts.engine.PARTITIONS: number of independent engine shards fired in parallel,
+ *   1 (default) uses a single engine.</li>
+ *   <li>org.hawkular.alerts.engine.BURST: <code>true</code> to apply all the pending samples of a dataId in a single
+ *   execution of the drools rules, <code>false</code> (default) executes the rules once per sample.</li>
+ * </ul>
+ *
+ * Both engines have the same semantics. The native engine is the default as the hot path optimizations are native
+ * only: the int encoding of the ids ({@link IdDictionary}), the {@link StringLiteralMatcher} and
+ * {@link ThresholdIndex} matchers and the evaluation of identical conditions once per Data. The drools rules still
+ * join and order the Data by String id.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class RulesEngineFactory {
+
+    private RulesEngineFactory() {
+    }
+
+    public static RulesEngine newRulesEngine() {
+        return newRulesEngine(Executors.defaultThreadFactory());
+    }
+
+    /**
+     * @param threadFactory creates the worker threads of a partitioned engine
+     */
+    public static RulesEngine newRulesEngine(ThreadFactory threadFactory) {
+        int partitions = 1;
+        try {
+            partitions = new Integer(System.getProperty("org.hawkular.alerts.engine.PARTITIONS")).intValue();
+        } catch (Exception ignored) {
+        }
+
+        String type = System.getProperty("org.hawkular.alerts.engine.RULES_ENGINE", "native");
+        Supplier<RulesEngine> factory;
+        if ("drools".equalsIgnoreCase(type)) {
+            factory = DroolsRulesEngineImpl::new;
+        } else {
+            factory = NativeRulesEngineImpl::new;
+        }
+
+        if (partitions > 1) {
+            return new PartitionedRulesEngineImpl(partitions, factory, threadFactory);
+        }
+        return factory.get();
+    }
+}
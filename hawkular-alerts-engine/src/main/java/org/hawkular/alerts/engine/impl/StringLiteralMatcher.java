@@ -0,0 +1,276 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.hawkular.alerts.api.model.condition.StringCondition;
+import org.hawkular.alerts.api.model.condition.StringCondition.Operator;
+
+/**
+ * Evaluates many literal StringConditions against one value in a single pass, with an Aho-Corasick automaton of
+ * their patterns. Every occurrence of a pattern in the value is found, and its position tells whether the value
+ * equals, starts with, ends with or contains the pattern.
+ *
+ * Only EQUAL, NOT_EQUAL, STARTS_WITH, ENDS_WITH and CONTAINS conditions with a pattern are accepted, see
+ * {@link #isLiteral(StringCondition)}. The ignoreCase patterns are kept in a second automaton run over the lower case
+ * value, so the results are the same as {@link StringCondition#match(String)}.
+ *
+ * A matcher is not thread safe, the result array is reused between calls.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class StringLiteralMatcher {
+
+    private final Operator[] operators;
+    private final int[] lengths;
+    private final Automaton exact;
+    private final Automaton ignoreCase;
+    private final boolean[] matches;
+    private final boolean[] equal;
+
+    /**
+     * @param conditions literal conditions, the slot of a condition in the results is its index in the list
+     */
+    public StringLiteralMatcher(List<StringCondition> conditions) {
+        int n = conditions.size();
+        operators = new Operator[n];
+        lengths = new int[n];
+        matches = new boolean[n];
+        equal = new boolean[n];
+        Automaton.Builder exactBuilder = new Automaton.Builder();
+        Automaton.Builder ignoreCaseBuilder = new Automaton.Builder();
+        for (int slot = 0; slot < n; slot++) {
+            StringCondition condition = conditions.get(slot);
+            if (!isLiteral(condition)) {
+                throw new IllegalArgumentException("Condition must be a literal StringCondition: " + condition);
+            }
+            String pattern = condition.isIgnoreCase() ? condition.getPattern().toLowerCase() : condition.getPattern();
+            operators[slot] = condition.getOperator();
+            lengths[slot] = pattern.length();
+            (condition.isIgnoreCase() ? ignoreCaseBuilder : exactBuilder).add(pattern, slot);
+        }
+        exact = exactBuilder.build();
+        ignoreCase = ignoreCaseBuilder.build();
+    }
+
+    /**
+     * @return true if the condition can be evaluated by a matcher
+     */
+    public static boolean isLiteral(StringCondition condition) {
+        if (null == condition.getPattern() || null == condition.getOperator()) {
+            return false;
+        }
+        switch (condition.getOperator()) {
+            case EQUAL:
+            case NOT_EQUAL:
+            case STARTS_WITH:
+            case ENDS_WITH:
+            case CONTAINS:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return number of conditions
+     */
+    public int size() {
+        return operators.length;
+    }
+
+    /**
+     * @param value not null
+     * @return the match result of every condition, by slot. The array is reused by the next call.
+     */
+    public boolean[] match(String value) {
+        Arrays.fill(matches, false);
+        Arrays.fill(equal, false);
+        if (!exact.isEmpty()) {
+            scan(exact, value);
+        }
+        if (!ignoreCase.isEmpty()) {
+            scan(ignoreCase, value.toLowerCase());
+        }
+        for (int slot = 0; slot < operators.length; slot++) {
+            switch (operators[slot]) {
+                case EQUAL:
+                    matches[slot] = equal[slot];
+                    break;
+                case NOT_EQUAL:
+                    matches[slot] = !equal[slot];
+                    break;
+                default:
+                    break;
+            }
+        }
+        return matches;
+    }
+
+    private void scan(Automaton automaton, String value) {
+        int end = value.length();
+        // the empty pattern occurs at every position, the automaton only reports non empty ones
+        for (int slot : automaton.outputs[Automaton.ROOT]) {
+            occurrence(slot, 0, 0, end);
+            occurrence(slot, end, end, end);
+        }
+        int state = Automaton.ROOT;
+        for (int i = 0; i < end; i++) {
+            state = automaton.next(state, value.charAt(i));
+            for (int s = state; s != Automaton.ROOT; s = automaton.outputLink[s]) {
+                for (int slot : automaton.outputs[s]) {
+                    occurrence(slot, i + 1 - lengths[slot], i + 1, end);
+                }
+            }
+        }
+    }
+
+    private void occurrence(int slot, int from, int to, int end) {
+        switch (operators[slot]) {
+            case STARTS_WITH:
+                matches[slot] |= (0 == from);
+                break;
+            case ENDS_WITH:
+                matches[slot] |= (to == end);
+                break;
+            case CONTAINS:
+                matches[slot] = true;
+                break;
+            default:
+                // EQUAL, NOT_EQUAL
+                equal[slot] |= (0 == from && to == end);
+        }
+    }
+
+    /*
+        The goto function is stored as sorted labels and targets per state, the failure function is resolved by
+        next(). outputLink skips to the nearest suffix state with outputs, so reporting the occurrences only visits
+        states that have some.
+     */
+    private static class Automaton {
+        static final int ROOT = 0;
+        private static final int[] NONE = new int[0];
+
+        final char[][] labels;
+        final int[][] targets;
+        final int[] fail;
+        final int[] outputLink;
+        final int[][] outputs;
+
+        Automaton(char[][] labels, int[][] targets, int[] fail, int[] outputLink, int[][] outputs) {
+            this.labels = labels;
+            this.targets = targets;
+            this.fail = fail;
+            this.outputLink = outputLink;
+            this.outputs = outputs;
+        }
+
+        boolean isEmpty() {
+            return 1 == labels.length && 0 == outputs[ROOT].length;
+        }
+
+        int next(int state, char c) {
+            while (true) {
+                int i = Arrays.binarySearch(labels[state], c);
+                if (i >= 0) {
+                    return targets[state][i];
+                }
+                if (ROOT == state) {
+                    return ROOT;
+                }
+                state = fail[state];
+            }
+        }
+
+        static class Builder {
+            private final List<TreeMap<Character, Integer>> children = new ArrayList<>();
+            private final List<List<Integer>> slots = new ArrayList<>();
+
+            Builder() {
+                newState();
+            }
+
+            private int newState() {
+                children.add(new TreeMap<>());
+                slots.add(new ArrayList<>(1));
+                return children.size() - 1;
+            }
+
+            void add(String pattern, int slot) {
+                int state = ROOT;
+                for (int i = 0; i < pattern.length(); i++) {
+                    Integer target = children.get(state).get(pattern.charAt(i));
+                    if (null == target) {
+                        target = newState();
+                        children.get(state).put(pattern.charAt(i), target);
+                    }
+                    state = target;
+                }
+                slots.get(state).add(slot);
+            }
+
+            Automaton build() {
+                int n = children.size();
+                char[][] labels = new char[n][];
+                int[][] targets = new int[n][];
+                int[][] outputs = new int[n][];
+                for (int s = 0; s < n; s++) {
+                    TreeMap<Character, Integer> c = children.get(s);
+                    labels[s] = new char[c.size()];
+                    targets[s] = new int[c.size()];
+                    int i = 0;
+                    for (Map.Entry<Character, Integer> e : c.entrySet()) {
+                        labels[s][i] = e.getKey();
+                        targets[s][i] = e.getValue();
+                        i++;
+                    }
+                    List<Integer> l = slots.get(s);
+                    outputs[s] = l.isEmpty() ? NONE : l.stream().mapToInt(Integer::intValue).toArray();
+                }
+                int[] fail = new int[n];
+                int[] outputLink = new int[n];
+                Automaton automaton = new Automaton(labels, targets, fail, outputLink, outputs);
+
+                // breadth first, the failure of a state is resolved from the failure of its parent
+                ArrayDeque<Integer> queue = new ArrayDeque<>();
+                for (int t : targets[ROOT]) {
+                    fail[t] = ROOT;
+                    outputLink[t] = ROOT;
+                    queue.add(t);
+                }
+                while (!queue.isEmpty()) {
+                    int s = queue.poll();
+                    for (int i = 0; i < labels[s].length; i++) {
+                        int t = targets[s][i];
+                        int f = automaton.next(fail[s], labels[s][i]);
+                        fail[t] = f;
+                        outputLink[t] = (outputs[f].length > 0) ? f : outputLink[f];
+                        queue.add(t);
+                    }
+                }
+                return automaton;
+            }
+        }
+    }
+}
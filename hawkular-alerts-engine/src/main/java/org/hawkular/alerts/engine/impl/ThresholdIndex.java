@@ -0,0 +1,261 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeCondition;
+
+/**
+ * Evaluates many ThresholdConditions and ThresholdRangeConditions against one value with binary searches.
+ *
+ * The thresholds are kept sorted, one group per operator, so the conditions a value matches are a prefix or a suffix
+ * of their group, found with one binary search. The ranges are kept sorted by their low bound, one group for the
+ * in-range and one for the out-of-range conditions, so the ranges starting above the value are a suffix that is
+ * resolved at once, only the others check their high bound.
+ *
+ * The conditions are assigned slots in that sorted order, see {@link #slot(int)}, and {@link #match(double)} fills
+ * the results by slot. The results are the same as the match() of every condition.
+ *
+ * An index is not thread safe, the result array is reused between calls.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class ThresholdIndex {
+
+    /*
+        Groups, in slot order
+     */
+    private static final int LT = 0;
+    private static final int LTE = 1;
+    private static final int GT = 2;
+    private static final int GTE = 3;
+    private static final int IN_RANGE = 4;
+    private static final int OUT_RANGE = 5;
+
+    private final int[] slots;
+    private final int[] start = new int[OUT_RANGE + 2];
+    private final double[] thresholds;
+    private final double[] highs;
+    private final boolean[] lowInclusive;
+    private final boolean[] highInclusive;
+    private final boolean[] matches;
+
+    /**
+     * @param conditions conditions accepted by {@link #isIndexable(Condition)}
+     */
+    public ThresholdIndex(List<? extends Condition> conditions) {
+        int n = conditions.size();
+        List<List<Integer>> groups = new ArrayList<>();
+        for (int g = LT; g <= OUT_RANGE; g++) {
+            groups.add(new ArrayList<>());
+        }
+        for (int i = 0; i < n; i++) {
+            Condition condition = conditions.get(i);
+            if (!isIndexable(condition)) {
+                throw new IllegalArgumentException("Condition must be an indexable threshold condition: " + condition);
+            }
+            groups.get(group(condition)).add(i);
+        }
+        // as the primitive comparisons, -0.0 and 0.0 are the same threshold
+        Comparator<Integer> byThreshold = (a, b) -> {
+            double x = low(conditions.get(a));
+            double y = low(conditions.get(b));
+            return x < y ? -1 : (x > y ? 1 : 0);
+        };
+        // equal low bounds, the inclusive ones first so the ranges above the low bound stay a prefix
+        Comparator<Integer> byLow = byThreshold.thenComparing((a, b) -> Boolean.compare(
+                !isLowInclusive(conditions.get(a)), !isLowInclusive(conditions.get(b))));
+
+        slots = new int[n];
+        thresholds = new double[n];
+        highs = new double[n];
+        lowInclusive = new boolean[n];
+        highInclusive = new boolean[n];
+        matches = new boolean[n];
+        int slot = 0;
+        for (int g = LT; g <= OUT_RANGE; g++) {
+            List<Integer> group = groups.get(g);
+            group.sort(g < IN_RANGE ? byThreshold : byLow);
+            start[g] = slot;
+            for (int i : group) {
+                Condition condition = conditions.get(i);
+                slots[i] = slot;
+                thresholds[slot] = low(condition);
+                if (condition instanceof ThresholdRangeCondition) {
+                    ThresholdRangeCondition range = (ThresholdRangeCondition) condition;
+                    highs[slot] = range.getThresholdHigh();
+                    lowInclusive[slot] = isLowInclusive(range);
+                    highInclusive[slot] = ThresholdRangeCondition.Operator.INCLUSIVE == range.getOperatorHigh();
+                }
+                slot++;
+            }
+        }
+        start[OUT_RANGE + 1] = slot;
+    }
+
+    /**
+     * @return true if the condition can be evaluated by an index
+     */
+    public static boolean isIndexable(Condition condition) {
+        if (condition instanceof ThresholdCondition) {
+            ThresholdCondition c = (ThresholdCondition) condition;
+            return null != c.getOperator() && isNumber(c.getThreshold());
+        }
+        if (condition instanceof ThresholdRangeCondition) {
+            ThresholdRangeCondition c = (ThresholdRangeCondition) condition;
+            return null != c.getOperatorLow() && null != c.getOperatorHigh() && isNumber(c.getThresholdLow())
+                    && isNumber(c.getThresholdHigh());
+        }
+        return false;
+    }
+
+    private static boolean isNumber(Double d) {
+        return null != d && !d.isNaN();
+    }
+
+    /**
+     * @param i index of a condition in the list given to the constructor
+     * @return the slot of the condition in the results
+     */
+    public int slot(int i) {
+        return slots[i];
+    }
+
+    /**
+     * @return number of conditions
+     */
+    public int size() {
+        return slots.length;
+    }
+
+    /**
+     * @return the match result of every condition, by slot. The array is reused by the next call.
+     */
+    public boolean[] match(double value) {
+        if (Double.isNaN(value)) {
+            // no comparison holds, only the out-of-range conditions match
+            Arrays.fill(matches, false);
+            Arrays.fill(matches, start[OUT_RANGE], start[OUT_RANGE + 1], true);
+            return matches;
+        }
+        // value < t and value <= t, a suffix of the ascending thresholds
+        fill(LT, upperBound(LT, value), false);
+        fill(LTE, lowerBound(LTE, value), false);
+        // value > t and value >= t, a prefix
+        fill(GT, lowerBound(GT, value), true);
+        fill(GTE, upperBound(GTE, value), true);
+        range(IN_RANGE, value, true);
+        range(OUT_RANGE, value, false);
+        return matches;
+    }
+
+    /*
+        Slots of the group before split get prefix, the others !prefix
+     */
+    private void fill(int group, int split, boolean prefix) {
+        Arrays.fill(matches, start[group], split, prefix);
+        Arrays.fill(matches, split, start[group + 1], !prefix);
+    }
+
+    private void range(int group, double value, boolean inRange) {
+        int from = start[group];
+        int to = start[group + 1];
+        // the ranges with the value above their low bound, a prefix
+        int lo = from;
+        int hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (lowInclusive[mid] ? value >= thresholds[mid] : value > thresholds[mid]) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        for (int s = from; s < lo; s++) {
+            boolean belowHigh = highInclusive[s] ? value <= highs[s] : value < highs[s];
+            matches[s] = (belowHigh == inRange);
+        }
+        Arrays.fill(matches, lo, to, !inRange);
+    }
+
+    /*
+        First slot of the group with a threshold >= value
+     */
+    private int lowerBound(int group, double value) {
+        int lo = start[group];
+        int hi = start[group + 1];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (thresholds[mid] < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /*
+        First slot of the group with a threshold > value
+     */
+    private int upperBound(int group, double value) {
+        int lo = start[group];
+        int hi = start[group + 1];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (thresholds[mid] <= value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static int group(Condition condition) {
+        if (condition instanceof ThresholdRangeCondition) {
+            return ((ThresholdRangeCondition) condition).isInRange() ? IN_RANGE : OUT_RANGE;
+        }
+        switch (((ThresholdCondition) condition).getOperator()) {
+            case LT:
+                return LT;
+            case LTE:
+                return LTE;
+            case GT:
+                return GT;
+            default:
+                return GTE;
+        }
+    }
+
+    private static double low(Condition condition) {
+        return (condition instanceof ThresholdRangeCondition) ? ((ThresholdRangeCondition) condition).getThresholdLow()
+                : ((ThresholdCondition) condition).getThreshold();
+    }
+
+    private static boolean isLowInclusive(Condition condition) {
+        return (condition instanceof ThresholdRangeCondition)
+                && ThresholdRangeCondition.Operator.INCLUSIVE == ((ThresholdRangeCondition) condition).getOperatorLow();
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timer wheel. Timers are scheduled and cancelled in O(1), and {@link #advance(long, Consumer)} does
+ * O(1) work per elapsed tick plus the work of the expired timers.
+ *
+ * The wheel has LEVELS levels of SLOTS slots. A slot of level 0 holds the timers of one tick, a slot of level k the
+ * timers of SLOTS^k ticks. When level 0 wraps, the next slot of level 1 is cascaded into the lower levels, and so on
+ * up. Deadlines further than the wheel span are parked in the farthest slot and cascaded again until they are due.
+ *
+ * A timer never expires before its deadline, and at most one tick after it. Times are in ms, as given by the caller,
+ * so the wheel follows whatever clock the caller uses. A wheel is not thread safe.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class TimerWheel<T> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    /**
+     * A scheduled timer, the handle to cancel it.
+     */
+    public static final class Timer<T> {
+        private final T item;
+        private final long deadline;
+        private long tick;
+        private Timer<T> prev;
+        private Timer<T> next;
+        private Timer<T>[] bucket;
+        private int slot;
+
+        private Timer(T item, long deadline, long tick) {
+            this.item = item;
+            this.deadline = deadline;
+            this.tick = tick;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * @return true if the timer is scheduled, not yet expired or cancelled
+         */
+        public boolean isScheduled() {
+            return null != bucket;
+        }
+    }
+
+    private final long tickMs;
+    private final Timer<T>[][] wheel;
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickMs resolution of the wheel, in ms
+     * @param now current time, in ms
+     */
+    @SuppressWarnings("unchecked")
+    public TimerWheel(long tickMs, long now) {
+        if (tickMs < 1) {
+            throw new IllegalArgumentException("TickMs must be greater than 0");
+        }
+        this.tickMs = tickMs;
+        this.wheel = new Timer[LEVELS][SLOTS];
+        this.currentTick = now / tickMs;
+    }
+
+    /**
+     * @param item not null
+     * @param deadline time, in ms, at which the item expires
+     * @return the scheduled timer
+     */
+    public Timer<T> schedule(T item, long deadline) {
+        if (null == item) {
+            throw new IllegalArgumentException("Item must be not null");
+        }
+        // round up, so the timer never expires early. A deadline already passed expires on the next tick.
+        long tick = Math.max(currentTick + 1, (deadline + tickMs - 1) / tickMs);
+        Timer<T> timer = new Timer<>(item, deadline, tick);
+        insert(timer);
+        size++;
+        return timer;
+    }
+
+    /**
+     * @return true if the timer was scheduled and is now cancelled
+     */
+    public boolean cancel(Timer<T> timer) {
+        if (null == timer || !timer.isScheduled()) {
+            return false;
+        }
+        unlink(timer);
+        size--;
+        return true;
+    }
+
+    /**
+     * Move the wheel up to now, handing every expired item to the consumer, in deadline tick order. The consumer can
+     * schedule and cancel timers.
+     */
+    public void advance(long now, Consumer<T> expired) {
+        long targetTick = now / tickMs;
+        while (currentTick < targetTick) {
+            if (0 == size) {
+                currentTick = targetTick;
+                return;
+            }
+            currentTick++;
+            int level = 0;
+            long t = currentTick;
+            // cascade the levels above, as each lower level wraps
+            while (level < LEVELS - 1 && 0 == (t & MASK)) {
+                t >>>= SLOT_BITS;
+                level++;
+                cascade(level, (int) (t & MASK));
+            }
+            int slot = (int) (currentTick & MASK);
+            Timer<T> timer;
+            while (null != (timer = wheel[0][slot])) {
+                unlink(timer);
+                size--;
+                expired.accept(timer.item);
+            }
+        }
+    }
+
+    /**
+     * @return number of scheduled timers
+     */
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        for (Timer<T>[] level : wheel) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                for (Timer<T> timer = level[slot]; null != timer; ) {
+                    Timer<T> next = timer.next;
+                    timer.prev = null;
+                    timer.next = null;
+                    timer.bucket = null;
+                    timer = next;
+                }
+                level[slot] = null;
+            }
+        }
+        size = 0;
+    }
+
+    private void cascade(int level, int slot) {
+        Timer<T> timer = wheel[level][slot];
+        wheel[level][slot] = null;
+        while (null != timer) {
+            Timer<T> next = timer.next;
+            timer.prev = null;
+            timer.next = null;
+            timer.bucket = null;
+            insert(timer);
+            timer = next;
+        }
+    }
+
+    private void insert(Timer<T> timer) {
+        long delta = timer.tick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        int slot;
+        if (delta >= (1L << (SLOT_BITS * LEVELS))) {
+            // beyond the span of the wheel, park it in the farthest slot of the top level
+            slot = (int) (((currentTick >>> (SLOT_BITS * level)) - 1) & MASK);
+        } else {
+            slot = (int) ((timer.tick >>> (SLOT_BITS * level)) & MASK);
+        }
+        Timer<T>[] bucket = wheel[level];
+        timer.bucket = bucket;
+        timer.slot = slot;
+        timer.prev = null;
+        timer.next = bucket[slot];
+        if (null != timer.next) {
+            timer.next.prev = timer;
+        }
+        bucket[slot] = timer;
+    }
+
+    private void unlink(Timer<T> timer) {
+        if (null != timer.prev) {
+            timer.prev.next = timer.next;
+        } else {
+            timer.bucket[timer.slot] = timer.next;
+        }
+        if (null != timer.next) {
+            timer.next.prev = timer.prev;
+        }
+        timer.prev = null;
+        timer.next = null;
+        timer.bucket = null;
+    }
+}
@@ -69,5 +69,22 @@ public interface MsgLogger extends BasicLogger {
     @Message(id = 220009, value = "Definitions Service error in [%s]. Msg: [%s]")
     void errorDefinitionsService(String msg, String errorMsg);
 
+    @LogMessage(level = Logger.Level.ERROR)
+    @Message(id = 220010, value = "Error persisting [%s] alerts. Msg: [%s]")
+    void errorPersistingAlerts(int numAlerts, String errorMsg);
+
+    @LogMessage(level = Logger.Level.INFO)
+    @Message(id = 220011, value = "Database schema migrated to version [%s]: [%s]")
+    void infoSchemaMigrated(int version, String description);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 220012, value = "Shutdown timed out, [%s] alerts not persisted")
+    void warningAlertsNotPersisted(int numAlerts);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 220013, value = "Last values limit [%s] reached, CompareConditions on [%s] and later data2Ids " +
+            "only compare Data of the same round. Raise org.hawkular.alerts.engine.LAST_VALUES_MAX")
+    void warningLastValuesLimit(int maxKeys, String data2Id);
+
 
 }
@@ -20,6 +20,7 @@ import java.util.Collection;
 import java.util.function.Predicate;
 
 import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.DataBatch;
 
 /**
  * Interface that defines an abstract API with the rules engine implementation. This is for internal use by the
@@ -79,6 +80,14 @@ public interface RulesEngine {
      */
     void removeFacts(Predicate<Object> factFilter);
 
+    /**
+     * Deletes the Trigger with id <code>triggerId</code> and all of its related facts (Conditions and Dampenings,
+     * including default Dampenings) from the rules engine. Implementations keep an index by triggerId so the cost
+     * does not depend on the number of facts in the rules engine.
+     * @param triggerId
+     */
+    void removeTrigger(String triggerId);
+
     /**
      * Add to the accumulated <code>Data</code> to be processed the next time {@link #fire()} is called. After the
      * rules are fired on the accumulated <code>Data</code> it will be cleared.
@@ -93,6 +102,13 @@ public interface RulesEngine {
      */
     void addData(Collection<Data> data);
 
+    /**
+     * Add the samples of a columnar batch to the accumulated <code>Data</code>. The batch is owned by the rules
+     * engine after this call, implementations may sort it in place.
+     * @param batch
+     */
+    void addData(DataBatch batch);
+
     /**
      * Fire all rules given the current set of added definitions and the currently accumulated <Data>.
      */
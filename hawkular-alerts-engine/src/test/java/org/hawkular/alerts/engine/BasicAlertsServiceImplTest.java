@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.hawkular.alerts.api.model.data.DataBatch;
+import org.hawkular.alerts.api.model.data.NumericData;
+import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.engine.impl.BasicAlertsServiceImpl;
+import org.junit.Test;
+
+/**
+ * Basic test of the statistics of the alerts service. The service is not initialized, so no data is sent to the
+ * rules and no alert is persisted.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class BasicAlertsServiceImplTest {
+
+    @Test
+    public void ingestionStatsTest() {
+        AlertsService alerts = new BasicAlertsServiceImpl();
+        assertEquals(0, alerts.getQueueDepth());
+        // the minimum window until the rules are fired
+        assertEquals(10, alerts.getBatchWindow());
+
+        alerts.sendData(new NumericData("NumericData-01", 1, 1.0));
+        alerts.sendData(Arrays.asList(new NumericData("NumericData-01", 2, 1.0),
+                new NumericData("NumericData-02", 2, 1.0)));
+        assertEquals(3, alerts.getQueueDepth());
+
+        // a batch counts its data
+        DataBatch batch = new DataBatch();
+        batch.addNumeric("NumericData-01", 3, 1.0);
+        batch.addNumeric("NumericData-02", 3, 1.0);
+        alerts.sendData(batch);
+        assertEquals(5, alerts.getQueueDepth());
+    }
+
+    @Test
+    public void alertsStatsTest() {
+        AlertsService alerts = new BasicAlertsServiceImpl();
+        assertEquals(0, alerts.getAlertsQueueDepth());
+        // no batch of alerts persisted yet
+        assertEquals(0.0, alerts.getAlertsWriteLatency(), 0.0);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.data.NumericData;
+import org.hawkular.alerts.engine.impl.CompareValues;
+import org.junit.Test;
+
+/**
+ * Basic test of the CompareValues kept for the drools engine between executions of the rules.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class CompareValuesTest {
+
+    @Test
+    public void executionTest() {
+        CompareValues values = new CompareValues();
+        CompareCondition c = new CompareCondition("trigger-1", "NumericData-01", CompareCondition.Operator.LT, 0.5,
+                "NumericData-02");
+        values.addCondition(c);
+
+        // only data2Ids are kept
+        values.inserted(new NumericData("NumericData-01", 1, 10.0));
+        values.inserted(new NumericData("NumericData-02", 1, 30.0));
+        // not usable during the execution that inserted it
+        assertFalse(values.has("NumericData-02", 1));
+        values.executed();
+
+        assertTrue(values.has("NumericData-02", 2));
+        assertFalse(values.has("NumericData-01", 2));
+        NumericData d2 = values.get("NumericData-02");
+        assertEquals(1, d2.getTimestamp());
+        assertEquals(30.0, d2.getValue(), 0.0);
+
+        // a data2Id with Data in the execution is compared with that Data
+        values.inserted(new NumericData("NumericData-02", 3, 40.0));
+        assertFalse(values.has("NumericData-02", 3));
+        values.executed();
+        assertEquals(40.0, values.get("NumericData-02").getValue(), 0.0);
+
+        // the value is dropped with the last condition on the data2Id
+        values.removeCondition(c);
+        assertFalse(values.has("NumericData-02", 4));
+    }
+}
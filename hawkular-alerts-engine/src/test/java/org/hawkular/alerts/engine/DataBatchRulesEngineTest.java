@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import java.util.Collection;
+
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.DataBatch;
+import org.hawkular.alerts.engine.impl.NativeRulesEngineImpl;
+import org.hawkular.alerts.engine.impl.PartitionedRulesEngineImpl;
+import org.hawkular.alerts.engine.rules.RulesEngine;
+import org.junit.After;
+
+/**
+ * Run the {@link RulesEngineTest} scenarios sending the data as columnar {@link DataBatch}es to a partitioned native
+ * engine, results must be the same as with the drools engine.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class DataBatchRulesEngineTest extends RulesEngineTest {
+
+    @Override
+    protected RulesEngine createRulesEngine() {
+        return new PartitionedRulesEngineImpl(4, () -> new NativeRulesEngineImpl(clock::get)) {
+            @Override
+            public void addData(Data data) {
+                DataBatch batch = new DataBatch(1);
+                batch.add(data);
+                addData(batch);
+            }
+
+            @Override
+            public void addData(Collection<Data> data) {
+                DataBatch batch = new DataBatch(data.size());
+                batch.addAll(data);
+                addData(batch);
+            }
+        };
+    }
+
+    @After
+    public void shutdownEngine() {
+        // the shards are fired by a thread pool per engine
+        ((PartitionedRulesEngineImpl) rulesEngine).shutdown();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.engine.impl.DataInterestRegistry;
+import org.junit.Test;
+
+/**
+ * Basic test for the incremental maintenance of the DataInterestRegistry.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class DataInterestRegistryTest {
+
+    @Test
+    public void incrementalTest() {
+        DataInterestRegistry interest = new DataInterestRegistry();
+        assertFalse(interest.isNeeded("NumericData-01"));
+        assertFalse(interest.isNeeded(null));
+
+        interest.setTrigger("trigger-1", Arrays.asList(
+                new ThresholdCondition("trigger-1", "NumericData-01", ThresholdCondition.Operator.LT, 10.0)));
+        interest.setTrigger("trigger-2", Arrays.asList(
+                new CompareCondition("trigger-2", "NumericData-01", CompareCondition.Operator.LT, 1.0,
+                        "NumericData-02")));
+        assertTrue(interest.isNeeded("NumericData-01"));
+        assertTrue(interest.isNeeded("NumericData-02"));
+        assertEquals(2, interest.size());
+
+        // NumericData-01 is still referenced by trigger-2
+        interest.removeTrigger("trigger-1");
+        assertTrue(interest.isNeeded("NumericData-01"));
+
+        // replacing the conditions releases the old dataIds
+        interest.setTrigger("trigger-2", Arrays.asList(
+                new ThresholdCondition("trigger-2", "NumericData-03", ThresholdCondition.Operator.GT, 10.0)));
+        assertFalse(interest.isNeeded("NumericData-01"));
+        assertFalse(interest.isNeeded("NumericData-02"));
+        assertTrue(interest.isNeeded("NumericData-03"));
+
+        Map<String, Set<String>> all = new HashMap<>();
+        all.put("trigger-3", Collections.singleton("NumericData-04"));
+        interest.reset(all);
+        assertFalse(interest.isNeeded("NumericData-03"));
+        assertTrue(interest.isNeeded("NumericData-04"));
+
+        interest.clear();
+        assertEquals(0, interest.size());
+
+        interest.dropped(3);
+        interest.dropped(2);
+        assertEquals(5, interest.getDropped());
+    }
+}
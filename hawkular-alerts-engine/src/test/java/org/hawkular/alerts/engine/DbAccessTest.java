@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.hawkular.alerts.engine.impl.DbAccess;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A Session owning its transaction must not commit the work of a unit that failed before its commit().
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class DbAccessTest {
+
+    DbAccess db;
+
+    @Before
+    public void setup() throws Exception {
+        JdbcDataSource jdbcDataSource = new JdbcDataSource();
+        jdbcDataSource.setURL("jdbc:h2:mem:dbaccess;DB_CLOSE_DELAY=-1");
+        jdbcDataSource.setUser("sa");
+        jdbcDataSource.setPassword("sa");
+        db = new DbAccess(jdbcDataSource);
+
+        db.update("CREATE TABLE IF NOT EXISTS TEST_ROWS ( id INT PRIMARY KEY )");
+        db.update("DELETE FROM TEST_ROWS");
+    }
+
+    @Test
+    public void closeRollsBackTest() throws Exception {
+        try (DbAccess.Session s = db.open()) {
+            s.begin();
+            s.update("INSERT INTO TEST_ROWS VALUES (?)", 1);
+            throw new IllegalStateException("failed before commit");
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(0, count());
+
+        try (DbAccess.Session s = db.open()) {
+            s.begin();
+            s.update("INSERT INTO TEST_ROWS VALUES (?)", 2);
+            s.commit();
+        }
+        assertEquals(1, count());
+
+        try (DbAccess.Session s = db.open()) {
+            s.begin();
+            s.update("INSERT INTO TEST_ROWS VALUES (?)", 3);
+            s.commit();
+            // work after the commit is pending again
+            s.update("INSERT INTO TEST_ROWS VALUES (?)", 4);
+            throw new IllegalStateException("failed before commit");
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals(2, count());
+    }
+
+    private int count() throws Exception {
+        return db.queryFirst("SELECT COUNT(*) FROM TEST_ROWS", rs -> rs.getInt(1));
+    }
+}
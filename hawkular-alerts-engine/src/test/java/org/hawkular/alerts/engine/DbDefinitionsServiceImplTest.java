@@ -20,11 +20,16 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import javax.sql.DataSource;
 
@@ -33,11 +38,15 @@ import org.hawkular.alerts.api.model.condition.Alert;
 import org.hawkular.alerts.api.model.condition.Condition;
 import org.hawkular.alerts.api.model.dampening.Dampening;
 import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.DataBatch;
 import org.hawkular.alerts.api.model.trigger.Tag;
 import org.hawkular.alerts.api.model.trigger.Trigger;
 import org.hawkular.alerts.api.services.AlertsCriteria;
 import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.api.services.DataInterest;
+import org.hawkular.alerts.api.services.TriggerDefinition;
 import org.hawkular.alerts.engine.impl.DbDefinitionsServiceImpl;
+import org.hawkular.alerts.engine.impl.DbSchema;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -166,6 +175,120 @@ public class DbDefinitionsServiceImplTest {
         assertTrue(tags.toString(), tags.size() == 0);
     }
 
+    @Test
+    public void bulkLoadTest() throws Exception {
+
+        DbDefinitionsServiceImpl db = new DbDefinitionsServiceImpl(new TestAlertsService(), ds);
+        db.init();
+
+        List<TriggerDefinition> definitions = new ArrayList<>();
+        db.getAllEnabledDefinitions(2, batch -> {
+            assertTrue(batch.toString(), batch.size() <= 2);
+            definitions.addAll(batch);
+        });
+
+        int numEnabled = 0;
+        for (Trigger t : db.getAllTriggers()) {
+            if (t.isEnabled()) {
+                numEnabled++;
+            }
+        }
+        assertEquals(numEnabled, definitions.size());
+
+        for (TriggerDefinition definition : definitions) {
+            Trigger t = definition.getTrigger();
+            assertTrue(t.toString(), t.isEnabled());
+            assertEquals(t.toString(), db.getTriggerConditions(t.getId(), null).size(),
+                    definition.getConditions().size());
+            assertEquals(t.toString(), db.getTriggerDampenings(t.getId(), null).size(),
+                    definition.getDampenings().size());
+            for (Condition c : definition.getConditions()) {
+                assertEquals(c.toString(), t.getId(), c.getTriggerId());
+                assertEquals(c.toString(), c, db.getCondition(c.getConditionId()));
+            }
+        }
+    }
+
+    @Test
+    public void cacheTest() throws Exception {
+
+        DbDefinitionsServiceImpl db = new DbDefinitionsServiceImpl(new TestAlertsService(), ds);
+        db.init();
+
+        Trigger t = db.getTrigger("trigger-1");
+        assertNotNull(t);
+        long hits = db.getCacheHits();
+        long misses = db.getCacheMisses();
+
+        // a second read is served from the cache, and is a copy
+        Trigger t2 = db.getTrigger("trigger-1");
+        assertEquals(t, t2);
+        assertTrue(t != t2);
+        assertEquals(hits + 1, db.getCacheHits());
+        assertEquals(misses, db.getCacheMisses());
+
+        // an update invalidates the cached trigger
+        t2.setDescription("cacheTest");
+        db.updateTrigger(t2);
+        assertEquals("cacheTest", db.getTrigger("trigger-1").getDescription());
+        assertEquals(misses + 1, db.getCacheMisses());
+
+        // a condition change invalidates the conditions and the dataId tags
+        Collection<Condition> cs = db.getTriggerConditions("trigger-1", null);
+        assertTrue(cs.toString(), cs.size() == 1);
+        Condition c = cs.iterator().next();
+        assertEquals(c, db.getCondition(c.getConditionId()));
+        Trigger.Mode mode = c.getTriggerMode();
+        Collection<Condition> empty = db.setConditions("trigger-1", mode, new ArrayList<>());
+        assertTrue(empty.isEmpty());
+        assertTrue(db.getTriggerConditions("trigger-1", mode).isEmpty());
+        assertEquals(null, db.getCondition(c.getConditionId()));
+        assertTrue(db.getTriggerTags("trigger-1", "dataId").isEmpty());
+
+        db.setConditions("trigger-1", mode, cs);
+        assertEquals(1, db.getTriggerConditions("trigger-1", null).size());
+        assertEquals(1, db.getTriggerTags("trigger-1", "dataId").size());
+        assertTrue(db.getCacheSize() > 0);
+    }
+
+    @Test
+    public void schemaTest() throws Exception {
+
+        DbDefinitionsServiceImpl db = new DbDefinitionsServiceImpl(new TestAlertsService(), ds);
+        db.init();
+
+        try (Connection c = ds.getConnection()) {
+            assertEquals(DbSchema.VERSION, DbSchema.getVersion(c));
+            // re-running the migration is a no-op
+            assertEquals(DbSchema.VERSION, DbSchema.migrate(c));
+
+            assertPlan(c, "HWK_ALERTS_CONDITIONS_TRIGGER",
+                    "SELECT payload FROM HWK_ALERTS_CONDITIONS WHERE triggerId = 'trigger-1'");
+            assertPlan(c, "HWK_ALERTS_CONDITIONS_TRIGGER",
+                    "DELETE FROM HWK_ALERTS_CONDITIONS WHERE triggerId = 'trigger-1' AND triggerMode = '"
+                            + Trigger.Mode.FIRE.name() + "'");
+            assertPlan(c, "HWK_ALERTS_DAMPENINGS_TRIGGER",
+                    "SELECT payload FROM HWK_ALERTS_DAMPENINGS WHERE triggerId = 'trigger-1'");
+            assertPlan(c, "HWK_ALERTS_ACTIONS_PLUGIN",
+                    "SELECT actionId FROM HWK_ALERTS_ACTIONS WHERE actionPlugin = 'email' ORDER BY actionId");
+            assertPlan(c, "HWK_ALERTS_ALERTS_CTIME",
+                    "SELECT a.payload FROM HWK_ALERTS_ALERTS a WHERE ( a.ctime >= 1000 ) AND ( a.ctime <= 2000 ) "
+                            + "ORDER BY a.ctime, a.triggerId");
+            assertPlan(c, "HWK_ALERTS_TAGS_NAME",
+                    "SELECT triggerId FROM HWK_ALERTS_TAGS t WHERE t.category = 'dataId' "
+                            + "AND t.name = 'NumericData-01'");
+        }
+    }
+
+    private void assertPlan(Connection c, String index, String sql) throws Exception {
+        try (Statement s = c.createStatement();
+             ResultSet rs = s.executeQuery("EXPLAIN " + sql)) {
+            assertTrue(sql, rs.next());
+            String plan = rs.getString(1);
+            assertTrue(plan, plan.contains(index));
+        }
+    }
+
     private static class TestAlertsService implements AlertsService {
 
         @Override
@@ -180,11 +303,26 @@ public class DbDefinitionsServiceImplTest {
 
         }
 
+        @Override
+        public void sendData(DataBatch batch) {
+            // TODO Auto-generated method stub
+
+        }
+
         @Override
         public List<Alert> getAlerts(AlertsCriteria criteria) {
             return Collections.EMPTY_LIST;
         }
 
+        @Override
+        public void getAlerts(AlertsCriteria criteria, Consumer<Alert> consumer) {
+        }
+
+        @Override
+        public DataInterest getDataInterest() {
+            return null;
+        }
+
         @Override
         public void clear() {
             // TODO Auto-generated method stub
@@ -209,5 +347,25 @@ public class DbDefinitionsServiceImplTest {
 
         }
 
+        @Override
+        public long getBatchWindow() {
+            return 0;
+        }
+
+        @Override
+        public int getQueueDepth() {
+            return 0;
+        }
+
+        @Override
+        public int getAlertsQueueDepth() {
+            return 0;
+        }
+
+        @Override
+        public double getAlertsWriteLatency() {
+            return 0;
+        }
+
     }
 }
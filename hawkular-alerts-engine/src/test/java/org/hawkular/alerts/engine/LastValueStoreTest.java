@@ -0,0 +1,64 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.hawkular.alerts.engine.impl.LastValueStore;
+import org.junit.Test;
+
+/**
+ * Basic test of the LastValueStore bounds and staleness.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class LastValueStoreTest {
+
+    @Test
+    public void storeTest() {
+        LastValueStore store = new LastValueStore(100, 1000);
+        assertFalse(store.has(5, 0));
+
+        assertTrue(store.put(5, 2000, 1.0));
+        // an older value does not replace a newer one
+        assertFalse(store.put(5, 1500, 2.0));
+        assertTrue(store.has(5, 2500));
+        assertEquals(2000, store.getTimestamp(5));
+        assertEquals(1.0, store.getValue(5), 0.0);
+
+        // stale, too far apart
+        assertFalse(store.has(5, 3001));
+        assertFalse(store.has(5, 999));
+
+        // out of bounds keys are not stored
+        assertEquals(100, store.getMaxKeys());
+        assertFalse(store.put(100, 2000, 1.0));
+        assertFalse(store.has(100, 2000));
+        assertEquals(1, store.size());
+
+        store.remove(5);
+        assertFalse(store.has(5, 2000));
+        assertEquals(0, store.size());
+
+        store.put(7, 1, 1.0);
+        store.clear();
+        assertFalse(store.has(7, 1));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.hawkular.alerts.engine.impl.LruCache;
+import org.junit.Test;
+
+/**
+ * Group invalidation of the LruCache, also for entries replaced or evicted.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class LruCacheTest {
+
+    @Test
+    public void groupTest() {
+        // conditionId -> [triggerId, payload]
+        LruCache<String, String[]> cache = new LruCache<>(3, row -> row[0]);
+        cache.put("trigger-1-FIRE-1-1", new String[] { "trigger-1", "a" }, cache.stamp());
+        cache.put("trigger-1-FIRE-1-2", new String[] { "trigger-1", "b" }, cache.stamp());
+        cache.put("trigger-2-FIRE-1-1", new String[] { "trigger-2", "c" }, cache.stamp());
+
+        cache.invalidateGroup("trigger-1");
+        assertNull(cache.get("trigger-1-FIRE-1-1"));
+        assertNull(cache.get("trigger-1-FIRE-1-2"));
+        assertNotNull(cache.get("trigger-2-FIRE-1-1"));
+        assertEquals(1, cache.size());
+
+        // a load overlapping the invalidation is not cached
+        long stamp = cache.stamp();
+        cache.invalidateGroup("trigger-3");
+        cache.put("trigger-3-FIRE-1-1", new String[] { "trigger-3", "d" }, stamp);
+        assertNull(cache.get("trigger-3-FIRE-1-1"));
+
+        // evicted entries leave their group
+        for (int i = 0; i < 10; i++) {
+            cache.put("trigger-4-FIRE-1-" + i, new String[] { "trigger-4", "e" }, cache.stamp());
+        }
+        assertEquals(3, cache.size());
+        cache.invalidateGroup("trigger-4");
+        assertEquals(0, cache.size());
+
+        // a replaced entry moves to its new group
+        cache.put("x", new String[] { "trigger-5", "f" }, cache.stamp());
+        cache.put("x", new String[] { "trigger-6", "g" }, cache.stamp());
+        cache.invalidateGroup("trigger-5");
+        assertNotNull(cache.get("x"));
+        cache.invalidateGroup("trigger-6");
+        assertNull(cache.get("x"));
+    }
+}
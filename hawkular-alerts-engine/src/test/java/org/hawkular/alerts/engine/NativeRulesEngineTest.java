@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import java.util.Set;
+
+import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.api.model.condition.AvailabilityCondition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.data.Availability;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Availability.AvailabilityType;
+import org.hawkular.alerts.api.model.data.NumericData;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.NativeRulesEngineImpl;
+import org.hawkular.alerts.engine.rules.RulesEngine;
+import org.junit.Test;
+
+/**
+ * Run the {@link RulesEngineTest} scenarios against the native engine, results must be the same as with the
+ * drools engine.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class NativeRulesEngineTest extends RulesEngineTest {
+
+    @Override
+    protected RulesEngine createRulesEngine() {
+        return new NativeRulesEngineImpl(clock::get);
+    }
+
+    @Test
+    public void sharedEvaluationTest() {
+        // three copies of the same condition, evaluated once per Data
+        for (int i = 1; i <= 3; i++) {
+            Trigger t = new Trigger("trigger-" + i, "Avail-DOWN");
+            t.setEnabled(true);
+            rulesEngine.addFact(t);
+            rulesEngine.addFact(new AvailabilityCondition("trigger-" + i, "AvailData-01",
+                    AvailabilityCondition.Operator.DOWN));
+        }
+
+        datums.add(new Availability("AvailData-01", 1, AvailabilityType.UP));
+        datums.add(new Availability("AvailData-01", 2, AvailabilityType.DOWN));
+
+        rulesEngine.addData(datums);
+        rulesEngine.fire();
+
+        assert alerts.size() == 3 : alerts;
+        NativeRulesEngineImpl engine = (NativeRulesEngineImpl) rulesEngine;
+        assert engine.getEvaluations() == 2 : engine.getEvaluations();
+        assert engine.getSharedEvaluations() == 4 : engine.getSharedEvaluations();
+    }
+
+    @Test
+    public void clearReclaimsKeysTest() {
+        Trigger t1 = new Trigger("trigger-1", "NumericData-01-GT-10");
+        t1.setEnabled(true);
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(new ThresholdCondition("trigger-1", "NumericData-01", ThresholdCondition.Operator.GT,
+                10.0));
+
+        // after a clear the new ids take the keys of the old ones, the old ids must not match anymore
+        rulesEngine.clear();
+        Trigger t2 = new Trigger("trigger-2", "NumericData-02-GT-10");
+        t2.setEnabled(true);
+        rulesEngine.addFact(t2);
+        rulesEngine.addFact(new ThresholdCondition("trigger-2", "NumericData-02", ThresholdCondition.Operator.GT,
+                10.0));
+
+        datums.add(new NumericData("NumericData-01", 1, 20.0));
+        datums.add(new NumericData("NumericData-02", 1, 20.0));
+        rulesEngine.addData(datums);
+        rulesEngine.fire();
+
+        assert alerts.size() == 1 : alerts;
+        assert alerts.get(0).getTriggerId().equals("trigger-2") : alerts;
+    }
+
+    @Test
+    public void satisfyingEvalsRetentionTest() {
+        Trigger t1 = new Trigger("trigger-1", "Avail-DOWN-10-of-10");
+        t1.setEnabled(true);
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(new AvailabilityCondition("trigger-1", "AvailData-01",
+                AvailabilityCondition.Operator.DOWN));
+        Dampening d1 = Dampening.forRelaxedCount("trigger-1", Trigger.Mode.FIRE, 10, 10);
+        d1.setSatisfyingEvalsRetention(2);
+        rulesEngine.addFact(d1);
+
+        for (int i = 1; i <= 10; i++) {
+            datums.add(new Availability("AvailData-01", i, AvailabilityType.DOWN));
+        }
+        rulesEngine.addData(datums);
+        rulesEngine.fire();
+
+        // the first 2 and the last 2 evals, the 6 between are only counted
+        assert alerts.size() == 1 : alerts;
+        Alert a = alerts.get(0);
+        assert a.getOmittedEvalSets() == 6 : a;
+        long[] expected = { 1, 2, 9, 10 };
+        assert a.getEvalSets().size() == expected.length : a;
+        for (int i = 0; i < expected.length; i++) {
+            Set<ConditionEval> evals = a.getEvalSets().get(i);
+            assert evals.iterator().next().getDataTimestamp() == expected[i] : a;
+        }
+    }
+}
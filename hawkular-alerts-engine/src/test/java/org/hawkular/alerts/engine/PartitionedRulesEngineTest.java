@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import org.hawkular.alerts.engine.impl.DroolsRulesEngineImpl;
+import org.hawkular.alerts.engine.impl.PartitionedRulesEngineImpl;
+import org.hawkular.alerts.engine.rules.RulesEngine;
+import org.junit.After;
+
+/**
+ * Run the {@link RulesEngineTest} scenarios against a partitioned engine, results must be the same as with a
+ * single session.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class PartitionedRulesEngineTest extends RulesEngineTest {
+
+    @Override
+    protected RulesEngine createRulesEngine() {
+        return new PartitionedRulesEngineImpl(4, () -> new DroolsRulesEngineImpl(clock::get));
+    }
+
+    @After
+    public void shutdownEngine() {
+        // the shards are fired by a thread pool per engine
+        ((PartitionedRulesEngineImpl) rulesEngine).shutdown();
+    }
+}
@@ -22,6 +22,7 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -62,10 +63,16 @@ import org.jboss.logging.Logger;
 public class RulesEngineTest {
     private static final Logger log = Logger.getLogger(RulesEngineTest.class);
 
-    RulesEngine rulesEngine = new DroolsRulesEngineImpl();
+    // the engines read the time from this clock, the time based tests advance it
+    AtomicLong clock = new AtomicLong(1000000L);
+    RulesEngine rulesEngine = createRulesEngine();
     List<Alert> alerts = new ArrayList();
     Set<Data> datums = new HashSet<Data>();
 
+    protected RulesEngine createRulesEngine() {
+        return new DroolsRulesEngineImpl(clock::get);
+    }
+
     @Before
     public void before() {
         rulesEngine.addGlobal("log", log);
@@ -508,6 +515,30 @@ public class RulesEngineTest {
                 .getCondition();
     }
 
+    @Test
+    public void compareAcrossFiresTest() {
+        // NumericData-01 < 0.5 * NumericData-02
+        Trigger t1 = new Trigger("trigger-1", "Compare-D1-LT-Half-D2");
+        t1.setEnabled(true);
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(new CompareCondition("trigger-1", "NumericData-01", CompareCondition.Operator.LT, 0.5,
+                "NumericData-02"));
+
+        // only the data2Id, nothing to compare yet
+        rulesEngine.addData(new NumericData("NumericData-02", 1, 30.0));
+        rulesEngine.fire();
+        assert alerts.isEmpty() : alerts;
+
+        // compared with the last value of NumericData-02, received in the previous fire()
+        rulesEngine.addData(new NumericData("NumericData-01", 2, 10.0));
+        rulesEngine.fire();
+        assert alerts.size() == 1 : alerts;
+        CompareConditionEval e = (CompareConditionEval) alerts.get(0).getEvalSets().get(0).iterator().next();
+        assert e.getValue1().equals(10.0D) : e;
+        assert e.getValue2().equals(30.0D) : e;
+        assert e.getDataTimestamp() == 2 : e;
+    }
+
     @Test
     public void StringTest() {
         // StringData-01 Triggers
@@ -1031,10 +1062,7 @@ public class RulesEngineTest {
 
         assert alerts.size() == 0 : alerts;
 
-        try {
-            Thread.sleep(750L);
-        } catch (InterruptedException e1) {
-        }
+        clock.addAndGet(750L);
 
         datums.clear();
         datums.add(new Availability("AvailData-01", 2, AvailabilityType.DOWN));
@@ -1081,17 +1109,19 @@ public class RulesEngineTest {
         rulesEngine.addFact(t1c1);
         rulesEngine.addFact(t1d);
 
-        long start = System.currentTimeMillis();
+        long start = clock.get();
         int i = 0;
-        while ((alerts.size() == 0) && ((System.currentTimeMillis() - start) < 500)) {
+        while ((alerts.size() == 0) && ((clock.get() - start) < 500)) {
             rulesEngine.addData(new Availability("AvailData-01", ++i, AvailabilityType.DOWN));
             rulesEngine.fire();
+            clock.addAndGet(50L);
         }
 
         assert alerts.size() == 1 : alerts;
+        // the alert is fired by the first DOWN at or after 250ms, at 250ms
+        assert i == 6 : i;
 
         Alert a = alerts.get(0);
-        assert (alerts.get(0).getCTime() - start) >= 250 : (alerts.get(0).getCTime() - start);
         assert a.getTriggerId().equals("trigger-1") : a.getTriggerId();
         assert a.getEvalSets().size() >= 2 : a.getEvalSets().size();
         for (Set<ConditionEval> evalSet : a.getEvalSets()) {
@@ -1108,6 +1138,71 @@ public class RulesEngineTest {
         }
     }
 
+    @Test
+    public void DampeningStrictTimeWithoutDataTest() {
+        Trigger t1 = new Trigger("trigger-1", "Avail-DOWN");
+        AvailabilityCondition t1c1 = new AvailabilityCondition("trigger-1", 1, 1,
+                "AvailData-01", AvailabilityCondition.Operator.DOWN);
+
+        Dampening t1d = Dampening.forStrictTime("trigger-1", Mode.FIRE, 250L);
+
+        t1.setEnabled(true);
+
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+        rulesEngine.addFact(t1d);
+
+        rulesEngine.addData(new Availability("AvailData-01", 1, AvailabilityType.DOWN));
+        rulesEngine.fire();
+
+        assert alerts.size() == 0 : alerts;
+
+        // no more data, the dampening is satisfied by the passing of time when the engine is fired idle
+        clock.addAndGet(500L);
+        rulesEngine.fire();
+
+        assert alerts.size() == 1 : alerts;
+        Alert a = alerts.get(0);
+        assert a.getTriggerId().equals("trigger-1") : a.getTriggerId();
+        assert a.getEvalSets().size() == 1 : a.getEvalSets();
+    }
+
+    @Test
+    public void DampeningStrictTimeDeadlineTest() {
+        // down for at least 10s
+        Trigger t1 = new Trigger("trigger-1", "Avail-DOWN-10s");
+        t1.setEnabled(true);
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(new AvailabilityCondition("trigger-1", "AvailData-01",
+                AvailabilityCondition.Operator.DOWN));
+        rulesEngine.addFact(Dampening.forStrictTime("trigger-1", Trigger.Mode.FIRE, 10000L));
+
+        rulesEngine.addData(new Availability("AvailData-01", 1, AvailabilityType.DOWN));
+        rulesEngine.fire();
+        assert alerts.isEmpty() : alerts;
+
+        // the data stops, the deadline is not reached yet
+        clock.addAndGet(9000L);
+        rulesEngine.fire();
+        assert alerts.isEmpty() : alerts;
+
+        clock.addAndGet(1200L);
+        rulesEngine.fire();
+        assert alerts.size() == 1 : alerts;
+        assert alerts.get(0).getTriggerId().equals("trigger-1");
+
+        // an UP resets the dampening, its deadline is cancelled
+        alerts.clear();
+        rulesEngine.addData(new Availability("AvailData-01", 2, AvailabilityType.DOWN));
+        rulesEngine.fire();
+        clock.addAndGet(5000L);
+        rulesEngine.addData(new Availability("AvailData-01", 3, AvailabilityType.UP));
+        rulesEngine.fire();
+        clock.addAndGet(20000L);
+        rulesEngine.fire();
+        assert alerts.isEmpty() : alerts;
+    }
+
     @Test
     public void multiConditionTest() {
         Trigger t1 = new Trigger("trigger-1", "Two-Conditions");
@@ -1261,6 +1356,43 @@ public class RulesEngineTest {
         assert t1.getMode() == Mode.FIRE : t1;
     }
 
+    @Test
+    public void removeTriggerTest() {
+        Trigger t1 = new Trigger("trigger-1", "Avail-DOWN");
+        AvailabilityCondition t1c1 = new AvailabilityCondition("trigger-1", 1, 1,
+                "AvailData-01", AvailabilityCondition.Operator.DOWN);
+        Dampening t1d = Dampening.forStrict("trigger-1", Mode.FIRE, 1);
+
+        Trigger t2 = new Trigger("trigger-2", "Avail-DOWN");
+        AvailabilityCondition t2c1 = new AvailabilityCondition("trigger-2", 1, 1,
+                "AvailData-01", AvailabilityCondition.Operator.DOWN);
+
+        t1.setEnabled(true);
+        t2.setEnabled(true);
+
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+        rulesEngine.addFact(t1d);
+        rulesEngine.addFact(t2);
+        rulesEngine.addFact(t2c1);
+
+        rulesEngine.removeTrigger("trigger-1");
+
+        assert rulesEngine.getFact(t1) == null;
+        assert rulesEngine.getFact(t1c1) == null;
+        assert rulesEngine.getFact(t1d) == null;
+        assert rulesEngine.getFact(t2) != null;
+        assert rulesEngine.getFact(t2c1) != null;
+
+        datums.add(new Availability("AvailData-01", 1, AvailabilityType.DOWN));
+
+        rulesEngine.addData(datums);
+        rulesEngine.fire();
+
+        assert alerts.size() == 1 : alerts;
+        assert alerts.get(0).getTriggerId().equals("trigger-2") : alerts.get(0);
+    }
+
     @Test
     public void checkEqualityInRulesEngine() throws Exception {
 
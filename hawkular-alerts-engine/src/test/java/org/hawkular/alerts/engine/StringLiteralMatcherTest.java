@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.hawkular.alerts.api.model.condition.StringCondition;
+import org.hawkular.alerts.api.model.condition.StringCondition.Operator;
+import org.hawkular.alerts.engine.impl.StringLiteralMatcher;
+import org.junit.Test;
+
+/**
+ * The StringLiteralMatcher must give the same results than StringCondition.match().
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class StringLiteralMatcherTest {
+
+    private static final Operator[] LITERALS = { Operator.EQUAL, Operator.NOT_EQUAL, Operator.STARTS_WITH,
+            Operator.ENDS_WITH, Operator.CONTAINS };
+
+    @Test
+    public void matchTest() {
+        Random random = new Random(42);
+        List<StringCondition> conditions = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            conditions.add(new StringCondition("trigger-" + i, "StringData-01", LITERALS[i % LITERALS.length],
+                    randomString(random, 4), random.nextBoolean()));
+        }
+        conditions.add(new StringCondition("trigger-empty", "StringData-01", Operator.ENDS_WITH, "", false));
+        conditions.add(new StringCondition("trigger-equal", "StringData-01", Operator.EQUAL, "", true));
+        StringLiteralMatcher matcher = new StringLiteralMatcher(conditions);
+        assertEquals(conditions.size(), matcher.size());
+
+        for (int v = 0; v < 2000; v++) {
+            String value = randomString(random, 8);
+            boolean[] matches = matcher.match(value);
+            for (int i = 0; i < conditions.size(); i++) {
+                assertEquals(conditions.get(i) + " on " + value, conditions.get(i).match(value), matches[i]);
+            }
+        }
+    }
+
+    @Test
+    public void ignoreCaseTest() {
+        StringCondition condition = new StringCondition("trigger-1", "StringData-01", Operator.STARTS_WITH, "ERROR",
+                true);
+        assertTrue(condition.match("error: disk full"));
+        // the pattern is no longer lower cased in place
+        assertEquals("ERROR", condition.getPattern());
+
+        condition.setOperator(Operator.MATCH);
+        condition.setPattern("ERR.*FULL");
+        assertTrue(condition.match("error: disk full"));
+        condition.setIgnoreCase(false);
+        assertFalse(condition.match("error: disk full"));
+
+        assertFalse(StringLiteralMatcher.isLiteral(condition));
+    }
+
+    private static String randomString(Random random, int maxLength) {
+        // a small alphabet, so patterns occur and overlap
+        char[] alphabet = { 'a', 'b', 'A', 'B', 'c' };
+        char[] chars = new char[random.nextInt(maxLength + 1)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = alphabet[random.nextInt(alphabet.length)];
+        }
+        return new String(chars);
+    }
+}
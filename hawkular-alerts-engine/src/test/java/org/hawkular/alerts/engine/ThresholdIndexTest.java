@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeCondition;
+import org.hawkular.alerts.engine.impl.ThresholdIndex;
+import org.junit.Test;
+
+/**
+ * The ThresholdIndex must give the same results than the match() of every condition.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class ThresholdIndexTest {
+
+    @Test
+    public void matchTest() {
+        Random random = new Random(42);
+        List<Condition> conditions = new ArrayList<>();
+        ThresholdCondition.Operator[] operators = ThresholdCondition.Operator.values();
+        ThresholdRangeCondition.Operator[] rangeOperators = ThresholdRangeCondition.Operator.values();
+        for (int i = 0; i < 400; i++) {
+            String triggerId = "trigger-" + i;
+            if (i % 2 == 0) {
+                conditions.add(new ThresholdCondition(triggerId, "NumericData-01", operators[random.nextInt(4)],
+                        (double) random.nextInt(20)));
+            } else {
+                double low = random.nextInt(20);
+                conditions.add(new ThresholdRangeCondition(triggerId, "NumericData-01",
+                        rangeOperators[random.nextInt(2)], rangeOperators[random.nextInt(2)], low,
+                        low + random.nextInt(5), random.nextBoolean()));
+            }
+        }
+        // same value, both signs of zero
+        conditions.add(new ThresholdRangeCondition("trigger-z1", "NumericData-01",
+                ThresholdRangeCondition.Operator.EXCLUSIVE, ThresholdRangeCondition.Operator.INCLUSIVE, -0.0, 1.0,
+                true));
+        conditions.add(new ThresholdRangeCondition("trigger-z2", "NumericData-01",
+                ThresholdRangeCondition.Operator.INCLUSIVE, ThresholdRangeCondition.Operator.INCLUSIVE, 0.0, 1.0,
+                true));
+        ThresholdIndex index = new ThresholdIndex(conditions);
+        assertEquals(conditions.size(), index.size());
+
+        double[] values = { Double.NaN, -0.0, 0.0, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY };
+        for (int v = 0; v < 1000 + values.length; v++) {
+            // integers and halves, so values hit the thresholds exactly
+            double value = v < values.length ? values[v] : (random.nextInt(50) - 5) / 2.0;
+            boolean[] matches = index.match(value);
+            for (int i = 0; i < conditions.size(); i++) {
+                Condition c = conditions.get(i);
+                boolean expected = (c instanceof ThresholdCondition) ? ((ThresholdCondition) c).match(value)
+                        : ((ThresholdRangeCondition) c).match(value);
+                assertEquals(c + " on " + value, expected, matches[index.slot(i)]);
+            }
+        }
+    }
+
+    @Test
+    public void indexableTest() {
+        assertFalse(ThresholdIndex.isIndexable(new ThresholdCondition("trigger-1", "NumericData-01",
+                ThresholdCondition.Operator.LT, Double.NaN)));
+        assertFalse(ThresholdIndex.isIndexable(new ThresholdCondition("trigger-1", "NumericData-01",
+                ThresholdCondition.Operator.LT, null)));
+    }
+}
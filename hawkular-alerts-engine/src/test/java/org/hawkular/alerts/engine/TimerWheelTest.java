@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.hawkular.alerts.engine.impl.TimerWheel;
+import org.junit.Test;
+
+/**
+ * Timers of a TimerWheel must expire not before their deadline and at most one tick after it.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class TimerWheelTest {
+
+    @Test
+    public void expireTest() {
+        long tick = 10;
+        long now = 123456789L;
+        TimerWheel<Integer> wheel = new TimerWheel<>(tick, now);
+        Random random = new Random(42);
+
+        Map<Integer, TimerWheel.Timer<Integer>> scheduled = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            // up to beyond the span of the wheel, 64^4 ticks
+            long delay = (i % 10 == 0) ? (long) (random.nextDouble() * 40000000L * tick) : random.nextInt(100000);
+            scheduled.put(i, wheel.schedule(i, now + delay));
+        }
+        List<Integer> cancelled = new ArrayList<>();
+        for (int i = 0; i < 5000; i += 7) {
+            assertTrue(wheel.cancel(scheduled.get(i)));
+            assertFalse(wheel.cancel(scheduled.get(i)));
+            cancelled.add(i);
+        }
+        assertEquals(5000 - cancelled.size(), wheel.size());
+
+        List<Integer> expired = new ArrayList<>();
+        while (wheel.size() > 0) {
+            long step = random.nextInt(5) == 0 ? random.nextInt(1000000) * tick : random.nextInt(50);
+            now += step;
+            final long at = now;
+            wheel.advance(now, i -> {
+                long deadline = scheduled.get(i).getDeadline();
+                assertTrue("early " + i, deadline <= at);
+                expired.add(i);
+            });
+            // nothing left behind
+            for (TimerWheel.Timer<Integer> timer : scheduled.values()) {
+                if (timer.isScheduled()) {
+                    assertTrue("late " + timer.getItem(), timer.getDeadline() > now - tick);
+                }
+            }
+        }
+        assertEquals(5000 - cancelled.size(), expired.size());
+        for (int i : cancelled) {
+            assertFalse(expired.contains(i));
+        }
+    }
+}
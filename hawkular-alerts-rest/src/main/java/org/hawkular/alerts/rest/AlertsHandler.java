@@ -19,6 +19,9 @@ package org.hawkular.alerts.rest;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -26,23 +29,37 @@ import java.util.List;
 import java.util.Map;
 
 import javax.ejb.EJB;
+import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.Providers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.wordnik.swagger.annotations.Api;
 import com.wordnik.swagger.annotations.ApiOperation;
 import com.wordnik.swagger.annotations.ApiParam;
 
 import org.hawkular.alerts.api.model.condition.Alert;
+import org.hawkular.alerts.api.model.data.Availability.AvailabilityType;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.data.DataBatch;
 import org.hawkular.alerts.api.model.trigger.Tag;
 import org.hawkular.alerts.api.services.AlertsCriteria;
 import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.api.services.DataInterest;
 import org.hawkular.alerts.rest.log.MsgLogger;
 
 import org.jboss.logging.Logger;
@@ -59,6 +76,14 @@ public class AlertsHandler {
     private final MsgLogger msgLog = MsgLogger.LOGGER;
     private final Logger log = Logger.getLogger(AlertsHandler.class);
 
+    /*
+        Response header with the cursor of the next page, as "cTime|triggerId", when the page is full
+     */
+    public static final String NEXT_CURSOR = "X-Next-Cursor";
+
+    @Context
+    Providers providers;
+
     public AlertsHandler() {
         log.debugf("Creating instance.");
     }
@@ -72,7 +97,9 @@ public class AlertsHandler {
     @ApiOperation(value = "Get alerts with optional filtering",
             responseContainer = "Collection<Alert>",
             response = Alert.class,
-            notes = "Pagination is not yet implemented.")
+            notes = "Alerts are ordered by (ctime, triggerId). When pageSize is set and the page is full, the " +
+                    "X-Next-Cursor response header holds the cursor to fetch the next page, an empty page is " +
+                    "204. Without pageSize all the alerts are streamed with a 200, as [] when there are none.")
     public void findAlerts(
             @Suspended
             final AsyncResponse response,
@@ -89,7 +116,14 @@ public class AlertsHandler {
             @ApiParam(required = false, value = "filter out alerts for unspecified tags, comma separated list of tags, "
                     + "each tag of format [category|]name")
             @QueryParam("tags")
-            String tags) {
+            String tags,
+            @ApiParam(required = false, value = "max number of alerts to return")
+            @QueryParam("pageSize")
+            Integer pageSize,
+            @ApiParam(required = false, value = "return alerts after this cursor, as returned in the X-Next-Cursor "
+                    + "header of the previous page")
+            @QueryParam("cursor")
+            String cursor) {
 
         try {
             AlertsCriteria criteria = new AlertsCriteria();
@@ -107,16 +141,113 @@ public class AlertsHandler {
                 }
                 criteria.setTags(tagList);
             }
+            if (null != cursor && !cursor.trim().isEmpty()) {
+                int separator = cursor.indexOf('|');
+                Long cTime = null;
+                try {
+                    cTime = separator > 0 ? Long.valueOf(cursor.substring(0, separator)) : null;
+                } catch (NumberFormatException ignored) {
+                }
+                if (null == cTime) {
+                    Map<String, String> errors = new HashMap<String, String>();
+                    errors.put("errorMsg", "Invalid cursor: " + cursor);
+                    response.resume(Response.status(Response.Status.BAD_REQUEST)
+                            .entity(errors).type(APPLICATION_JSON_TYPE).build());
+                    return;
+                }
+                criteria.setCursor(cTime, cursor.substring(separator + 1));
+            }
 
-            List<Alert> alertList = alerts.getAlerts(criteria);
+            if (null == pageSize || pageSize <= 0) {
+                // the status is sent before the single query runs, so no alerts is a 200 with an empty array
+                log.debugf("GET - findAllAlerts - streaming");
+                response.resume(Response.status(Response.Status.OK).entity(streamAlerts(criteria))
+                        .type(APPLICATION_JSON_TYPE).build());
+                return;
+            }
+
+            criteria.setPageSize(pageSize);
+            List<Alert> alertList = new ArrayList<>(Math.min(pageSize, 1000));
+            alerts.getAlerts(criteria, alertList::add);
             if (alertList.isEmpty()) {
                 log.debugf("GET - findAllAlerts - Empty");
                 response.resume(Response.status(Response.Status.NO_CONTENT).type(APPLICATION_JSON_TYPE).build());
             } else {
                 log.debugf("GET - findAllAlerts - %s alerts", alertList.size());
-                response.resume(Response.status(Response.Status.OK).entity(alertList).type(APPLICATION_JSON_TYPE)
-                        .build());
+                Response.ResponseBuilder builder = Response.status(Response.Status.OK).entity(alertList)
+                        .type(APPLICATION_JSON_TYPE);
+                if (alertList.size() == pageSize) {
+                    Alert last = alertList.get(alertList.size() - 1);
+                    builder.header(NEXT_CURSOR, last.getCTime() + "|" + last.getTriggerId());
+                }
+                response.resume(builder.build());
+            }
+        } catch (Exception e) {
+            log.debugf(e.getMessage(), e);
+            Map<String, String> errors = new HashMap<String, String>();
+            errors.put("errorMsg", "Internal Error: " + e.getMessage());
+            response.resume(Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity(errors).type(APPLICATION_JSON_TYPE).build());
+        }
+
+    }
+
+    /*
+        Write the alerts as a JSON array while they are fetched, so the result set is never held in memory
+     */
+    private StreamingOutput streamAlerts(final AlertsCriteria criteria) {
+        final ObjectMapper objectMapper = objectMapper();
+        return output -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(output);
+            generator.writeStartArray();
+            try {
+                alerts.getAlerts(criteria, alert -> {
+                    try {
+                        objectMapper.writeValue(generator, alert);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+            generator.writeEndArray();
+            generator.flush();
+        };
+    }
+
+    @POST
+    @Path("/data")
+    @Consumes(APPLICATION_JSON)
+    @ApiOperation(value = "Send data to the alerts service",
+            notes = "The body is a JSON array of data, as {id, timestamp, value, type} with type NUMERIC " +
+                    "(default), AVAILABILITY or STRING. Data not referenced by any trigger is discarded.")
+    public void sendData(@Suspended final AsyncResponse response,
+                         @ApiParam(required = true, value = "JSON array of data")
+                         final InputStream data) {
+        try {
+            DataInterest interest = alerts.getDataInterest();
+            int[] total = new int[1];
+            DataBatch batch = parseData(data, interest, total);
+            int dropped = total[0] - batch.size();
+            if (null != interest && dropped > 0) {
+                interest.dropped(dropped);
+            }
+            log.debugf("POST - sendData - %s data, %s dropped", batch.size(), dropped);
+            if (!batch.isEmpty()) {
+                alerts.sendData(batch);
             }
+            response.resume(Response.status(Response.Status.OK).build());
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            log.debugf(e.getMessage(), e);
+            Map<String, String> errors = new HashMap<String, String>();
+            errors.put("errorMsg", "Bad arguments: " + e.getMessage());
+            response.resume(Response.status(Response.Status.BAD_REQUEST)
+                    .entity(errors).type(APPLICATION_JSON_TYPE).build());
         } catch (Exception e) {
             log.debugf(e.getMessage(), e);
             Map<String, String> errors = new HashMap<String, String>();
@@ -124,7 +255,99 @@ public class AlertsHandler {
             response.resume(Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity(errors).type(APPLICATION_JSON_TYPE).build());
         }
+    }
 
+    /*
+        Read the JSON array straight into a columnar batch, skipping the data that is not needed, without a Data
+        object per sample
+     */
+    private DataBatch parseData(InputStream data, DataInterest interest, int[] total) throws IOException {
+        DataBatch batch = new DataBatch();
+        try (JsonParser parser = objectMapper().getFactory().createParser(data)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Data must be a JSON array");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                String id = null;
+                long timestamp = 0;
+                Data.Type type = Data.Type.NUMERIC;
+                double value = Double.NaN;
+                String text = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken token = parser.nextToken();
+                    if (token == JsonToken.VALUE_NULL) {
+                        continue;
+                    }
+                    switch (field) {
+                        case "id":
+                            id = parser.getText();
+                            break;
+                        case "timestamp":
+                            timestamp = parser.getLongValue();
+                            break;
+                        case "type":
+                            type = Data.Type.valueOf(parser.getText());
+                            break;
+                        case "value":
+                            if (token.isNumeric()) {
+                                value = parser.getDoubleValue();
+                            } else {
+                                text = parser.getText();
+                            }
+                            break;
+                        default:
+                            parser.skipChildren();
+                    }
+                }
+                total[0]++;
+                if (null == id) {
+                    throw new IllegalArgumentException("Data id must be not null");
+                }
+                if (null != interest && !interest.isNeeded(id)) {
+                    continue;
+                }
+                switch (type) {
+                    case AVAILABILITY:
+                        batch.addAvailability(id, timestamp, null == text ? null : AvailabilityType.valueOf(text));
+                        break;
+                    case STRING:
+                        batch.addString(id, timestamp, text);
+                        break;
+                    default:
+                        batch.addNumeric(id, timestamp, null == text ? value : Double.parseDouble(text));
+                }
+            }
+            if (parser.getCurrentToken() != JsonToken.END_ARRAY) {
+                throw new IllegalArgumentException("Data must be a JSON array of objects");
+            }
+        }
+        return batch;
+    }
+
+    /*
+        The ObjectMapper of the JSON provider, see JacksonConfig
+     */
+    private ObjectMapper objectMapper() {
+        return providers.getContextResolver(ObjectMapper.class, APPLICATION_JSON_TYPE).getContext(Alert.class);
+    }
+
+    @GET
+    @Path("/stats")
+    @Produces(APPLICATION_JSON)
+    @ApiOperation(value = "Get the ingestion statistics of the alerts service",
+            notes = "batchWindow is the current max time in ms that data waits before the rules are fired, " +
+                    "queueDepth the number of data waiting for the rules, alertsQueueDepth the number of alerts " +
+                    "waiting to be persisted and alertsWriteLatency the average time in ms to persist a batch of " +
+                    "alerts.")
+    public void getStats(@Suspended final AsyncResponse response) {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("batchWindow", alerts.getBatchWindow());
+        stats.put("queueDepth", alerts.getQueueDepth());
+        stats.put("alertsQueueDepth", alerts.getAlertsQueueDepth());
+        stats.put("alertsWriteLatency", alerts.getAlertsWriteLatency());
+        log.debugf("GET - getStats - %s", stats);
+        response.resume(Response.status(Response.Status.OK).entity(stats).type(APPLICATION_JSON_TYPE).build());
     }
 
     @GET
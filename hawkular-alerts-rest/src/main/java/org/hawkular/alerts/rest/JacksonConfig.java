@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.rest;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.Provider;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The ObjectMapper of the REST API. The JSON provider serializes the entities with it, and the handlers that stream
+ * or parse JSON themselves resolve it through {@link javax.ws.rs.ext.Providers}, so every path reads and writes the
+ * same JSON.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+@Provider
+@Produces(APPLICATION_JSON)
+public class JacksonConfig implements ContextResolver<ObjectMapper> {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Override
+    public ObjectMapper getContext(Class<?> type) {
+        return objectMapper;
+    }
+}
@@ -18,10 +18,14 @@ package org.hawkular.alerts.rest
 
 import org.junit.Test
 
+import groovyx.net.http.ContentType
+
 import org.hawkular.alerts.api.services.AlertsCriteria
 
 import static org.junit.Assert.assertTrue
 import static org.junit.Assert.assertEquals
+import static org.junit.Assert.assertNotNull
+import static org.junit.Assert.assertNull
 
 
 /**
@@ -50,6 +54,122 @@ class AlertsTest extends AbstractTestBase {
         assert resp.status == 200 || resp.status == 204 : resp.status
     }
 
+    @Test
+    void getEmptyAlertsTest() {
+        String future = String.valueOf(System.currentTimeMillis() + 3600000L);
+        // streamed, the status is sent before the alerts are fetched
+        def resp = client.get(path: "", query: [startTime:future] )
+        assertEquals(200, resp.status)
+        assertEquals([], resp.data)
+
+        resp = client.get(path: "", query: [startTime:future, pageSize:"10"] )
+        assertEquals(204, resp.status)
+    }
+
+    @Test
+    void getPagedAlertsTest() {
+        // trigger-3 fires on NumericData-03 in [10, 15]
+        long start = System.currentTimeMillis();
+        def query = [startTime:String.valueOf(start), triggerIds:"trigger-3"]
+
+        // two firings, so the alerts have different ctimes
+        def resp
+        for (int n = 1; n <= 2; n++) {
+            resp = client.post(path: "data", body: [[id:"NumericData-03", timestamp:start + n, value:12.0]])
+            assertEquals(200, resp.status)
+            // rules are fired and alerts persisted asynchronously
+            for (int i = 0; i < 50; i++) {
+                resp = client.get(path: "", query: query)
+                if (resp.status == 200 && resp.data.size() >= n) {
+                    break;
+                }
+                Thread.sleep(100);
+            }
+            assertEquals(200, resp.status)
+        }
+        def all = resp.data
+        assertEquals(2, all.size())
+
+        resp = client.get(path: "", query: query + [pageSize:"1"])
+        assertEquals(200, resp.status)
+        assertEquals(1, resp.data.size())
+        assertEquals(all[0].ctime, resp.data[0].ctime)
+        def cursor = resp.headers[AlertsHandler.NEXT_CURSOR]?.value
+        assertNotNull(cursor)
+        assertEquals(all[0].ctime + "|" + all[0].triggerId, cursor)
+
+        resp = client.get(path: "", query: query + [pageSize:"1", cursor:cursor])
+        assertEquals(200, resp.status)
+        assertEquals(1, resp.data.size())
+        assertEquals(all[1].ctime, resp.data[0].ctime)
+
+        // a page that is not full has no next cursor
+        resp = client.get(path: "", query: query + [pageSize:"3"])
+        assertEquals(200, resp.status)
+        assertEquals(2, resp.data.size())
+        assertNull(resp.headers[AlertsHandler.NEXT_CURSOR])
+
+        resp = client.get(path: "", query: query + [pageSize:"1", cursor:"not-a-cursor"])
+        assertEquals(400, resp.status)
+    }
+
+    @Test
+    void sendDataTest() {
+        // trigger-5 fires on StringData-01 starting with Fred, trigger-6 on Availability-01 not UP
+        long start = System.currentTimeMillis();
+        def query = [startTime:String.valueOf(start), triggerIds:"trigger-5,trigger-6"]
+
+        def resp = client.post(path: "data", body: [
+                [id:"StringData-01", timestamp:start + 1, value:"Fred Flintstone", type:"STRING"],
+                [id:"Availability-01", timestamp:start + 1, value:"DOWN", type:"AVAILABILITY"],
+                [id:"NumericData-01", timestamp:start + 1, value:12.0],
+                [id:"NotUsedData-01", timestamp:start + 1, value:1.0, extra:[1, 2]]])
+        assertEquals(200, resp.status)
+
+        // rules are fired and alerts persisted asynchronously
+        for (int i = 0; i < 50; i++) {
+            resp = client.get(path: "", query: query)
+            if (resp.status == 200 && resp.data.size() >= 2) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        assertEquals(200, resp.status)
+        assertEquals(["trigger-5", "trigger-6"], resp.data.collect { it.triggerId }.sort())
+
+        resp = client.post(path: "data", body: [])
+        assertEquals(200, resp.status)
+    }
+
+    @Test
+    void sendBadDataTest() {
+        // not an array
+        def resp = client.post(path: "data", body: [id:"NumericData-01", timestamp:1, value:1.0])
+        assertEquals(400, resp.status)
+
+        // no id
+        resp = client.post(path: "data", body: [[timestamp:1, value:1.0]])
+        assertEquals(400, resp.status)
+
+        // unknown type
+        resp = client.post(path: "data", body: [[id:"NumericData-01", timestamp:1, value:1.0, type:"FOO"]])
+        assertEquals(400, resp.status)
+
+        // malformed JSON
+        resp = client.post(path: "data", body: "[{\"id\":", requestContentType: ContentType.JSON)
+        assertEquals(400, resp.status)
+    }
+
+    @Test
+    void getStatsTest() {
+        def resp = client.get(path: "stats")
+        assertEquals(200, resp.status)
+        assertTrue(resp.data.batchWindow >= 0)
+        assertTrue(resp.data.queueDepth >= 0)
+        assertTrue(resp.data.alertsQueueDepth >= 0)
+        assertTrue(resp.data.alertsWriteLatency >= 0)
+    }
+
     @Test
     void reloadTest() {
         def resp = client.get(path: "reload")